@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.db.DBCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Measures the SQL generation of DBCommand
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommandBenchmark
+{
+    @Benchmark
+    public String getSelect(DatabaseState state)
+    {
+        DBCommand cmd = state.createEmployeeQuery();
+        return cmd.getSelect();
+    }
+
+    @Benchmark
+    public String getInsert(DatabaseState state)
+    {
+        BenchmarkDB db = state.db;
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.EMPLOYEE.FIRSTNAME.to("Firstname"));
+        cmd.set(db.EMPLOYEE.LASTNAME.to("Lastname"));
+        cmd.set(db.EMPLOYEE.DEPARTMENT_ID.to(state.departmentIds[0]));
+        cmd.set(db.EMPLOYEE.SALARY.to(new BigDecimal("1000.00")));
+        cmd.set(db.EMPLOYEE.UPDATE_TIMESTAMP.to(db.getSystemDateExpr()));
+        return cmd.getInsert();
+    }
+
+    @Benchmark
+    public String getUpdate(DatabaseState state)
+    {
+        BenchmarkDB db = state.db;
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.EMPLOYEE.SALARY.to(db.EMPLOYEE.SALARY.multiplyWith(1.1)));
+        cmd.set(db.EMPLOYEE.UPDATE_TIMESTAMP.to(db.getSystemDateExpr()));
+        cmd.where(db.EMPLOYEE.DEPARTMENT_ID.is(state.departmentIds[0]));
+        cmd.where(db.EMPLOYEE.RETIRED.is(false));
+        return cmd.getUpdate();
+    }
+}
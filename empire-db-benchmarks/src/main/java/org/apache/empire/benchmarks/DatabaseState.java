@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBDatabaseDriver;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBSQLScript;
+import org.apache.empire.db.derby.DBDatabaseDriverDerby;
+import org.apache.empire.db.h2.DBDatabaseDriverH2;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Provides an embedded database populated with test data for the benchmarks.<BR>
+ * The database is created once per trial for each provider and each combination of parameters.
+ */
+@State(Scope.Benchmark)
+public class DatabaseState
+{
+    public static final int DEPARTMENT_COUNT = 10;
+
+    /**
+     * The embedded database to run the benchmarks on
+     */
+    @Param({ "hsqldb", "h2", "derby" })
+    public String provider;
+
+    /**
+     * The number of employee records
+     */
+    @Param({ "1000" })
+    public int employeeCount;
+
+    /**
+     * Whether or not prepared statements are used
+     */
+    @Param({ "true" })
+    public boolean preparedStatements;
+
+    public BenchmarkDB db;
+    public Connection conn;
+    public Object[] departmentIds;
+    
+    private int nextEmployee = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        // Connect
+        DBDatabaseDriver driver = createDriver();
+        Class.forName(getJdbcClass());
+        conn = DriverManager.getConnection(getJdbcURL(), "sa", "");
+        // Create database
+        db = new BenchmarkDB();
+        db.open(driver, conn);
+        db.setPreparedStatementsEnabled(preparedStatements);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(driver, script);
+        script.executeAll(driver, conn, false);
+        // Departments
+        departmentIds = new Object[DEPARTMENT_COUNT];
+        DBRecord rec = new DBRecord();
+        for (int i=0; i<DEPARTMENT_COUNT; i++)
+        {
+            rec.create(db.DEPARTMENT);
+            rec.setValue(db.DEPARTMENT.NAME, "Department "+i);
+            rec.setValue(db.DEPARTMENT.BUSINESS_UNIT, "BM");
+            rec.update(conn);
+            departmentIds[i] = rec.getValue(db.DEPARTMENT.ID);
+        }
+        // Employees
+        for (int i=0; i<employeeCount; i++)
+        {
+            rec.create(db.EMPLOYEE);
+            rec.setValue(db.EMPLOYEE.FIRSTNAME, "Firstname "+i);
+            rec.setValue(db.EMPLOYEE.LASTNAME, "Lastname "+i);
+            rec.setValue(db.EMPLOYEE.DATE_OF_BIRTH, new Date());
+            rec.setValue(db.EMPLOYEE.DEPARTMENT_ID, departmentIds[i % DEPARTMENT_COUNT]);
+            rec.setValue(db.EMPLOYEE.EMAIL, "employee"+i+"@empire-db.org");
+            rec.setValue(db.EMPLOYEE.SALARY, 1000 + i);
+            rec.update(conn);
+        }
+        db.commit(conn);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException
+    {
+        db.close(conn);
+        if ("derby".equals(provider))
+        {   // drop in memory database
+            conn.close();
+            try {
+                DriverManager.getConnection("jdbc:derby:memory:benchmark;drop=true");
+            } catch(SQLException e) {
+                // Derby always reports the drop as an exception
+            }
+            return;
+        }
+        // hsqldb and h2 discard the in memory database on shutdown
+        Statement stmt = conn.createStatement();
+        stmt.execute("SHUTDOWN");
+        stmt.close();
+        conn.close();
+    }
+    
+    /**
+     * Returns the id of an employee.<BR>
+     * Each call returns the next employee in turn. 
+     * @return the employee id
+     */
+    public Object nextEmployeeId()
+    {
+        if (nextEmployee >= employeeCount)
+            nextEmployee = 0;
+        // ids are generated starting with 1
+        return Integer.valueOf(++nextEmployee);
+    }
+    
+    /**
+     * Returns a command selecting all employees with their department
+     * @return the command
+     */
+    public DBCommand createEmployeeQuery()
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.ID, db.EMPLOYEE.FIRSTNAME, db.EMPLOYEE.LASTNAME, db.EMPLOYEE.DATE_OF_BIRTH);
+        cmd.select(db.EMPLOYEE.SALARY, db.DEPARTMENT.NAME);
+        cmd.join(db.EMPLOYEE.DEPARTMENT_ID, db.DEPARTMENT.ID);
+        cmd.where(db.EMPLOYEE.RETIRED.is(false));
+        cmd.orderBy(db.EMPLOYEE.ID);
+        return cmd;
+    }
+
+    private DBDatabaseDriver createDriver()
+    {
+        if ("hsqldb".equals(provider))
+            return new DBDatabaseDriverHSql();
+        if ("h2".equals(provider))
+            return new DBDatabaseDriverH2();
+        if ("derby".equals(provider))
+            return new DBDatabaseDriverDerby();
+        throw new InvalidArgumentException("provider", provider);
+    }
+
+    private String getJdbcClass()
+    {
+        if ("hsqldb".equals(provider))
+            return "org.hsqldb.jdbcDriver";
+        if ("h2".equals(provider))
+            return "org.h2.Driver";
+        if ("derby".equals(provider))
+            return "org.apache.derby.jdbc.EmbeddedDriver";
+        throw new InvalidArgumentException("provider", provider);
+    }
+
+    private String getJdbcURL()
+    {
+        if ("hsqldb".equals(provider))
+            return "jdbc:hsqldb:mem:benchmark";
+        if ("h2".equals(provider))
+            return "jdbc:h2:mem:benchmark";
+        if ("derby".equals(provider))
+            return "jdbc:derby:memory:benchmark;create=true";
+        throw new InvalidArgumentException("provider", provider);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.db.DBReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures reading query results with DBReader and DBDatabase.queryObjectList
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReaderBenchmark
+{
+    /**
+     * The bean used for getBeanList
+     */
+    public static class Employee
+    {
+        private int employeeId;
+        private String firstname;
+        private String lastname;
+        private Date dateOfBirth;
+        private BigDecimal salary;
+        private String name;
+        
+        public int getEmployeeId()
+        {
+            return employeeId;
+        }
+        public void setEmployeeId(int employeeId)
+        {
+            this.employeeId = employeeId;
+        }
+        public String getFirstname()
+        {
+            return firstname;
+        }
+        public void setFirstname(String firstname)
+        {
+            this.firstname = firstname;
+        }
+        public String getLastname()
+        {
+            return lastname;
+        }
+        public void setLastname(String lastname)
+        {
+            this.lastname = lastname;
+        }
+        public Date getDateOfBirth()
+        {
+            return dateOfBirth;
+        }
+        public void setDateOfBirth(Date dateOfBirth)
+        {
+            this.dateOfBirth = dateOfBirth;
+        }
+        public BigDecimal getSalary()
+        {
+            return salary;
+        }
+        public void setSalary(BigDecimal salary)
+        {
+            this.salary = salary;
+        }
+        public String getName()
+        {
+            return name;
+        }
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+    }
+    
+    @Benchmark
+    public void iterate(DatabaseState state, Blackhole bh)
+    {
+        BenchmarkDB db = state.db;
+        DBReader reader = new DBReader();
+        try {
+            reader.open(state.createEmployeeQuery(), state.conn);
+            while (reader.moveNext())
+            {
+                bh.consume(reader.getInt(db.EMPLOYEE.ID));
+                bh.consume(reader.getString(db.EMPLOYEE.LASTNAME));
+                bh.consume(reader.getDateTime(db.EMPLOYEE.DATE_OF_BIRTH));
+                bh.consume(reader.getDecimal(db.EMPLOYEE.SALARY));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+    
+    @Benchmark
+    public List<Employee> getBeanList(DatabaseState state)
+    {
+        DBReader reader = new DBReader();
+        try {
+            reader.open(state.createEmployeeQuery(), state.conn);
+            return reader.getBeanList(Employee.class);
+        } finally {
+            reader.close();
+        }
+    }
+    
+    @Benchmark
+    public List<Object[]> queryObjectList(DatabaseState state)
+    {
+        return state.db.queryObjectList(state.createEmployeeQuery(), state.conn);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.db.DBRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Measures reading and updating single records (DBRowSet.readRecord and DBRowSet.updateRecord)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecordBenchmark
+{
+    @Benchmark
+    public DBRecord readRecord(DatabaseState state)
+    {
+        DBRecord rec = new DBRecord();
+        rec.read(state.db.EMPLOYEE, new Object[] { state.nextEmployeeId() }, state.conn);
+        return rec;
+    }
+
+    @Benchmark
+    public DBRecord updateRecord(DatabaseState state)
+    {
+        BenchmarkDB db = state.db;
+        DBRecord rec = new DBRecord();
+        rec.read(db.EMPLOYEE, new Object[] { state.nextEmployeeId() }, state.conn);
+        rec.setValue(db.EMPLOYEE.SALARY, rec.getInt(db.EMPLOYEE.SALARY) + 1);
+        rec.update(state.conn);
+        return rec;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBSQLScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the execution of statements as a JDBC batch with DBSQLScript.executeBatch
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ScriptBenchmark
+{
+    /**
+     * The number of statements per batch
+     */
+    @Param({ "100" })
+    public int batchSize;
+    
+    @Benchmark
+    public int executeBatch(DatabaseState state)
+    {
+        BenchmarkDB db = state.db;
+        DBSQLScript script = new DBSQLScript();
+        for (int i=0; i<batchSize; i++)
+        {
+            DBCommand cmd = db.createCommand();
+            cmd.set(db.EMPLOYEE.SALARY.to(db.EMPLOYEE.SALARY.plus(1)));
+            cmd.where(db.EMPLOYEE.ID.is(state.nextEmployeeId()));
+            script.addUpdate(cmd);
+        }
+        return script.executeBatch(db.getDriver(), state.conn);
+    }
+}
@@ -219,6 +219,16 @@ public class CodeGenConfig extends XMLConfiguration {
 	 * true if names of foreign-key-relations should be preserved
 	 */
 	private boolean preserveRelationNames = false; 
+	
+	/**
+	 * number of connections used to read metadata which cannot be read for all tables at once
+	 */
+	private int metadataThreads = 1;
+	
+	/**
+	 * number of threads used to render the templates (0 for the number of processors)
+	 */
+	private int generatorThreads = 0;
 
 	/**
 	 * Initialize the configuration.
@@ -501,6 +511,22 @@ public class CodeGenConfig extends XMLConfiguration {
 	public void setPreserveRelationNames(boolean preserveRelationNames) {
 		this.preserveRelationNames = preserveRelationNames;
 	}
+
+	public int getMetadataThreads() {
+		return metadataThreads;
+	}
+
+	public void setMetadataThreads(int metadataThreads) {
+		this.metadataThreads = metadataThreads;
+	}
+
+	public int getGeneratorThreads() {
+		return generatorThreads;
+	}
+
+	public void setGeneratorThreads(int generatorThreads) {
+		this.generatorThreads = generatorThreads;
+	}
 	
 	private String fallback(String packageName, String defaultSubpackage){
 		String pkg = packageName;
@@ -26,7 +26,18 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.empire.data.DataType;
@@ -73,6 +84,21 @@ public class CodeGenParser {
 		}
 	}
 
+	/**
+	 * A row of the primary key or imported key metadata
+	 */
+	private static class KeyColumnInfo {
+		private String tableName;
+		private String columnName;
+		private String keyName;
+		private String pkTableName;
+		private String pkColumnName;
+	}
+	
+	private enum KeyType {
+		PRIMARY, IMPORTED
+	}
+
 	private static final Logger log = LoggerFactory.getLogger(CodeGenParser.class);
 	
 	private DatabaseMetaData dbMeta;
@@ -131,15 +157,15 @@ public class CodeGenParser {
 	 */
 	private void populateDatabase(DBDatabase db) throws SQLException {
 		ResultSet tables = null;
-		ArrayList<String> populatedTables=new ArrayList<String>();
+		Map<String, DBTable> populatedTables = new LinkedHashMap<String, DBTable>();
+		Map<String, InMemoryView> populatedViews = new LinkedHashMap<String, InMemoryView>();
 		try{
             this.dbMeta = con.getMetaData();
             String[] tablePatterns = {null}; // Could be null, so start that way.
 			if(config.getDbTablePattern() != null)
 				tablePatterns = config.getDbTablePattern().split(","); // Support a comma separated list of table patterns (i.e. specify a list of table names in the config file).
             
-            int tableCount = 0; // Moved to be outside table pattern loop.
-            int viewCount = 0;
+            long start = System.currentTimeMillis();
             for(String pattern : tablePatterns){
             
 			    // Get table metadata
@@ -158,23 +184,37 @@ public class CodeGenParser {
 						log.info("Ignoring system table " + tableName);
 						continue;
 					}
+					// Ignore tables matching more than one pattern
+					if (populatedTables.containsKey(tableName) || populatedViews.containsKey(tableName))
+						continue;
 					log.info(tableType + ": " + tableName);
 					if(tableType.equalsIgnoreCase("VIEW")){
-						InMemoryView view = new InMemoryView(tableName, db);
-						populateView(view);
-						viewCount++;
+						populatedViews.put(tableName, new InMemoryView(tableName, db));
 					} else {
-						DBTable table = new DBTable(tableName, db);
-						populateTable(table);
-						populatedTables.add(tableName);
-						tableCount++;
+						populatedTables.put(tableName, new DBTable(tableName, db));
 					}
 				}
+				DBUtil.close(tables, log);
+				tables = null;
 			}
+			log.info("Found {} tables and {} views in {} ms.", new Object[] { populatedTables.size(), populatedViews.size(), System.currentTimeMillis()-start });
+
+			// Add all columns
+			start = System.currentTimeMillis();
+			populateColumns(tablePatterns, populatedTables, populatedViews);
+			log.info("Loaded columns in {} ms.", System.currentTimeMillis()-start);
+
+			// Add all primary keys
+			start = System.currentTimeMillis();
+			populatePrimaryKeys(populatedTables);
+			log.info("Loaded primary keys in {} ms.", System.currentTimeMillis()-start);
+			
 			// Add all relations
-			gatherRelations(db, dbMeta, populatedTables);
+			start = System.currentTimeMillis();
+			gatherRelations(db, populatedTables.keySet());
+			log.info("Loaded relations in {} ms.", System.currentTimeMillis()-start);
 
-			if (tableCount==0 && viewCount==0) {
+			if (populatedTables.isEmpty() && populatedViews.isEmpty()) {
 			    // getTables returned no result
 			    String info = "catalog="+config.getDbCatalog(); 
                 info += "/ schema="+config.getDbSchema(); 
@@ -188,28 +228,30 @@ public class CodeGenParser {
 		}
 	}
 	
-	private void gatherRelations(DBDatabase db, DatabaseMetaData dbMeta, ArrayList<String> tables) throws SQLException{
-		ResultSet relations = null;
+	private void gatherRelations(DBDatabase db, Collection<String> tables) throws SQLException{
 		String fkTableName, pkTableName, fkColName, pkColName, relName;
 		DBTableColumn fkCol, pkCol;
 		DBTable fkTable, pkTable;
 		DBColumn col;
 		
 		// Add all Relations
+		Map<String, List<KeyColumnInfo>> importedKeys = loadKeyColumns(KeyType.IMPORTED, tables);
 		for (String tableName :tables) {
 			
 			// check for foreign-keys
-			relations = dbMeta.getImportedKeys(config.getDbCatalog(), config .getDbSchema(), tableName);
-			while (relations.next()) {
+			List<KeyColumnInfo> relations = importedKeys.get(tableName);
+			if (relations==null)
+				continue;
+			for (KeyColumnInfo relation : relations) {
 				pkCol=fkCol=null;
 				
-				fkTableName=relations.getString("FKTABLE_NAME");
-				pkTableName=relations.getString("PKTABLE_NAME");
-				fkColName=relations.getString("FKCOLUMN_NAME");
-				pkColName=relations.getString("PKCOLUMN_NAME");
+				fkTableName=relation.tableName;
+				pkTableName=relation.pkTableName;
+				fkColName=relation.columnName;
+				pkColName=relation.pkColumnName;
 
 				// Detect relation name
-				relName=relations.getString("FK_NAME");
+				relName=relation.keyName;
 				if (StringUtils.isEmpty(relName))
 					relName=fkTableName+"."+fkColName+"-"+pkTableName+"."+pkColName;
 				
@@ -283,73 +325,197 @@ public class CodeGenParser {
 	}
 
 	/**
-	 * queries the metadata for columns of a specific table and populates the
-	 * table with that information
+	 * queries the metadata for the columns of all tables and views and populates the
+	 * tables and views with that information.
+	 * One query is performed for each table pattern.
 	 * @throws SQLException 
 	 */
-	private void populateTable(DBTable t) throws SQLException {
-		List<String> pkCols = this.findPkColumns(t.getName());
+	private void populateColumns(String[] tablePatterns, Map<String, DBTable> tables, Map<String, InMemoryView> views) throws SQLException {
 		String lockColName = config.getTimestampColumn();
-		DBColumn[] keys = new DBColumn[pkCols.size()];
-		ResultSet rs = null;
-		try {
-			rs = dbMeta.getColumns(config.getDbCatalog(), config.getDbSchema(),
-					t.getName(), null);
-	        int i=0;
-			while (rs.next()) {
-				DBTableColumn c = addColumn(t, rs);
-				// check if it is a KeyColumn
-				if (pkCols.contains(c.getName()))
+		Set<String> populated = new HashSet<String>();
+		for (String pattern : tablePatterns) {
+			Set<String> current = new HashSet<String>();
+			ResultSet rs = null;
+			try {
+				rs = dbMeta.getColumns(config.getDbCatalog(), config.getDbSchema(),
+						pattern == null ? pattern: pattern.trim(), null);
+				while (rs.next()) {
+					String tableName = rs.getString("TABLE_NAME");
+					// Columns of this table have been added for another pattern
+					if (populated.contains(tableName))
+						continue;
+					DBTable t = tables.get(tableName);
+					if (t!=null) {
+						current.add(tableName);
+						DBTableColumn c = addColumn(t, rs);
+						// check if it is the Timestamp/Locking Column
+						if (lockColName!=null && c.getName().equalsIgnoreCase(lockColName))
+							t.setTimestampColumn(c);
+						continue;
+					}
+					InMemoryView v = views.get(tableName);
+					if (v!=null) {
+						current.add(tableName);
+						addColumn(v, rs);
+					}
+				}
+			} finally {
+				DBUtil.close(rs, log);
+			}
+			populated.addAll(current);
+		}
+	}
+	
+	/**
+	 * queries the metadata for the primary keys of all tables and sets 
+	 * the primary key of each table.
+	 * @throws SQLException 
+	 */
+	private void populatePrimaryKeys(Map<String, DBTable> tables) throws SQLException {
+		Map<String, List<KeyColumnInfo>> primaryKeys = loadKeyColumns(KeyType.PRIMARY, tables.keySet());
+		for (DBTable t : tables.values()) {
+			List<KeyColumnInfo> pkCols = primaryKeys.get(t.getName());
+			if (pkCols==null)
+				continue;
+			// Key columns in the order of the table columns
+			Set<String> pkColNames = new HashSet<String>();
+			for (KeyColumnInfo kc : pkCols)
+				pkColNames.add(kc.columnName);
+			DBColumn[] keys = new DBColumn[pkCols.size()];
+			int i=0;
+			for (DBColumn c : t.getColumns()) {
+				if (pkColNames.contains(c.getName()) && i<keys.length)
 					keys[i++] = c;
-				
-				// check if it is the Timestamp/Locking Column
-				if (lockColName!=null && c.getName().equalsIgnoreCase(lockColName))
-					t.setTimestampColumn(c);
 			}
 	        // Check whether all key columns have been set
-	        for (i=0; i<keys.length; i++)
-	            if (keys[i]==null){
-	            	throw new ItemNotFoundException(pkCols.get(i));
-	            }
-	        if(keys.length > 0){
-	        	t.setPrimaryKey(keys);
-	        }
-		} finally {
-			DBUtil.close(rs, log);
+			if (i<keys.length)
+				throw new ItemNotFoundException(pkCols.get(i).columnName);
+			t.setPrimaryKey(keys);
 		}
 	}
-	
+
 	/**
-	 * queries the metadata for columns of a specific table and populates the
-	 * table with that information
+	 * Returns the primary key or imported key columns of the given tables grouped by table name.
+	 * The metadata is queried for all tables at once. If this is not supported by the driver
+	 * the metadata is queried for each table using the number of connections configured by metadataThreads.
 	 * @throws SQLException 
 	 */
-	private void populateView(InMemoryView v) throws SQLException {
-		ResultSet rs = null;
+	private Map<String, List<KeyColumnInfo>> loadKeyColumns(KeyType type, Collection<String> tableNames) throws SQLException {
+		Map<String, List<KeyColumnInfo>> result = new HashMap<String, List<KeyColumnInfo>>();
+		if (tableNames.isEmpty())
+			return result;
+		// Query all tables at once
+		List<KeyColumnInfo> keyColumns = null;
 		try {
-			rs = dbMeta.getColumns(config.getDbCatalog(), config.getDbSchema(),
-					v.getName(), null);
-			while (rs.next()) {
-				addColumn(v, rs);
+			keyColumns = queryKeyColumns(dbMeta, type, null);
+		} catch(SQLException e) {
+			log.info("Unable to query " + type + " keys for all tables: " + e.getMessage());
+		}
+		if (keyColumns==null || keyColumns.isEmpty()) {
+			// Some drivers require a table name
+			log.info("Querying " + type + " keys for each table.");
+			keyColumns = queryKeyColumns(type, tableNames);
+		}
+		// Group by table
+		Set<String> tableSet = new HashSet<String>(tableNames);
+		for (KeyColumnInfo kc : keyColumns) {
+			if (!tableSet.contains(kc.tableName))
+				continue;
+			List<KeyColumnInfo> list = result.get(kc.tableName);
+			if (list==null) {
+				list = new ArrayList<KeyColumnInfo>();
+				result.put(kc.tableName, list);
 			}
+			list.add(kc);
+		}
+		return result;
+	}
+
+	/**
+	 * Queries the primary key or imported key columns of each of the given tables.
+	 * If more than one metadata thread is configured, the tables are split among several connections.
+	 * @throws SQLException 
+	 */
+	private List<KeyColumnInfo> queryKeyColumns(final KeyType type, Collection<String> tableNames) throws SQLException {
+		int threads = Math.min(config.getMetadataThreads(), tableNames.size());
+		if (threads<=1) {
+			// Use the current connection
+			List<KeyColumnInfo> result = new ArrayList<KeyColumnInfo>();
+			for (String tableName : tableNames)
+				result.addAll(queryKeyColumns(dbMeta, type, tableName));
+			return result;
+		}
+		// Split tables
+		List<List<String>> chunks = new ArrayList<List<String>>(threads);
+		for (int i=0; i<threads; i++)
+			chunks.add(new ArrayList<String>());
+		int i=0;
+		for (String tableName : tableNames)
+			chunks.get(i++ % threads).add(tableName);
+		// Query using one connection per thread
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<KeyColumnInfo>>> futures = new ArrayList<Future<List<KeyColumnInfo>>>(threads);
+			for (final List<String> chunk : chunks) {
+				futures.add(executor.submit(new Callable<List<KeyColumnInfo>>() {
+					public List<KeyColumnInfo> call() throws SQLException {
+						List<KeyColumnInfo> result = new ArrayList<KeyColumnInfo>();
+						Connection conn = openJDBCConnection(config);
+						try {
+							DatabaseMetaData meta = conn.getMetaData();
+							for (String tableName : chunk)
+								result.addAll(queryKeyColumns(meta, type, tableName));
+						} finally {
+							DBUtil.close(conn, log);
+						}
+						return result;
+					}
+				}));
+			}
+			// Collect results
+			List<KeyColumnInfo> result = new ArrayList<KeyColumnInfo>();
+			for (Future<List<KeyColumnInfo>> future : futures)
+				result.addAll(future.get());
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while reading database metadata.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException)
+				throw (SQLException)e.getCause();
+			throw new RuntimeException("Unable to read database metadata: " + e.getCause().getMessage(), e.getCause());
 		} finally {
-			DBUtil.close(rs, log);
+			executor.shutdownNow();
 		}
 	}
 
 	/**
-	 * Returns a list of column names that define the primarykey of the given
-	 * table.
+	 * Queries the primary key or imported key columns of a table.
+	 * @param tableName the table name or null for all tables
 	 * @throws SQLException 
 	 */
-	private List<String> findPkColumns(String tableName) throws SQLException {
-		List<String> cols = new ArrayList<String>();
+	private List<KeyColumnInfo> queryKeyColumns(DatabaseMetaData meta, KeyType type, String tableName) throws SQLException {
+		List<KeyColumnInfo> cols = new ArrayList<KeyColumnInfo>();
 		ResultSet rs = null;
 		try {
-			rs = dbMeta.getPrimaryKeys(config.getDbCatalog(), config
-					.getDbSchema(), tableName);
+			if (type==KeyType.PRIMARY)
+				rs = meta.getPrimaryKeys(config.getDbCatalog(), config.getDbSchema(), tableName);
+			else
+				rs = meta.getImportedKeys(config.getDbCatalog(), config.getDbSchema(), tableName);
 			while (rs.next()) {
-				cols.add(rs.getString("COLUMN_NAME"));
+				KeyColumnInfo kc = new KeyColumnInfo();
+				if (type==KeyType.PRIMARY) {
+					kc.tableName = rs.getString("TABLE_NAME");
+					kc.columnName = rs.getString("COLUMN_NAME");
+					kc.keyName = rs.getString("PK_NAME");
+				} else {
+					kc.tableName = rs.getString("FKTABLE_NAME");
+					kc.columnName = rs.getString("FKCOLUMN_NAME");
+					kc.keyName = rs.getString("FK_NAME");
+					kc.pkTableName = rs.getString("PKTABLE_NAME");
+					kc.pkColumnName = rs.getString("PKCOLUMN_NAME");
+				}
+				cols.add(kc);
 			}
 		} finally {
 			DBUtil.close(rs, log);
@@ -19,11 +19,20 @@
 package org.apache.empire.db.codegen;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBTable;
@@ -116,12 +125,14 @@ public class CodeGenWriter {
 	}
 
 	/**
-	 * Generates the java code files for the database
+	 * Generates the java code files for the database.
+	 * Table, view and record classes are rendered in parallel using the number of threads configured by generatorThreads.
+	 * Files whose content has not changed are not rewritten and files that are no longer generated are removed.
 	 * 
 	 * @param db
 	 *            the DBDatabase to generate files for
 	 */
-	public List<File> generateCodeFiles(DBDatabase db) {
+	public List<File> generateCodeFiles(final DBDatabase db) {
 		List<File> generatedFiles = new ArrayList<File>();
 
 		// Prepare directories for generated source files
@@ -139,23 +150,81 @@ public class CodeGenWriter {
 		// Create base record class
 		generatedFiles.add(this.createBaseRecordClass(db));
 		// Create table classes, record interfaces and record classes
-		for (DBTable table : db.getTables()) {
+		List<Callable<File>> tasks = new ArrayList<Callable<File>>();
+		for (final DBTable table : db.getTables()) {
 			if (!config.isNestTables()) {
 				// if table nesting is disabled, create separate table classes 
-				generatedFiles.add(this.createTableClass(db, table));
+				tasks.add(new Callable<File>() {
+					public File call() {
+						return createTableClass(db, table);
+					}
+				});
 			}
-			generatedFiles.add(this.createRecordClass(db, table));
+			tasks.add(new Callable<File>() {
+				public File call() {
+					return createRecordClass(db, table);
+				}
+			});
 		}
 		
 		// Create view classes
-		for (DBView view : db.getViews()) {
+		for (final DBView view : db.getViews()) {
 			if (!config.isNestViews()) {
 				// if table nesting is disabled, create separate table classes 
-				generatedFiles.add(this.createViewClass(db, view));
+				tasks.add(new Callable<File>() {
+					public File call() {
+						return createViewClass(db, view);
+					}
+				});
 			}
 		}
+		generatedFiles.addAll(executeTasks(tasks));
+		
+		// Remove files which are no longer generated
+		Set<File> keepFiles = new HashSet<File>();
+		for (File file : generatedFiles)
+			keepFiles.add(file.getAbsoluteFile());
+		FileUtils.cleanDirectory(this.baseDir, keepFiles);
 		return generatedFiles;
 	}
+	
+	/**
+	 * Executes the tasks using the number of threads configured
+	 * @param tasks the tasks to execute
+	 * @return the generated files in the order of the tasks
+	 */
+	private List<File> executeTasks(List<Callable<File>> tasks) {
+		List<File> files = new ArrayList<File>(tasks.size());
+		int threads = config.getGeneratorThreads();
+		if (threads<=0)
+			threads = Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, tasks.size());
+		if (threads<=1) {
+			// execute sequentially
+			for (Callable<File> task : tasks) {
+				try {
+					files.add(task.call());
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return files;
+		}
+		// execute in parallel
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (Future<File> future : executor.invokeAll(tasks))
+				files.add(future.get());
+			return files;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while generating code files.", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
 	
 	private void initDirectories(CodeGenConfig config) {
@@ -166,11 +235,9 @@ public class CodeGenWriter {
 		}
 
 		// Create the base package directory
+		// Old code is wiped out after generation in order to keep unchanged files untouched.
 		this.baseDir = FileUtils.getFileFromPackage(targetDir, config.getPackageName());
 
-		// Clean out the directory so old code is wiped out.
-		FileUtils.cleanDirectory(this.baseDir);
-
 		// Create the table package directory
 		this.tableDir = FileUtils.getFileFromPackage(targetDir, config.getTablePackageName());
 
@@ -296,12 +363,20 @@ public class CodeGenWriter {
 	        templatePath = config.getTemplateFolder()+ System.getProperty("file.separator") + template;
 	    }
 	    
-		Writer writer = null;
+		OutputStream out = null;
 		try {
-			log.info("Writing " + file);
 			Template velocityTemplate = engine.getTemplate(templatePath);
-			writer = new FileWriter(file);
+			StringWriter writer = new StringWriter();
 			velocityTemplate.merge(context, writer);
+			// Skip file if content is unchanged
+			byte[] content = writer.toString().getBytes();
+			if (Arrays.equals(FileUtils.getContentHash(content), FileUtils.getContentHash(file))) {
+				log.info("Unchanged " + file);
+				return;
+			}
+			log.info("Writing " + file);
+			out = new FileOutputStream(file);
+			out.write(content);
 		} catch (IOException e) {
 			log.error(e.getMessage(), e);
 		} catch (ResourceNotFoundException e) {
@@ -311,7 +386,7 @@ public class CodeGenWriter {
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 		} finally {
-			FileUtils.close(writer);
+			FileUtils.close(out);
 		}
 
 	}
@@ -30,6 +30,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -117,6 +120,70 @@ public class FileUtils {
         return globalSuccess;
 	}
 	
+	/**
+	 * Recursively removes all files under the given directory 
+	 * except the ones supplied. Empty sub-directories are removed as well.
+	 * @param directory the directory to clean
+	 * @param keepFiles the files to keep
+	 */
+	public static void cleanDirectory(File directory, Set<File> keepFiles) {
+		if (!directory.isDirectory())
+			return;
+		File[] children = directory.listFiles();
+		for (File child : children) {
+			if (child.isDirectory()) {
+				cleanDirectory(child, keepFiles);
+				String[] remaining = child.list();
+				if (remaining!=null && remaining.length==0)
+					child.delete();
+			}
+			else if (!keepFiles.contains(child.getAbsoluteFile())) {
+				log.info("Deleting " + child);
+				child.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the MD5 hash of the given data
+	 * @param data the data
+	 * @return the hash
+	 */
+	public static byte[] getContentHash(byte[] data) {
+		try {
+			return MessageDigest.getInstance("MD5").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the MD5 hash of the contents of a file
+	 * @param file the file
+	 * @return the hash or null if the file does not exist or cannot be read
+	 */
+	public static byte[] getContentHash(File file) {
+		if (!file.isFile())
+			return null;
+		FileInputStream in = null;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			in = new FileInputStream(file);
+			byte[] buffer = new byte[8192];
+			int len;
+			while ((len = in.read(buffer)) > 0)
+				digest.update(buffer, 0, len);
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
 	/**
 	 * Non-recursive delete for all files in the given directory.
 	 * Files in sub-directories not deleted.
@@ -19,6 +19,7 @@
 package org.apache.empire.db.codegen;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.File;
 import java.util.List;
@@ -98,4 +99,33 @@ public class CodeGenTest
         
     }
 
+    @Test
+    @SuppressWarnings("serial")
+    public void testIncrementalCodeGen()
+    {
+        CodeGenConfig config = new CodeGenConfig();
+        config.init("testconfig.xml", true);
+        config.setGeneratorThreads(2);
+        CodeGenWriter codeGen = new CodeGenWriter(config);
+        
+        DBDatabase db = new DBDatabase() {
+        };
+        
+        List<File> files = codeGen.generateCodeFiles(db);
+        long lastModified = 1000000000000L;
+        for(File file:files){
+            file.setLastModified(lastModified);
+        }
+        File stale = new File(files.get(0).getParentFile(), "Stale.java");
+        FileUtils.writeStringToFile(stale, "class Stale {}");
+        
+        // generate again
+        files = codeGen.generateCodeFiles(db);
+        assertEquals(4, files.size());
+        for(File file:files){
+            assertEquals("File was rewritten: " + file, lastModified, file.lastModified());
+        }
+        assertFalse(stale.exists());
+    }
+
 }
@@ -31,6 +31,7 @@ import org.apache.empire.data.Record;
 import org.apache.empire.data.RecordData;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBDatabase;
+import org.apache.empire.db.DBResolverCache;
 import org.apache.empire.db.DBRowSet;
 import org.apache.empire.exceptions.NotSupportedException;
 import org.slf4j.Logger;
@@ -40,6 +41,13 @@ public class DBELResolver extends ELResolver
 {
     private static final Logger log = LoggerFactory.getLogger(DBELResolver.class);
     
+    /**
+     * Cache of field values by rowset and property name.<br>
+     * The cache holds the values by weak reference and is invalidated when a database is registered or unregistered (e.g. closed).
+     */
+    private static final DBResolverCache<Object> fieldCache = new DBResolverCache<Object>();
+    private static final Object NO_FIELD = new Object();
+    
     @Override
     public Class<?> getCommonPropertyType(ELContext context, Object base)
     {
@@ -125,12 +133,22 @@ public class DBELResolver extends ELResolver
     
     public static DBColumnExpr findExpressionField(Object rowset, String property)
     {
+        // check cache
+        String key = (rowset instanceof DBRowSet ? getFieldCacheKey((DBRowSet)rowset, property) : null);
+        Object cached = (key!=null ? fieldCache.get(key) : null);
+        if (cached!=null)
+            return (cached!=NO_FIELD ? (DBColumnExpr)cached : null);
+        // find field
         Class<?> c = rowset.getClass();
         try
         {   // Find a matching field name
-            Field f = c.getField(property);
+            Field f = findField(c, property);
             if (f==null)
+            {   // no such field
+                if (key!=null)
+                    fieldCache.put(key, NO_FIELD);
                 return null;
+            }
             Object v = f.get(rowset);
             if (v==null)
             {   // invalid data type 
@@ -142,6 +160,8 @@ public class DBELResolver extends ELResolver
                 log.error("ELResolver error: Field '{}.{}' is not a DBColumnExpr.", c.getSimpleName(), property);
                 return null;
             }    
+            if (key!=null)
+                fieldCache.put(key, v);
             return ((DBColumnExpr)v);
         }
         catch (SecurityException e)
@@ -149,10 +169,6 @@ public class DBELResolver extends ELResolver
             log.error("ELResolver error: Unable to access field "+c.getSimpleName()+"."+property, e);
             return null;
         }
-        catch (NoSuchFieldException e)
-        {
-            return null;
-        }
         catch (IllegalArgumentException e)
         {
             log.error("ELResolver error: Unable to access field "+c.getSimpleName()+"."+property, e);
@@ -164,6 +180,45 @@ public class DBELResolver extends ELResolver
             return null;
         }
     }
+    
+    /**
+     * Returns the key of a rowset field in the field cache.<br>
+     * The key identifies the rowset instance by its id and alias, since cloned tables have different column objects.
+     * @param rowset the rowset
+     * @param property the field name
+     * @return the cache key
+     */
+    protected static String getFieldCacheKey(DBRowSet rowset, String property)
+    {
+        return rowset.getId()+":"+rowset.getAlias()+"."+property;
+    }
+    
+    /**
+     * Returns the public field of a class with the given name.
+     * @param c the class
+     * @param property the field name
+     * @return the field or null if the class has no such public field
+     */
+    protected static Field findField(Class<?> c, String property)
+    {
+        try
+        {
+            return c.getField(property);
+        }
+        catch (NoSuchFieldException e)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Removes all fields from the field cache.<br>
+     * This may be required if rowset classes are reloaded.
+     */
+    public static void clearFieldCache()
+    {
+        fieldCache.clear();
+    }
 
     @Override
     public boolean isReadOnly(ELContext context, Object base, Object property)
@@ -418,6 +418,8 @@ public abstract class FacesApplication extends Application
                 db.rollback(conn);
                 log.debug("REQUEST {}: rolled back.");
             }
+            // Release cached statements
+            db.getDriver().clearStatementCache(conn);
             // Release Connection
             conn.close();
             // done
@@ -74,6 +74,8 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
     protected DBOrderByExpr     secondarySortOrder   = null;
     
     protected int               maxItemCount = 1000;
+
+    protected boolean           keysetPagination     = false;
     
     /**
      * Extended ListTableInfo
@@ -167,6 +169,24 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
         this.secondarySortOrder = secondarySortOrder;
     }
 
+    public boolean isKeysetPagination()
+    {
+        return keysetPagination;
+    }
+
+    /**
+     * Enables or disables keyset pagination.<BR>
+     * If enabled, a page that follows a previously loaded page is selected by a constraint on the 
+     * order by values of the last row of the previous page instead of skipping all preceding rows.<BR>
+     * The sort order must be unique, hence a secondarySortOrder on the key column should be set.
+     * Pages for which no boundary key is known are loaded by position.
+     * @param keysetPagination true to enable keyset pagination
+     */
+    public void setKeysetPagination(boolean keysetPagination)
+    {
+        this.keysetPagination = keysetPagination;
+    }
+
     /** session scoped properties **/
     @Override
     public ListTableInfo getTableInfo()
@@ -286,6 +306,9 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 lti.setSortOrderChanged(false);
             }
             
+            // remove a previous seek constraint
+            queryCmd.clearSeek();
+
             int position = 0;
             int skipRows = 0;
             int maxItems = maxItemCount;
@@ -306,7 +329,15 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 // constraint
                 queryCmd.clearLimit();
                 DBDatabaseDriver driver = queryCmd.getDatabase().getDriver(); 
-                if (driver.isSupported(DBDriverFeature.QUERY_LIMIT_ROWS))
+                Object[] pageKey = (keysetPagination && position > 0) ? lti.getPageKey(position) : null;
+                if (pageKey != null)
+                {   // seek to the row following the previous page
+                    queryCmd.seek(pageKey);
+                    if (driver.isSupported(DBDriverFeature.QUERY_LIMIT_ROWS))
+                        queryCmd.limitRows(maxItems);
+                    skipRows = 0;
+                }
+                else if (driver.isSupported(DBDriverFeature.QUERY_LIMIT_ROWS))
                 {   // let the database limit the rows
                     if (driver.isSupported(DBDriverFeature.QUERY_SKIP_ROWS))
                     {   // let the database skip the rows
@@ -344,6 +375,13 @@ public class BeanListPageElement<T> extends ListPageElement<T> implements ListIt
                 lti.setPosition(position);
                 lti.setModified(false);
                 lti.setValid(true);
+                // remember the boundary of the next page
+                if (keysetPagination && items.size() == maxItems)
+                {
+                    Object[] pageKey = queryCmd.getOrderByValues(r);
+                    if (pageKey != null) // null if a sort value is null: next page will use skip/limit
+                        lti.setPageKey(position + maxItems, pageKey);
+                }
             }
             else
             { // Init the list
@@ -20,8 +20,10 @@ package org.apache.empire.jsf2.pageelements;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.faces.event.ActionEvent;
 
@@ -172,6 +174,9 @@ public abstract class ListPageElement<T> extends PageElement
         private int               position         = 0;
         private int               pageSize         = 0;
 
+        /** Keyset pagination: order by values of the row preceding a position **/
+        private Map<Integer, Object[]> pageKeys    = null;
+
         public void init(int itemCount, int pageSize)
         {
             if (pageSize < 0)
@@ -183,6 +188,7 @@ public abstract class ListPageElement<T> extends PageElement
             this.position = 0;
             this.valid = (itemCount >= 0);
             this.modified = false;
+            clearPageKeys();
         }
 
         public boolean isValid()
@@ -237,6 +243,7 @@ public abstract class ListPageElement<T> extends PageElement
             this.position = 0;
             this.modified = true;
             this.sortOrderChanged = true;
+            clearPageKeys();
         }
 
         public boolean getSortAscending()
@@ -254,6 +261,7 @@ public abstract class ListPageElement<T> extends PageElement
             this.sortAscending = sortAscending;
             this.modified = true;
             this.sortOrderChanged = true;
+            clearPageKeys();
         }
 
         public boolean isSortOrderChanged()
@@ -296,6 +304,36 @@ public abstract class ListPageElement<T> extends PageElement
             this.modified = true;
         }
 
+        /**
+         * Returns the order by values of the last row preceding the given position (keyset pagination)
+         * @param position the position of the first row of a page
+         * @return the order by values or null if not known
+         */
+        public Object[] getPageKey(int position)
+        {
+            return (this.pageKeys != null ? this.pageKeys.get(position) : null);
+        }
+
+        /**
+         * Stores the order by values of the last row preceding the given position (keyset pagination)
+         * @param position the position of the first row of a page
+         * @param key the order by values
+         */
+        public void setPageKey(int position, Object[] key)
+        {
+            if (this.pageKeys == null)
+                this.pageKeys = new HashMap<Integer, Object[]>();
+            this.pageKeys.put(position, key);
+        }
+
+        /**
+         * Clears all page keys e.g. after the sort order has changed
+         */
+        public void clearPageKeys()
+        {
+            this.pageKeys = null;
+        }
+
         public boolean isAllowPagination()
         {
             return (this.pageSize > 0);
@@ -50,6 +50,7 @@ import org.apache.empire.data.Record;
 import org.apache.empire.data.RecordData;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBResolverCache;
 import org.apache.empire.db.DBRowSet;
 import org.apache.empire.db.exceptions.FieldNotNullException;
 import org.apache.empire.exceptions.BeanPropertyGetException;
@@ -356,6 +357,9 @@ public class TagEncodingHelper implements NamingContainer
 
     public static final String COLATTR_ABBR_TITLE     = "ABBR_TITLE";       // Column title for abbreviations
     
+    // Columns by column expression string (invalidated when databases are registered or unregistered)
+    private static final DBResolverCache<Column> columnCache = new DBResolverCache<Column>();
+    
     private final UIOutput      tag;
     private final String        tagCssStyle;
     private Column              column       = null;
@@ -779,6 +783,53 @@ public class TagEncodingHelper implements NamingContainer
     }
 
     /* Helpers */
+    
+    /**
+     * Finds a column by a column expression string of the form "database.table.column".<br>
+     * Resolved columns are cached by weak reference until a database is registered or unregistered (e.g. closed).
+     * @param name the column expression string
+     * @return the column or null if the column cannot be resolved
+     */
+    protected static Column findColumn(String name)
+    {
+        // check cache
+        Column column = columnCache.get(name);
+        if (column!=null)
+            return column;
+        // parse String
+        int dbix = name.indexOf('.');
+        if (dbix<=0)
+        {
+            log.error("Invalid column expression '{}'!", name);
+            return null; // not found
+        }
+        DBDatabase db = DBDatabase.findById(name.substring(0,dbix));
+        if (db==null)
+        {
+            log.error("Database '{}' not found!", name.substring(0,dbix));
+            return null; // not found
+        }
+        int co = name.lastIndexOf('.');
+        int to = name.lastIndexOf('.', co - 1);
+        String cn = name.substring(co + 1);
+        String tn = name.substring(to + 1, co);
+        DBRowSet rs = db.getRowSet(tn);
+        if (rs == null)
+        {
+            log.error("Table/View '{}' not found in database!", tn);
+            return null; // not found
+        }
+        column = rs.getColumn(cn);
+        if (column == null)
+        {
+            log.error("Column '{}' not found in table/view '{}'!", cn, tn);
+            return null; // not found
+        }
+        // done
+        columnCache.put(name, column);
+        return column;
+    }
+    
     protected Column findColumn()
     {
         // if parent is a record tag, get the record from there
@@ -789,37 +840,7 @@ public class TagEncodingHelper implements NamingContainer
         }
         if (col instanceof String)
         {   // parse String
-            String name = String.valueOf(col);
-            int dbix = name.indexOf('.');
-            if (dbix<=0)
-            {
-                log.error("Invalid column expression '{}'!", name);
-                return null; // not found
-            }
-            DBDatabase db = DBDatabase.findById(name.substring(0,dbix));
-            if (db==null)
-            {
-                log.error("Database '{}' not found!", name.substring(0,dbix));
-                return null; // not found
-            }
-            int co = name.lastIndexOf('.');
-            int to = name.lastIndexOf('.', co - 1);
-            String cn = name.substring(co + 1);
-            String tn = name.substring(to + 1, co);
-            DBRowSet rs = db.getRowSet(tn);
-            if (rs == null)
-            {
-                log.error("Table/View '{}' not found in database!", tn);
-                return null; // not found
-            }
-            Column column = rs.getColumn(cn);
-            if (column == null)
-            {
-                log.error("Column '{}' not found in table/view '{}'!", cn, tn);
-                return null; // not found
-            }
-            // done
-            return column;
+            return findColumn(String.valueOf(col));
         }
         // When null, try value
         if (col == null)
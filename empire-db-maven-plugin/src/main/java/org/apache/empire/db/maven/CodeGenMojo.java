@@ -95,6 +95,12 @@ public class CodeGenMojo extends AbstractMojo {
     @Parameter(property = "empiredb.packageName")
 	private String packageName;
 
+	/**
+	 * The number of threads used to render the templates, 0 for the number of processors
+	 */
+    @Parameter(property = "empiredb.generatorThreads", defaultValue = "0")
+	private int generatorThreads;
+
 	public void execute() throws MojoExecutionException 
 	{
 		
@@ -115,6 +121,7 @@ public class CodeGenMojo extends AbstractMojo {
 			config.setTargetFolder(targetDirectory.getAbsolutePath());
 			config.setTemplateFolder(templateDirectory);
 			config.setPackageName(packageName);
+			config.setGeneratorThreads(generatorThreads);
 		}
 		
 		//config.setExceptionsEnabled(true);
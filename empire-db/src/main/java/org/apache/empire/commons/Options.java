@@ -21,6 +21,7 @@ package org.apache.empire.commons;
 import java.io.Serializable;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -36,6 +37,9 @@ import org.w3c.dom.Element;
  * The class is implemented as a set of OptionEntry objects 
  * where the entry value is used as the key for the set and thus must be unique.<BR>
  * <P> 
+ * For larger lists a hash index from value to list position is built on demand in order to speed up lookups.<BR>
+ * Values are compared using {@link ObjectUtils#compareEqual(Object, Object)}. Hence if the list contains values 
+ * of different types or if a value of a different type is looked up, the list is searched sequentially.<BR>  
  */
 public class Options extends AbstractSet<OptionEntry> implements Cloneable, Serializable
 {
@@ -47,9 +51,49 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     }
 
     private static final String EMPTY_STRING = "";
+    
+    /**
+     * The minimum number of entries required to build a lookup index 
+     */
+    private static final int INDEX_MIN_SIZE = 16;
+    
+    private static final Object EMPTY_KEY = new Object();
+
+    /**
+     * Returned by findIndexPos() if the lookup index cannot be used 
+     */
+    private static final int INDEX_UNUSABLE = -2;
+
+    /**
+     * The lookup index of an options list
+     */
+    private static final class OptionIndex
+    {
+        private final HashMap<Object, Integer> map;
+        private Class<?> valueType = null; // Object.class if values of different types are present
+        
+        public OptionIndex(int size)
+        {
+            map = new HashMap<Object, Integer>(size * 2);
+        }
+        
+        public void add(OptionEntry entry, int pos)
+        {
+            Object key = getIndexKey(entry.getValue());
+            if (map.containsKey(key))
+                return; // first entry wins
+            // check value type
+            Class<?> type = getIndexKeyType(key);
+            if (type!=null && type!=valueType)
+                valueType = (valueType==null ? type : Object.class);
+            map.put(key, pos);
+        }
+    }
 
     private ArrayList<OptionEntry> list = new ArrayList<OptionEntry>();
     
+    private transient volatile OptionIndex index = null;
+    
     public Options()
     {
         // Default constructor
@@ -74,13 +118,139 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         }
     }
 
-    protected int getIndex(Object value)
+    /**
+     * Returns the key under which a value is stored in the lookup index.<BR>
+     * Integer values are stored as Long and all other numbers as Long or Double depending on their value.
+     * @param value the option value
+     * @return the index key
+     */
+    private static Object getIndexKey(Object value)
+    {
+        if (ObjectUtils.isEmpty(value))
+            return EMPTY_KEY;
+        if (value instanceof Number)
+        {   // Integer types
+            if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte))
+                return Long.valueOf(((Number)value).longValue());
+            // Other numbers
+            double d = ((Number)value).doubleValue();
+            long l = (long)d;
+            return (l==d ? (Object)Long.valueOf(l) : (Object)Double.valueOf(d));
+        }
+        return value;
+    }
+    
+    /**
+     * Returns the type of an index key
+     * @param key the index key
+     * @return the type of the key or null for empty values
+     */
+    private static Class<?> getIndexKeyType(Object key)
+    {
+        if (key==EMPTY_KEY)
+            return null;
+        if (key instanceof Number)
+            return Number.class;
+        if (key instanceof Enum<?>)
+            return ((Enum<?>)key).getDeclaringClass();
+        return key.getClass();
+    }
+
+    /**
+     * Returns the lookup index and builds it if necessary.
+     * @return the lookup index or null if the list is too small
+     */
+    private OptionIndex getLookupIndex()
+    {
+        OptionIndex idx = index;
+        if (idx==null && list.size()>=INDEX_MIN_SIZE)
+        {   // build index
+            idx = new OptionIndex(list.size());
+            for (int i=0; i<list.size(); i++)
+                idx.add(list.get(i), i);
+            index = idx;
+        }
+        return idx;
+    }
+    
+    /**
+     * Finds the list position of a value using the lookup index.
+     * @param value the value to find 
+     * @param idx the lookup index
+     * @return the position, -1 if not present or INDEX_UNUSABLE if the index cannot be used
+     */
+    private int findIndexPos(Object value, OptionIndex idx)
+    {
+        Object key = getIndexKey(value);
+        Class<?> type = getIndexKeyType(key);
+        if (type!=null && idx.valueType!=null && idx.valueType!=type)
+            return INDEX_UNUSABLE; // different types
+        // lookup
+        Integer pos = idx.map.get(key);
+        if (pos==null)
+            return -1;
+        if (!ObjectUtils.compareEqual(value, list.get(pos).getValue()))
+            return INDEX_UNUSABLE; // not an exact match
+        return pos;
+    }
+
+    /**
+     * Discards the lookup index.
+     * Must be called whenever entries are inserted before the end of the list or removed.
+     */
+    private void clearLookupIndex()
+    {
+        index = null;
+    }
+    
+    /**
+     * Adds an entry to the lookup index (if any)
+     * @param entry the new entry
+     * @param pos the list position of the new entry
+     */
+    private void addLookupIndex(OptionEntry entry, int pos)
+    {
+        OptionIndex idx = index;
+        if (idx!=null)
+            idx.add(entry, pos);
+    }
+    
+    private static Object unwrapValue(Object value)
     {
-        // Find an Entry
         if (value instanceof Entry<?,?>)
             value = ((Entry<?,?>) value).getKey();
         if (value instanceof OptionEntry)
             value = ((OptionEntry) value).getValue();
+        return value;
+    }
+    
+    /**
+     * Finds the entry for a value.
+     * @param value the value to find
+     * @return the entry or null if not found
+     */
+    protected OptionEntry findEntry(Object value)
+    {
+        int i = getIndex(value);
+        return (i >= 0 ? list.get(i) : null);
+    }
+
+    protected int getIndex(Object value)
+    {
+        value = unwrapValue(value);
+        // Use index
+        OptionIndex idx = getLookupIndex();
+        if (idx!=null)
+        {   int i = findIndexPos(value, idx);
+            if (i!=INDEX_UNUSABLE)
+                return i;
+        }
+        // Search sequentially
+        return findIndex(value);
+    }
+    
+    private int findIndex(Object value)
+    {
         // Find it now
         int size = list.size();
         for (int i = 0; i < size; i++)
@@ -99,14 +269,13 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
 
     public OptionEntry getEntry(Object value)
     {
-        int i = getIndex(value);
-        return (i >= 0 ? list.get(i) : null);
+        return findEntry(value);
     }
 
     public String get(Object value)
     {
-        int i = getIndex(value);
-        return (i >= 0 ? list.get(i).getText() : EMPTY_STRING);
+        OptionEntry e = findEntry(value);
+        return (e != null ? e.getText() : EMPTY_STRING);
     }
 
     /**
@@ -154,11 +323,11 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         { // text must not be null!
             return;
         }
-        // Find Index
-        int i = getIndex(value);
-        if (i >= 0)
+        // Find Entry
+        OptionEntry e = findEntry(value);
+        if (e != null)
         { // already present
-            list.get(i).setText(text);
+            e.setText(text);
         } 
         else
         {   // find insert pos
@@ -170,7 +339,12 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
             else // bottom is default
                 index = list.size();
             // add entry now
-            list.add(index, createOptionEntry(value, text));
+            e = createOptionEntry(value, text);
+            list.add(index, e);
+            if (index==list.size()-1)
+                addLookupIndex(e, index);
+            else
+                clearLookupIndex(); // positions have changed
         }
     }
 
@@ -197,7 +371,9 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     {
         if (noCheck)
         { 
-            list.add(createOptionEntry(value, text));
+            OptionEntry e = createOptionEntry(value, text);
+            list.add(e);
+            addLookupIndex(e, list.size()-1);
         } 
         else
         {
@@ -214,9 +390,14 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
         }
         int i = getIndex(option.getValue());
         if (i >= 0)
+        {   // replace (the position of the value is unchanged)
             list.set(i, option);
+        }
         else
+        {   // add
             list.add(option);
+            addLookupIndex(option, list.size()-1);
+        }
         return true;
     }
 
@@ -224,13 +405,14 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     public void clear()
     {
         list.clear();
+        clearLookupIndex();
     }
 
     @Override
     public boolean contains(Object object)
     {
         // Check if exits
-        return (getIndex(object) >= 0);
+        return (findEntry(object) != null);
     }
 
     @Override
@@ -242,7 +424,23 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
     @Override
     public Iterator<OptionEntry> iterator()
     {
-        return list.iterator();
+        final Iterator<OptionEntry> i = list.iterator();
+        return new Iterator<OptionEntry>()
+        {
+            public boolean hasNext()
+            {
+                return i.hasNext();
+            }
+            public OptionEntry next()
+            {
+                return i.next();
+            }
+            public void remove()
+            {
+                i.remove();
+                clearLookupIndex();
+            }
+        };
     }
 
     @Override
@@ -254,6 +452,7 @@ public class Options extends AbstractSet<OptionEntry> implements Cloneable, Seri
             return false; // Element not found
         // remove
         list.remove(i);
+        clearLookupIndex();
         return true;
     }
 
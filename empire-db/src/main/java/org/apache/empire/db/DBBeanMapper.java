@@ -0,0 +1,413 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.beans.PropertyDescriptor;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.beanutils.ConstructorUtils;
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.exceptions.BeanInstantiationException;
+import org.apache.empire.exceptions.BeanPropertySetException;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class maps the fields of a query result to a java bean.<BR>
+ * Constructors, property setters and conversions are resolved once per bean class and select list
+ * and the resulting mapper is cached for subsequent queries.<BR>
+ * The cache is weakly keyed by the bean class, hence it does not prevent bean classes from being unloaded.<BR>
+ * <P>
+ * If the bean class provides a public constructor that matches the select list, the bean is created using this constructor.
+ * Otherwise the bean is created using the default constructor and its properties are set using the property setters.
+ * If the record data class overrides getBeanProperties() or getBeanProperty() the properties are set using these methods instead. 
+ * <P>
+ * @param <T> the bean type
+ */
+public class DBBeanMapper<T>
+{
+    private static final Logger log = LoggerFactory.getLogger(DBBeanMapper.class);
+
+    // The maximum number of mappers held by the cache per bean class
+    private static final int MAX_CACHE_SIZE = 500;
+
+    /**
+     * The key used to identify a mapper of a bean class
+     */
+    private static final class MapperKey
+    {
+        private final Object[] columns;
+        private final int      hashCode;
+        public MapperKey(DBColumnExpr[] colList)
+        {
+            // property name and data type of each column
+            this.columns = new Object[colList.length * 2];
+            for (int i=0; i<colList.length; i++)
+            {
+                columns[i*2]   = colList[i].getBeanPropertyName();
+                columns[i*2+1] = colList[i].getDataType();
+            }
+            this.hashCode = Arrays.hashCode(columns);
+        }
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof MapperKey))
+                return false;
+            MapperKey key = (MapperKey)other;
+            return Arrays.equals(columns, key.columns);
+        }
+    }
+
+    /**
+     * The mappers of a bean class.<BR>
+     * Mappers are held by soft references since they strongly reference the bean class which is the weak key of the mapperCache.
+     */
+    private static final class MapperMap extends LinkedHashMap<MapperKey, SoftReference<DBBeanMapper<?>>>
+    {
+        private static final long serialVersionUID = 1L;
+        public MapperMap()
+        {
+            super(16, 0.75f, true);
+        }
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MapperKey, SoftReference<DBBeanMapper<?>>> eldest)
+        {
+            return size() > MAX_CACHE_SIZE;
+        }
+    }
+
+    private static final Map<Class<?>, MapperMap> mapperCache = new WeakHashMap<Class<?>, MapperMap>();
+
+    // Record data classes and whether they override the bean property hooks 
+    private static final Map<Class<?>, Boolean> hookCache = new WeakHashMap<Class<?>, Boolean>();
+
+    /**
+     * Returns a mapper for a bean class and a select list.<BR>
+     * Mappers are cached, hence subsequent calls for the same bean class and select list return the same instance.
+     * 
+     * @param beanClass the bean class
+     * @param colList the select list
+     * @return the bean mapper
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DBBeanMapper<T> getInstance(Class<T> beanClass, DBColumnExpr[] colList)
+    {
+        if (beanClass==null)
+            throw new InvalidArgumentException("beanClass", beanClass);
+        if (colList==null)
+            throw new InvalidArgumentException("colList", colList);
+        // find in cache
+        MapperKey key = new MapperKey(colList);
+        DBBeanMapper<T> mapper = null;
+        synchronized(mapperCache)
+        {
+            MapperMap mappers = mapperCache.get(beanClass);
+            SoftReference<DBBeanMapper<?>> ref = (mappers!=null ? mappers.get(key) : null);
+            if (ref!=null)
+                mapper = (DBBeanMapper<T>)ref.get();
+        }
+        if (mapper!=null)
+            return mapper;
+        // create a new mapper 
+        mapper = new DBBeanMapper<T>(beanClass, colList);
+        synchronized(mapperCache)
+        {
+            MapperMap mappers = mapperCache.get(beanClass);
+            if (mappers==null)
+            {   mappers = new MapperMap();
+                mapperCache.put(beanClass, mappers);
+            }
+            mappers.put(key, new SoftReference<DBBeanMapper<?>>(mapper));
+        }
+        return mapper;
+    }
+
+    /**
+     * Returns true if the given record data class overrides getBeanProperties() or getBeanProperty().<BR>
+     * In this case bean properties must be set using these methods instead of the cached property setters.
+     * 
+     * @param dataClass the record data class
+     * @return true if a bean property hook is overridden or false otherwise
+     */
+    public static boolean isBeanPropertyHookOverridden(Class<? extends DBRecordData> dataClass)
+    {
+        Boolean overridden;
+        synchronized(hookCache)
+        {
+            overridden = hookCache.get(dataClass);
+        }
+        if (overridden!=null)
+            return overridden.booleanValue();
+        // find overridden method
+        overridden = Boolean.FALSE;
+        for (Class<?> c = dataClass; c!=null && c!=DBRecordData.class; c = c.getSuperclass())
+        {
+            if (declaresMethod(c, "getBeanProperty", Object.class, String.class, Object.class) ||
+                declaresMethod(c, "getBeanProperties", Object.class, Collection.class))
+            {   overridden = Boolean.TRUE;
+                break;
+            }
+        }
+        synchronized(hookCache)
+        {
+            hookCache.put(dataClass, overridden);
+        }
+        return overridden.booleanValue();
+    }
+    
+    private static boolean declaresMethod(Class<?> c, String name, Class<?>... paramTypes)
+    {
+        try
+        {   c.getDeclaredMethod(name, paramTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (SecurityException e) {
+            // not accessible: assume overridden
+            return true;
+        }
+    }
+
+    /**
+     * Removes all mappers from the cache.<BR>
+     * This may be required if bean classes are reloaded.
+     */
+    public static void clearCache()
+    {
+        synchronized(mapperCache)
+        {
+            mapperCache.clear();
+        }
+    }
+    
+    private final Class<T>       beanClass;
+    // Constructor 
+    private final Constructor<T> ctor;
+    private final Class<?>[]     ctorParamTypes;
+    // Property setters
+    private final String[]       properties;
+    private final Method[]       setters;
+    private final Class<?>[]     setterTypes;
+    private final Class<?>[]     setterValueTypes;
+
+    /**
+     * Creates a bean mapper
+     * @param beanClass the bean class
+     * @param colList the select list
+     */
+    @SuppressWarnings("unchecked")
+    protected DBBeanMapper(Class<T> beanClass, DBColumnExpr[] colList)
+    {
+        this.beanClass = beanClass;
+        // Check whether we can use a constructor
+        Class<?>[] paramTypes = new Class[colList.length];
+        for (int i = 0; i < colList.length; i++)
+            paramTypes[i] = DBExpr.getValueClass(colList[i].getDataType()); 
+        this.ctor = (Constructor<T>)findMatchingAccessibleConstructor(beanClass, paramTypes);
+        if (ctor!=null)
+        {   // Use constructor
+            this.ctorParamTypes = ctor.getParameterTypes();
+            this.properties = null;
+            this.setters = null;
+            this.setterTypes = null;
+            this.setterValueTypes = null;
+            return;
+        }
+        // Use property setters
+        this.ctorParamTypes = null;
+        this.properties  = new String[colList.length];
+        this.setters     = new Method[colList.length];
+        this.setterTypes = new Class[colList.length];
+        this.setterValueTypes = new Class[colList.length];
+        PropertyDescriptor[] descriptors = PropertyUtils.getPropertyDescriptors(beanClass);
+        for (int i = 0; i < colList.length; i++)
+        {   // Get Property Name
+            String property = colList[i].getBeanPropertyName();
+            if (property==null)
+                continue;
+            properties[i] = property;
+            // Find setter
+            for (int d = 0; d < descriptors.length; d++)
+            {
+                if (property.equals(descriptors[d].getName())==false)
+                    continue;
+                Method setter = MethodUtils.getAccessibleMethod(beanClass, descriptors[d].getWriteMethod());
+                if (setter!=null)
+                {   // found
+                    setters[i] = setter;
+                    setterTypes[i] = setter.getParameterTypes()[0];
+                    setterValueTypes[i] = (setterTypes[i].isPrimitive() ? MethodUtils.getPrimitiveWrapper(setterTypes[i]) : setterTypes[i]);
+                }
+                break;
+            }
+            if (setters[i]==null && log.isDebugEnabled())
+                log.debug(beanClass.getName() + ": no setter for property '" + property + "'. Property will be ignored.");
+        }
+    }
+
+    /**
+     * Returns the bean class
+     * @return the bean class
+     */
+    public Class<T> getBeanClass()
+    {
+        return beanClass;
+    }
+
+    /**
+     * Returns true if beans are created using a constructor or false if property setters are used.
+     * @return true if a constructor is used
+     */
+    public boolean isConstructorMapping()
+    {
+        return (ctor!=null);
+    }
+
+    /**
+     * Creates a bean and initializes it with the current field values
+     * 
+     * @param data the record data. The field order must match the select list supplied to getInstance()
+     * @return the new bean
+     */
+    public T createBean(DBRecordData data)
+    {
+        boolean useHook = (ctor==null && isBeanPropertyHookOverridden(data.getClass()));
+        return createBean(data, useHook);
+    }
+
+    /**
+     * Creates a bean and initializes it with the current field values
+     * 
+     * @param data the record data. The field order must match the select list supplied to getInstance()
+     * @param useHook true if properties must be set using data.getBeanProperties() (see isBeanPropertyHookOverridden) 
+     * @return the new bean
+     */
+    public T createBean(DBRecordData data, boolean useHook)
+    {
+        try
+        {
+            if (ctor!=null)
+            {   // Use Constructor
+                Object[] args = new Object[ctorParamTypes.length];
+                for (int i = 0; i < args.length; i++)
+                    args[i] = ObjectUtils.convert(ctorParamTypes[i], data.getValue(i));
+                return ctor.newInstance(args);
+            }
+            T bean = beanClass.newInstance();
+            if (useHook)
+            {   // Use overridden hook
+                data.getBeanProperties(bean);
+                return bean;
+            }
+            // Use Property Setters
+            for (int i = 0; i < setters.length; i++)
+            {
+                if (setters[i]!=null)
+                    setProperty(bean, i, data.getValue(i));
+            }
+            return bean;
+        } catch (InvocationTargetException e) {
+            throw new BeanInstantiationException(beanClass, e);
+        } catch (IllegalAccessException e) {
+            throw new BeanInstantiationException(beanClass, e);
+        } catch (InstantiationException e) {
+            throw new BeanInstantiationException(beanClass, e);
+        }
+    }
+
+    /**
+     * Sets a single property of a bean
+     */
+    private void setProperty(Object bean, int index, Object value)
+    {
+        try
+        {   // Convert
+            if (value!=null && setterValueTypes[index].isInstance(value)==false)
+                value = ConvertUtils.convert(value, setterTypes[index]);
+            // Set Property Value
+            setters[index].invoke(bean, value);
+        } catch (IllegalAccessException e)
+        {   log.error(beanClass.getName() + ": unable to set property '" + properties[index] + "'");
+            throw new BeanPropertySetException(bean, properties[index], e);
+        } catch (InvocationTargetException e)
+        {   log.error(beanClass.getName() + ": unable to set property '" + properties[index] + "'");
+            throw new BeanPropertySetException(bean, properties[index], e);
+        } catch (IllegalArgumentException e)
+        {   log.error(beanClass.getName() + ": unable to set property '" + properties[index] + "'");
+            throw new BeanPropertySetException(bean, properties[index], e);
+        }
+    }
+
+    /**
+     * copied from org.apache.commons.beanutils.ConstructorUtils since it's private there
+     */
+    @SuppressWarnings("unchecked")
+    private static Constructor findMatchingAccessibleConstructor(Class clazz, Class[] parameterTypes)
+    {
+        // search through all constructors 
+        int paramSize = parameterTypes.length;
+        Constructor[] ctors = clazz.getConstructors();
+        for (int i = 0, size = ctors.length; i < size; i++)
+        {   // compare parameters
+            Class[] ctorParams = ctors[i].getParameterTypes();
+            int ctorParamSize = ctorParams.length;
+            if (ctorParamSize == paramSize)
+            {   // Param Size matches
+                boolean match = true;
+                for (int n = 0; n < ctorParamSize; n++)
+                {
+                    if (!ObjectUtils.isAssignmentCompatible(ctorParams[n], parameterTypes[n]))
+                    {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) {
+                    // get accessible version of method
+                    Constructor ctor = ConstructorUtils.getAccessibleConstructor(ctors[i]);
+                    if (ctor != null) {
+                        try {
+                            ctor.setAccessible(true);
+                        } catch (SecurityException se) { /* ignore */ }
+                        return ctor;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
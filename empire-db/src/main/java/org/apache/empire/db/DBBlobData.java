@@ -21,7 +21,10 @@ package org.apache.empire.db;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.sql.Blob;
+import java.sql.SQLException;
 
+import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +48,11 @@ public class DBBlobData
      */
     private int           length          = 0;
 
+    /**
+     * The BLOB from which the data is read on access (if any)
+     */
+    private Blob          blob            = null;
+
     /**
      * The defaultEncoding used for the constructor.
      *
@@ -73,6 +81,25 @@ public class DBBlobData
         this.length = length;
     }
 
+    /**
+     * Constructor for LobData from a JDBC BLOB.<BR>
+     * The data is not read until it is accessed. Hence the BLOB must still be valid at that time.
+     *
+     * @param blob The BLOB from which the data will be read
+     * @param length The number of bytes of the BLOB
+     * @throws IllegalArgumentException If the blob is null
+     */
+    public DBBlobData(Blob blob, int length)
+    	throws IllegalArgumentException
+    {
+        if (blob == null)
+        {
+            throw new IllegalArgumentException("blob was null");
+        }
+        this.blob = blob;
+        this.length = length;
+    }
+
     /**
      * Constructor for LobData from a byte array.
      *
@@ -145,9 +172,48 @@ public class DBBlobData
      */
     public InputStream getInputStream()
     {
+        if (blob != null)
+        {   // open a new stream
+            try
+            {
+                return blob.getBinaryStream();
+            } catch (SQLException e)
+            {
+                throw new EmpireSQLException((DBDatabaseDriver)null, e);
+            }
+        }
         return inputStream;
     }
 
+    /**
+     * Returns the binary data of a BLOB that is read on access.
+     *
+     * @return Returns the binary data or null if the data has been supplied as a stream
+     */
+    public byte[] getBytes()
+    {
+        if (blob == null)
+            return null;
+        // read the BLOB now
+        try
+        {
+            return blob.getBytes(1, length);
+        } catch (SQLException e)
+        {
+            throw new EmpireSQLException((DBDatabaseDriver)null, e);
+        }
+    }
+
+    /**
+     * Returns true if the data is read from a BLOB on access.
+     *
+     * @return true if the data has not been read yet
+     */
+    public boolean isLazy()
+    {
+        return (blob != null);
+    }
+
     /**
      * Returns the length of the BLOB data in bytes.
      * 
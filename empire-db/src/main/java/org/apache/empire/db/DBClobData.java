@@ -20,6 +20,10 @@ package org.apache.empire.db;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+import org.apache.empire.db.exceptions.EmpireSQLException;
 
 /**
  * This class allocates methods to store binary character objects in the database.
@@ -38,6 +42,11 @@ public class DBClobData
      */
     private int        length = 0;
 
+    /**
+     * The CLOB from which the data is read on access (if any)
+     */
+    private Clob       clob   = null;
+
     /**
      * Constructor to pass LOB data to the setValue methods of
      * a record, consisting of the input stream where the data can be
@@ -59,6 +68,25 @@ public class DBClobData
         this.length = length;
     }
 
+    /**
+     * Constructor for LobData from a JDBC CLOB.<BR>
+     * The data is not read until it is accessed. Hence the CLOB must still be valid at that time.
+     *
+     * @param clob The CLOB from which the character data will be read
+     * @param length The number of characters of the CLOB
+     * @throws IllegalArgumentException If the clob is null
+     */
+    public DBClobData(Clob clob, int length)
+                                         throws IllegalArgumentException
+    {
+        if (clob == null)
+        {
+            throw new IllegalArgumentException("clob was null");
+        }
+        this.clob = clob;
+        this.length = length;
+    }
+
     /**
      * Constructor for LobData from a string.
      *
@@ -83,9 +111,29 @@ public class DBClobData
      */
     public Reader getReader()
     {
+        if (clob != null)
+        {   // open a new stream
+            try
+            {
+                return clob.getCharacterStream();
+            } catch (SQLException e)
+            {
+                throw new EmpireSQLException((DBDatabaseDriver)null, e);
+            }
+        }
         return reader;
     }
 
+    /**
+     * Returns true if the data is read from a CLOB on access.
+     *
+     * @return true if the data has not been read yet
+     */
+    public boolean isLazy()
+    {
+        return (clob != null);
+    }
+
     /**
      * Returns the length of the CLOB data in characters.
      *
@@ -104,6 +152,16 @@ public class DBClobData
     @Override
     public String toString()
     {
+        if (clob != null)
+        {   // read the CLOB now
+            try
+            {
+                return clob.getSubString(1, length);
+            } catch (SQLException e)
+            {
+                throw new EmpireSQLException((DBDatabaseDriver)null, e);
+            }
+        }
         // WARNING: String contained in reader is NOT supplied.
         return super.toString();
     }
@@ -55,6 +55,17 @@ public class DBCmdParam extends DBExpr
      * @return the (possibly wrapped) value
      */
     protected Object getCmdParamValue(Object value)
+    {        
+        return getCmdParamValue(type, value);
+    }
+
+    /**
+     * Returns the internal parameter value for a given "real" value and data type.
+     * @param type the parameter data type
+     * @param value the "real" value
+     * @return the (possibly wrapped) value
+     */
+    static Object getCmdParamValue(DataType type, Object value)
     {        
         switch (type)
         {
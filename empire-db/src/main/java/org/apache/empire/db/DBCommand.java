@@ -20,15 +20,23 @@ package org.apache.empire.db;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
 
+import org.apache.empire.commons.DateUtils;
+import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.expr.compare.DBCompareAndOrExpr;
 import org.apache.empire.db.expr.compare.DBCompareColExpr;
 import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.db.expr.compare.DBCompareNotExpr;
+import org.apache.empire.db.expr.compare.DBParenthesisExpr;
 import org.apache.empire.db.expr.join.DBJoinExpr;
 import org.apache.empire.db.expr.join.DBJoinExprEx;
 import org.apache.empire.db.expr.set.DBSetExpr;
@@ -60,9 +68,14 @@ public abstract class DBCommand extends DBCommandExpr
     protected List<DBCompareExpr>    where          = null;
     protected List<DBCompareExpr>    having         = null;
     protected List<DBColumnExpr>     groupBy        = null;
+    // Keyset pagination
+    protected DBCompareExpr          seekConstraint = null;
     // Parameters for prepared Statements
-    protected Vector<DBCmdParam>     cmdParams      = null;
-    private int                      paramUsageCount= 0;
+    protected List<DBCmdParam>       cmdParams      = null;
+    // Auto parameterization
+    protected boolean                autoParameterize = false;
+    // The last completed SQL generation
+    private transient volatile DBCmdGenerationContext lastGeneration = null;
     // Database
     private DBDatabase               db;
 
@@ -77,30 +90,103 @@ public abstract class DBCommand extends DBCommandExpr
     }
 
     /**
-     * internally used to reset the command param usage count.
-     * Note: Only one thread my generate an SQL statement 
+     * Holds the state of a single SQL generation call.<BR>
+     * The command parameters are collected in the order of their occurrence in the statement.<BR>
+     * A context is only used by the thread that generates the statement. 
+     * Once the generation is complete, the context is not modified any more.
      */
-    protected void resetParamUsage()
+    protected static final class DBCmdGenerationContext
+    {
+        private final DBCommand              cmd;
+        private final DBCmdGenerationContext parent;
+        private final List<DBCmdParam>       params = new ArrayList<DBCmdParam>();
+        private final Map<DBCmdParam, DBCmdParam> used = new IdentityHashMap<DBCmdParam, DBCmdParam>();
+        private int                          autoParamCount = 0; // including limit params
+        private int                          depth = 1;
+
+        private DBCmdGenerationContext(DBCommand cmd, DBCmdGenerationContext parent)
+        {
+            this.cmd = cmd;
+            this.parent = parent;
+        }
+
+        private void addParam(DBCmdParam param)
+        {
+            if (used.put(param, param)!=null)
+            {   // Error: parameter probably used twice in statement!
+                throw new MiscellaneousErrorException("A parameter may only be used once in a command.");
+            }
+            params.add(param);
+        }
+    }
+
+    // The SQL generation contexts of the current thread
+    private static final ThreadLocal<DBCmdGenerationContext> generationContext = new ThreadLocal<DBCmdGenerationContext>();
+
+    /**
+     * internally used to start the generation of an SQL statement.<BR>
+     * Each call must be followed by a call to endGeneration() in a finally block.
+     * Nested calls for the same command share the same context.
+     * @return the generation context
+     */
+    protected final DBCmdGenerationContext beginGeneration()
     {
-        paramUsageCount = 0;
+        DBCmdGenerationContext ctx = generationContext.get();
+        if (ctx!=null && ctx.cmd==this)
+        {   // nested call e.g. from a subclass
+            ctx.depth++;
+            return ctx;
+        }
+        ctx = new DBCmdGenerationContext(this, ctx);
+        generationContext.set(ctx);
+        return ctx;
+    }
+
+    /**
+     * internally used to complete the generation of an SQL statement.<BR>
+     * The parameters collected are used by getParamValues()
+     * @param ctx the context returned by beginGeneration()
+     */
+    protected final void endGeneration(DBCmdGenerationContext ctx)
+    {
+        if (--ctx.depth > 0)
+            return; // nested call
+        // restore outer context
+        if (ctx.parent!=null)
+            generationContext.set(ctx.parent);
+        else
+            generationContext.remove();
+        // publish
+        lastGeneration = ctx;
     }
     
     /**
-     * internally used to reorder the command params to match their order of occurance
+     * internally used to collect the command params in the order of their occurrence
      */
-    protected synchronized void notifyParamUsage(DBCmdParam param)
+    protected void notifyParamUsage(DBCmdParam param)
     {
-        int index = cmdParams.indexOf(param);
-        if (index < paramUsageCount)
-        {   // Error: parameter probably used twice in statement!
-            throw new MiscellaneousErrorException("A parameter may only be used once in a command.");
-        }
-        if (index > paramUsageCount)
-        {   // Correct parameter order
-            cmdParams.remove(index);
-            cmdParams.insertElementAt(param, paramUsageCount);
+        DBCmdGenerationContext ctx = generationContext.get();
+        if (ctx==null)
+            return; // not generating a statement
+        // find the context of this command
+        for (DBCmdGenerationContext c = ctx; c!=null; c = c.parent)
+        {
+            if (c.cmd==this)
+            {   ctx = c;
+                break;
+            }
         }
-        paramUsageCount++;
+        ctx.addParam(param);
+    }
+
+    /**
+     * Returns the command parameters of the last generated statement in the order of their occurrence.
+     * @return the list of parameters or null if no statement has been generated
+     */
+    protected List<DBCmdParam> getParamOrder()
+    {
+        DBCmdGenerationContext ctx = lastGeneration;
+        return (ctx!=null ? Collections.unmodifiableList(ctx.params) : null);
     }
 
     /**
@@ -154,14 +240,14 @@ public abstract class DBCommand extends DBCommandExpr
                 clone.having = new ArrayList<DBCompareExpr>(having);
             if (cmdParams!=null)
             {   // clone params
-                clone.paramUsageCount = 0;
-                clone.cmdParams = new Vector<DBCmdParam>();
+                clone.cmdParams = new ArrayList<DBCmdParam>(cmdParams.size());
                 for (DBCmdParam p : cmdParams)
                 {
                     DBCmdParam param = new DBCmdParam(this, p.getDataType(), p.getValue());
                     clone.cmdParams.add(param);
                 }
             }
+            clone.lastGeneration = null;
             // done
             return clone;
             
@@ -274,6 +360,31 @@ public abstract class DBCommand extends DBCommandExpr
         return db.isPreparedStatementsEnabled();
     }
     
+    /**
+     * Returns whether values of constraints and set expressions are automatically converted to command parameters.
+     * @return true if auto parameterization is enabled or false otherwise
+     */
+    public boolean isAutoParameterize()
+    {
+        return autoParameterize;
+    }
+
+    /**
+     * Enables or disables automatic parameterization of values.<BR>
+     * If enabled, scalar values of where and having constraints and of set expressions are added 
+     * to the statement as parameters instead of literal values when the SQL command is generated.<BR>
+     * Value lists of IN constraints are padded to a fixed number of parameters (see getAutoParamBucketSize()).<BR>
+     * This results in the same SQL text for different values, which allows the database and the statement cache
+     * to reuse statements.<BR>
+     * Parameters of a sub query are not passed to the outer command, hence commands used as sub queries should not be auto parameterized.
+     * 
+     * @param autoParameterize true to enable auto parameterization
+     */
+    public void setAutoParameterize(boolean autoParameterize)
+    {
+        this.autoParameterize = autoParameterize;
+    }
+
     /**
      * returns true if a cmdParam should be used for the given column or false otherwise
      */
@@ -361,7 +472,7 @@ public abstract class DBCommand extends DBCommandExpr
     public DBCmdParam addParam(DataType type, Object value)
     {
         if (cmdParams==null)
-            cmdParams= new Vector<DBCmdParam>();
+            cmdParams= new ArrayList<DBCmdParam>();
         // Adds the parameter 
         DBCmdParam param = new DBCmdParam(this, type, value);
         if (cmdParams.add(param)==false)
@@ -422,9 +533,30 @@ public abstract class DBCommand extends DBCommandExpr
             if (item.equals(join))
                 return;
         }
+        // Reverse now if required, so that the join is not modified when the statement is generated
+        if (!joins.isEmpty() && isJoinReverseRequired(join, joins.size()))
+            join.reverse();
         joins.add(join);
     }
 
+    /**
+     * Returns true if the right table of a join is already joined by the preceding joins.
+     * In this case the join must be reversed. 
+     */
+    private boolean isJoinReverseRequired(DBJoinExpr join, int index)
+    {
+        DBRowSet right = join.getRight().getUpdateColumn().getRowSet();
+        DBJoinExpr first = joins.get(0);
+        if (right.equals(first.getLeft().getUpdateColumn().getRowSet()) || right.equals(first.getRight().getUpdateColumn().getRowSet()))
+            return true;
+        for (int i=1; i<index; i++)
+        {
+            if (right.equals(joins.get(i).getRight().getUpdateColumn().getRowSet()))
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Adds a join based on two columns to the list of join expressions.
      * 
@@ -494,7 +626,10 @@ public abstract class DBCommand extends DBCommandExpr
         {
             joins = new ArrayList<DBJoinExpr>();
         }
-        this.joins.addAll(joinExprList);
+        for (DBJoinExpr join : joinExprList)
+        {   // join reverses if required
+            join(join);
+        }
     }
     
     /**
@@ -592,7 +727,10 @@ public abstract class DBCommand extends DBCommandExpr
             if (joins.get(i).isJoinOn(rowset))
                 joins.remove(i);
         }
-        return (size!=joins.size());
+        if (size==joins.size())
+            return false;
+        normalizeJoins();
+        return true;
     }
     
     /**
@@ -613,7 +751,24 @@ public abstract class DBCommand extends DBCommandExpr
             if (joins.get(i).isJoinOn(column))
                 joins.remove(i);
         }
-        return (size!=joins.size());
+        if (size==joins.size())
+            return false;
+        normalizeJoins();
+        return true;
+    }
+
+    /**
+     * Reverses the remaining joins after joins have been removed,
+     * so that the right table of each join is not already joined by a preceding join.
+     */
+    private void normalizeJoins()
+    {
+        for (int i=1; i<joins.size(); i++)
+        {
+            DBJoinExpr join = joins.get(i);
+            if (isJoinReverseRequired(join, i))
+                join.reverse();
+        }
     }
 
     /**
@@ -664,6 +819,45 @@ public abstract class DBCommand extends DBCommandExpr
         removeConstraintOn(where, col);
     }
 
+    /**
+     * Restricts the result to the rows following the given order by values (keyset or seek pagination).<BR>
+     * Unlike skipRows() the database does not need to read and discard the preceding rows.<BR>
+     * A previous seek constraint is replaced. The order by expressions must be set before calling this function.
+     * 
+     * @param orderValues the values of the order by expressions of the last row of the previous page
+     * 
+     * @see DBCommandExpr#getOrderByValues(DBRecordData)
+     */
+    public void seek(Object[] orderValues)
+    {
+        DBCompareExpr expr = getSeekConstraint(orderValues);
+        clearSeek();
+        if (where == null)
+            where = new ArrayList<DBCompareExpr>();
+        // add directly, must not replace other constraints on the order by columns
+        where.add(expr);
+        seekConstraint = expr;
+    }
+
+    /**
+     * Removes the seek constraint set by seek()
+     */
+    public void clearSeek()
+    {
+        if (seekConstraint != null && where != null)
+        {   // find by identity
+            for (int i = 0; i < where.size(); i++)
+            {
+                if (where.get(i) == seekConstraint)
+                {
+                    where.remove(i);
+                    break;
+                }
+            }
+        }
+        seekConstraint = null;
+    }
+
     /**
      * Returns a copy of the defined joins.
      * 
@@ -734,21 +928,26 @@ public abstract class DBCommand extends DBCommandExpr
     }
     
     @Override
-    public synchronized void getSelect(StringBuilder buf)
+    public void getSelect(StringBuilder buf)
     {
-        resetParamUsage();
-        if (select == null)
-            throw new ObjectNotValidException(this); // invalid!
-        // Prepares statement
-        addSelect(buf);
-        // From clause
-        addFrom(buf);
-        // Add Where
-        addWhere(buf);
-        // Add Grouping
-        addGrouping(buf);
-        // Add Order
-        addOrder(buf);
+        DBCmdGenerationContext ctx = beginGeneration();
+        try
+        {
+            if (select == null)
+                throw new ObjectNotValidException(this); // invalid!
+            // Prepares statement
+            addSelect(buf);
+            // From clause
+            addFrom(buf);
+            // Add Where
+            addWhere(buf);
+            // Add Grouping
+            addGrouping(buf);
+            // Add Order
+            addOrder(buf);
+        } finally {
+            endGeneration(ctx);
+        }
     }
     
     /**
@@ -810,6 +1009,7 @@ public abstract class DBCommand extends DBCommandExpr
     {
     	removeAllCommandParams(where);
         where = null;
+        seekConstraint = null;
     }
 
     /**
@@ -844,7 +1044,7 @@ public abstract class DBCommand extends DBCommandExpr
         clearGroupBy();
         clearOrderBy();
         clearLimit();
-        resetParamUsage();
+        lastGeneration = null;
     }
 
     /**
@@ -956,16 +1156,28 @@ public abstract class DBCommand extends DBCommandExpr
     @Override
     public Object[] getParamValues()
     {
-        if (cmdParams==null || cmdParams.size()==0)
-            return null;
+        int paramCount = (cmdParams!=null ? cmdParams.size() : 0);
+        DBCmdGenerationContext ctx = lastGeneration;
+        if (ctx==null)
+        {   // No statement generated yet: use order of declaration
+            if (paramCount==0)
+                return null;
+            Object[] values = new Object[paramCount];
+            for (int i=0; i<values.length; i++)
+                values[i]=cmdParams.get(i).getValue();
+            return values;
+        }
         // Check whether all parameters have been used
-        if (paramUsageCount>0 && paramUsageCount!=cmdParams.size())
-	        log.warn("DBCommand parameter count ("+String.valueOf(cmdParams.size())
-	        	   + ") does not match parameter use count ("+String.valueOf(paramUsageCount)+")");
-        // Create result array
-        Object[] values = new Object[cmdParams.size()];
+        int useCount = ctx.params.size() - ctx.autoParamCount;
+        if (useCount!=paramCount)
+	        log.warn("DBCommand parameter count ("+String.valueOf(paramCount)
+	        	   + ") does not match parameter use count ("+String.valueOf(useCount)+")");
+        if (ctx.params.isEmpty())
+            return null;
+        // Create result array in the order of occurrence
+        Object[] values = new Object[ctx.params.size()];
         for (int i=0; i<values.length; i++)
-            values[i]=cmdParams.get(i).getValue();
+            values[i]=ctx.params.get(i).getValue();
         // values
         return values;
     }
@@ -975,37 +1187,42 @@ public abstract class DBCommand extends DBCommandExpr
      * 
      * @return the update SQL-Command
      */
-    public synchronized String getUpdate()
+    public String getUpdate()
     {
-        resetParamUsage();
-        if (set == null)
-            return null;
-        StringBuilder buf = new StringBuilder("UPDATE ");
-        DBRowSet table =  set.get(0).getTable();
-        if (joins!=null && !joins.isEmpty())
-        {   // Join Update
-            buf.append( table.getAlias() );
-            long context = CTX_DEFAULT;
-            // Set Expressions
-            buf.append("\r\nSET ");
-            addListExpr(buf, set, context, ", ");
-            // From clause
-            addFrom(buf);
-            // Add Where
-            addWhere(buf, context);
-        }
-        else
-        {   // Simple Statement
-            table.addSQL(buf, CTX_FULLNAME);
-            long context = CTX_NAME | CTX_VALUE;
-            // Set Expressions
-            buf.append("\r\nSET ");
-            addListExpr(buf, set, context, ", ");
-            // Add Where
-            addWhere(buf, context);
+        DBCmdGenerationContext ctx = beginGeneration();
+        try
+        {
+            if (set == null)
+                return null;
+            StringBuilder buf = new StringBuilder("UPDATE ");
+            DBRowSet table =  set.get(0).getTable();
+            if (joins!=null && !joins.isEmpty())
+            {   // Join Update
+                buf.append( table.getAlias() );
+                long context = CTX_DEFAULT;
+                // Set Expressions
+                buf.append("\r\nSET ");
+                addListExpr(buf, set, context, ", ");
+                // From clause
+                addFrom(buf);
+                // Add Where
+                addWhere(buf, context);
+            }
+            else
+            {   // Simple Statement
+                table.addSQL(buf, CTX_FULLNAME);
+                long context = CTX_NAME | CTX_VALUE;
+                // Set Expressions
+                buf.append("\r\nSET ");
+                addListExpr(buf, set, context, ", ");
+                // Add Where
+                addWhere(buf, context);
+            }
+            // done
+            return buf.toString();
+        } finally {
+            endGeneration(ctx);
         }
-        // done
-        return buf.toString();
     }
 
     /**
@@ -1014,56 +1231,61 @@ public abstract class DBCommand extends DBCommandExpr
      * @return the insert SQL-Command
      */
     // get Insert
-    public synchronized String getInsert()
+    public String getInsert()
     {
-        resetParamUsage();
-        if (set==null || set.get(0)==null)
-            return null;
-        StringBuilder buf = new StringBuilder("INSERT INTO ");
-        // addTableExpr(buf, CTX_NAME);
-        DBRowSet table =  set.get(0).getTable();
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        buf.append("( ");
-        // Set Expressions
-        ArrayList<DBCompareColExpr> compexpr = null;
-        if (where!=null && !where.isEmpty())
-        {   // Convert ColumnExpression List to Column List
-            compexpr = new ArrayList<DBCompareColExpr>(where.size());
-            for (DBCompareExpr expr : where)
-            {   if (expr instanceof DBCompareColExpr)
-                {   DBColumn column = ((DBCompareColExpr)expr).getColumnExpr().getUpdateColumn();
-                    if (column!=null && hasSetExprOn(column)==false)
-                        compexpr.add((DBCompareColExpr)expr);
+        DBCmdGenerationContext ctx = beginGeneration();
+        try
+        {
+            if (set==null || set.get(0)==null)
+                return null;
+            StringBuilder buf = new StringBuilder("INSERT INTO ");
+            // addTableExpr(buf, CTX_NAME);
+            DBRowSet table =  set.get(0).getTable();
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            buf.append("( ");
+            // Set Expressions
+            ArrayList<DBCompareColExpr> compexpr = null;
+            if (where!=null && !where.isEmpty())
+            {   // Convert ColumnExpression List to Column List
+                compexpr = new ArrayList<DBCompareColExpr>(where.size());
+                for (DBCompareExpr expr : where)
+                {   if (expr instanceof DBCompareColExpr)
+                    {   DBColumn column = ((DBCompareColExpr)expr).getColumnExpr().getUpdateColumn();
+                        if (column!=null && hasSetExprOn(column)==false)
+                            compexpr.add((DBCompareColExpr)expr);
+                    }
+                }
+                // Add Column Names from where clause
+                if (compexpr.size()>0)
+                {
+                    // add List
+                    addListExpr(buf, compexpr, CTX_NAME, ", ");
+                    // add separator
+                    if (set != null)
+                        buf.append(", ");
+                }
+                else
+                {   // No columns to set
+                    compexpr = null;
                 }
             }
-            // Add Column Names from where clause
-            if (compexpr.size()>0)
-            {
-                // add List
-                addListExpr(buf, compexpr, CTX_NAME, ", ");
-                // add separator
-                if (set != null)
-                    buf.append(", ");
-            }
-            else
-            {   // No columns to set
-                compexpr = null;
-            }
+            if (set != null)
+                addListExpr(buf, set, CTX_NAME, ", ");
+            // Values
+            buf.append(") VALUES ( ");
+            if (compexpr != null)
+                addListExpr(buf, compexpr, CTX_VALUE, ", ");
+            if (compexpr != null && set != null)
+                buf.append(", ");
+            if (set != null)
+                addListExpr(buf, set, CTX_VALUE, ", ");
+            // End
+            buf.append(")");
+            return buf.toString();
+        } finally {
+            endGeneration(ctx);
         }
-        if (set != null)
-            addListExpr(buf, set, CTX_NAME, ", ");
-        // Values
-        buf.append(") VALUES ( ");
-        if (compexpr != null)
-            addListExpr(buf, compexpr, CTX_VALUE, ", ");
-        if (compexpr != null && set != null)
-            buf.append(", ");
-        if (set != null)
-            addListExpr(buf, set, CTX_VALUE, ", ");
-        // End
-        buf.append(")");
-        return buf.toString();
     }
     
     /**
@@ -1073,20 +1295,215 @@ public abstract class DBCommand extends DBCommandExpr
      * 
      * @return the delete SQL-Command
      */
-    public synchronized String getDelete(DBTable table)
+    public String getDelete(DBTable table)
     {
-        resetParamUsage();
-        StringBuilder buf = new StringBuilder("DELETE FROM ");
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        if (where!=null && !where.isEmpty())
-        { // add where condition
-            buf.append("\r\nWHERE ");
-            addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+        DBCmdGenerationContext ctx = beginGeneration();
+        try
+        {
+            StringBuilder buf = new StringBuilder("DELETE FROM ");
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            if (where!=null && !where.isEmpty())
+            { // add where condition
+                buf.append("\r\nWHERE ");
+                addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+            }
+            return buf.toString();
+        } finally {
+            endGeneration(ctx);
         }
-        return buf.toString();
     }
     
+    // ------- Auto parameterization -------
+
+    /**
+     * Adds a list of expressions to the SQL-Command.<BR>
+     * If auto parameterization is enabled, literal values of compare and set expressions are replaced by command parameters.<BR>
+     * This does not apply if the command is rendered as a subquery of another command,
+     * since the parameters of a subquery are not part of the parameter values of the outer command.
+     */
+    @Override
+    protected void addListExpr(StringBuilder buf, List<? extends DBExpr> list, long context, String separator)
+    {
+        DBCmdGenerationContext ctx = generationContext.get();
+        if (!autoParameterize || (context & CTX_VALUE)==0 || ctx==null || ctx.cmd!=this || ctx.parent!=null)
+        {   // default
+            super.addListExpr(buf, list, context, separator);
+            return;
+        }
+        for (int i = 0; i < list.size(); i++)
+        {   // assemble select columns
+            if (i > 0)
+                buf.append(separator);
+            getAutoParamExpr(list.get(i)).addSQL(buf, context);
+        }
+    }
+
+    /**
+     * Returns an expression in which the literal values of compare and set expressions are replaced by command parameters.
+     * @param expr the expression
+     * @return the expression with parameters or the expression itself if no values are replaced
+     */
+    protected DBExpr getAutoParamExpr(DBExpr expr)
+    {
+        if (expr instanceof DBCompareColExpr)
+        {   // compare a column
+            DBCompareColExpr cmp = (DBCompareColExpr)expr;
+            Object value = getAutoParamValue(cmp.getColumnExpr().getDataType(), cmp.getCmpop(), cmp.getValue());
+            if (value == cmp.getValue())
+                return cmp;
+            return new DBCompareColExpr(cmp.getColumnExpr(), cmp.getCmpop(), value);
+        }
+        if (expr instanceof DBCompareAndOrExpr)
+        {   // and / or
+            DBCompareAndOrExpr andOr = (DBCompareAndOrExpr)expr;
+            DBExpr left  = getAutoParamExpr(andOr.getLeft());
+            DBExpr right = getAutoParamExpr(andOr.getRight());
+            if (left == andOr.getLeft() && right == andOr.getRight())
+                return andOr;
+            return new DBCompareAndOrExpr((DBCompareExpr)left, (DBCompareExpr)right, andOr.isOr());
+        }
+        if (expr instanceof DBCompareNotExpr)
+        {   // not
+            DBCompareNotExpr not = (DBCompareNotExpr)expr;
+            DBExpr wrapped = getAutoParamExpr(not.expr);
+            return (wrapped == not.expr) ? not : new DBCompareNotExpr((DBCompareExpr)wrapped);
+        }
+        if (expr instanceof DBParenthesisExpr)
+        {   // parenthesis
+            DBParenthesisExpr par = (DBParenthesisExpr)expr;
+            DBExpr wrapped = getAutoParamExpr(par.getWrapped());
+            return (wrapped == par.getWrapped()) ? par : new DBParenthesisExpr((DBCompareExpr)wrapped);
+        }
+        if (expr instanceof DBSetExpr)
+        {   // set a column
+            DBSetExpr setExpr = (DBSetExpr)expr;
+            Object value = getAutoParamValue(setExpr.getColumn().getDataType(), DBCmpType.EQUAL, setExpr.getValue());
+            if (value == setExpr.getValue())
+                return setExpr;
+            return new DBSetExpr(setExpr.getColumn(), value);
+        }
+        // leave unchanged
+        return expr;
+    }
+
+    /**
+     * Returns a command parameter or an array of command parameters for a literal value.
+     * @param type the data type of the column
+     * @param op the compare operator
+     * @param value the value
+     * @return the command parameter(s) or the value itself if the value cannot be parameterized
+     */
+    protected Object getAutoParamValue(DataType type, DBCmpType op, Object value)
+    {
+        if (value instanceof Collection<?>)
+            value = ((Collection<?>)value).toArray();
+        if (value instanceof Object[])
+        {   // check values
+            Object[] values = (Object[])value;
+            if (values.length == 0)
+                return value;
+            for (int i = 0; i < values.length; i++)
+            {
+                if (!isAutoParamValue(type, values[i]))
+                    return value;
+            }
+            // create params
+            int size = values.length;
+            if (op == DBCmpType.IN || op == DBCmpType.NOTIN)
+            {   // pad value lists to a fixed size by repeating the last value
+                size = getAutoParamBucketSize(values.length);
+                if (size < values.length)
+                    return value;
+            }
+            DBCmdParam[] params = new DBCmdParam[size];
+            for (int i = 0; i < size; i++)
+                params[i] = addAutoParam(type, values[Math.min(i, values.length-1)]);
+            return params;
+        }
+        // scalar
+        if (!isAutoParamValue(type, value))
+            return value;
+        return addAutoParam(type, value);
+    }
+
+    /**
+     * Returns the number of parameters used for an IN list with a given number of values.<BR>
+     * The default implementation returns the next power of two up to 256. Larger lists are not parameterized.
+     * @param count the number of values
+     * @return the number of parameters or a number less than count if the list should not be parameterized
+     */
+    protected int getAutoParamBucketSize(int count)
+    {
+        if (count > 256)
+            return -1;
+        int size = 1;
+        while (size < count)
+            size <<= 1;
+        return size;
+    }
+
+    /**
+     * Returns whether a literal value can be replaced by a command parameter.<BR>
+     * Only values that are bound to the same value as their literal representation are parameterized.
+     * @param type the data type of the column
+     * @param value the value
+     * @return true if the value can be replaced by a command parameter or false otherwise
+     */
+    protected boolean isAutoParamValue(DataType type, Object value)
+    {
+        if (ObjectUtils.isEmpty(value) || value instanceof DBExpr)
+            return false;
+        switch (type)
+        {
+            case TEXT:
+            case CHAR:
+            case CLOB:
+                return (value instanceof String);
+            case INTEGER:
+            case AUTOINC:
+            case DECIMAL:
+            case FLOAT:
+                return (value instanceof Number);
+            case DATE:
+            case DATETIME:
+                return (value instanceof Date);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Appends a limit or offset value to a select statement.<BR>
+     * If useLimitParams() returns true the value is added as a parameter of the current statement.<BR>
+     * If the command is rendered as a subquery of another command the value is always added as a literal,
+     * since the parameters of a subquery are not part of the parameter values of the outer command.
+     * @param buf the SQL-Command
+     * @param value the limit or offset value
+     */
+    @Override
+    protected void addLimitValue(StringBuilder buf, int value)
+    {
+        DBCmdGenerationContext ctx = generationContext.get();
+        if (ctx==null || ctx.cmd!=this || ctx.parent!=null || !useLimitParams())
+        {   // literal value
+            super.addLimitValue(buf, value);
+            return;
+        }
+        // limit params only exist in the current generation context
+        ctx.autoParamCount++;
+        new DBCmdParam(this, DataType.INTEGER, value).addSQL(buf, CTX_VALUE);
+    }
+
+    private DBCmdParam addAutoParam(DataType type, Object value)
+    {
+        if (type == DataType.DATE)
+            value = new java.sql.Date(DateUtils.getDateOnly((Date)value).getTime());
+        // auto params only exist in the current generation context
+        generationContext.get().autoParamCount++;
+        return new DBCmdParam(this, type, value);
+    }
+
     // ------- Select Statement Parts -------
 
     protected void addSelect(StringBuilder buf)
@@ -1123,9 +1540,9 @@ public abstract class DBCommand extends DBCommandExpr
                      context = CTX_NAME|CTX_VALUE;
                  }
                  else
-                 {   // Extend the join                    
+                 {   // Extend the join (render reversed without modifying the join)
                      if ( joinTables.contains(join.getRight().getUpdateColumn().getRowSet()))
-                          join.reverse();
+                          join = join.reversedCopy();
                      // Add Right Table     
                      joinTables.add(join.getRight().getUpdateColumn().getRowSet());
                      tables .remove(join.getRight().getUpdateColumn().getRowSet());
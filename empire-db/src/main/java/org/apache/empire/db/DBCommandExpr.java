@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.apache.empire.commons.Options;
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.expr.compare.DBCompareExpr;
 import org.apache.empire.db.expr.order.DBOrderByExpr;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.NotSupportedException;
@@ -304,6 +305,7 @@ public abstract class DBCommandExpr extends DBExpr
     // Members
     protected DBCmdQuery          cmdQuery = null;
     protected List<DBOrderByExpr> orderBy  = null;
+    protected int                 fetchSize = 0;
 
     /** Constructs an empty DBCommandExpr object */
     public DBCommandExpr()
@@ -441,6 +443,27 @@ public abstract class DBCommandExpr extends DBExpr
         }
     }
 
+    /**
+     * Returns the JDBC fetch size used when executing this command.
+     * @return the fetch size or 0 if the driver's default is used
+     */
+    public int getFetchSize()
+    {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the JDBC fetch size i.e. the number of rows the driver should retrieve from the database at once.<BR>
+     * A value of 0 uses the driver's default.<BR>
+     * See also DBReader.openStreaming() for reading large results.
+     * 
+     * @param fetchSize the fetch size
+     */
+    public void setFetchSize(int fetchSize)
+    {
+        this.fetchSize = fetchSize;
+    }
+
     /**
      * set the maximum number of rows to return when executing a query command
      * A negative value will remove the limit.
@@ -468,6 +491,28 @@ public abstract class DBCommandExpr extends DBExpr
         // Nothing to do!
     }
 
+    /**
+     * Returns whether limit and offset values are added to the statement as parameters instead of literal values.<BR>
+     * Parameters allow the database and the statement cache to reuse the same statement for all pages of a query.<BR>
+     * By default parameters are used if prepared statements are enabled for the database.
+     * @return true if limit and offset should be added as parameters or false otherwise
+     */
+    protected boolean useLimitParams()
+    {
+        return getDatabase().isPreparedStatementsEnabled();
+    }
+
+    /**
+     * Appends a limit or offset value to a select statement.<BR>
+     * The value is added as a literal. DBCommand adds the value as a statement parameter if useLimitParams() returns true.
+     * @param buf the SQL-Command
+     * @param value the limit or offset value
+     */
+    protected void addLimitValue(StringBuilder buf, int value)
+    {
+        buf.append(String.valueOf(value));
+    }
+
     /**
      * Adds a list of columns to the orderBy clause in ascending order
      * 
@@ -492,6 +537,69 @@ public abstract class DBCommandExpr extends DBExpr
         orderBy(new DBOrderByExpr(expr, desc));
     }
 
+    /**
+     * Returns the values of the order by expressions for the current row of a reader or record.<BR>
+     * The values returned may be used as the boundary of a page for keyset pagination.<BR>
+     * Since a seek constraint cannot be created for null values, null is returned if any of the values is null.
+     * In this case callers should fall back to skipping rows.
+     * 
+     * @param data the reader or record positioned on the last row of a page
+     * @return an array of values in the order of the order by expressions 
+     *         or null if no order is set, an order by expression is not part of the data or its value is null
+     * 
+     * @see #getSeekConstraint(Object[])
+     */
+    public Object[] getOrderByValues(DBRecordData data)
+    {
+        if (orderBy == null || orderBy.isEmpty())
+            return null;
+        // collect values
+        Object[] values = new Object[orderBy.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            int index = data.getFieldIndex(orderBy.get(i).getColumnExpr());
+            if (index < 0)
+                return null; // not available
+            values[i] = data.getValue(index);
+            if (values[i] == null)
+                return null; // cannot seek
+        }
+        return values;
+    }
+
+    /**
+     * Creates a constraint that restricts the result to the rows following the given order by values (keyset or seek pagination).<BR>
+     * For an order by c1, c2 the constraint is (c1 &gt; v1 OR (c1 = v1 AND c2 &gt; v2)).<BR>
+     * For descending order by expressions the comparison is reversed.<BR>
+     * In order to not skip or repeat rows, the order by expressions must be unique e.g. by adding the primary key as the last order by expression.
+     * 
+     * @param orderValues the values of the order by expressions of the last row of the previous page
+     * @return the seek constraint
+     * 
+     * @see #getOrderByValues(DBRecordData)
+     */
+    public DBCompareExpr getSeekConstraint(Object[] orderValues)
+    {
+        if (orderBy == null || orderBy.isEmpty())
+            throw new ObjectNotValidException(this);
+        if (orderValues == null || orderValues.length != orderBy.size())
+            throw new InvalidArgumentException("orderValues", orderValues);
+        // build from last to first
+        DBCompareExpr seek = null;
+        for (int i = orderValues.length - 1; i >= 0; i--)
+        {
+            if (orderValues[i] == null)
+                throw new InvalidArgumentException("orderValues", orderValues);
+            DBOrderByExpr order = orderBy.get(i);
+            DBColumnExpr expr = order.getColumnExpr();
+            DBCompareExpr cmp = (order.isDescending() ? expr.isSmallerThan(orderValues[i]) : expr.isGreaterThan(orderValues[i]));
+            if (seek != null)
+                cmp = cmp.or(expr.is(orderValues[i]).and(seek));
+            seek = cmp;
+        }
+        return seek;
+    }
+
     /**
      * Create the insert into SQL-Command which copies data
      * from a select statement to a destination table.
@@ -26,8 +26,14 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.commons.Options;
@@ -86,6 +92,12 @@ public abstract class DBDatabase extends DBObject
     // Threshold for long running queries in milliseconds
     protected long longRunndingStmtThreshold = 30000;
     
+    // Number of currently open readers (see DBReader.setTrackingMode())
+    private final AtomicInteger openReaderCount = new AtomicInteger();
+    
+    // Rowsets whose record cache must be cleared when the transaction of a connection is committed
+    private transient Map<Connection, Set<DBRowSet>> pendingRecordCaches = null;
+    
     // Database specific date
     public static final DBSystemDate SYSDATE  = new DBSystemDate();
     
@@ -101,12 +113,21 @@ public abstract class DBDatabase extends DBObject
      */
     private static HashMap<String, WeakReference<DBDatabase>> databaseMap = new HashMap<String, WeakReference<DBDatabase>>();
     
+    /**
+     * number of changes to the global database map
+     */
+    private static volatile int registrationCount = 0;
+    
     /** 
      * find a database by id
      */
     public static DBDatabase findById(String dbIdent)
     {
-        WeakReference<DBDatabase> ref = databaseMap.get(dbIdent);
+        WeakReference<DBDatabase> ref;
+        synchronized(databaseMap)
+        {
+            ref = databaseMap.get(dbIdent);
+        }
         return (ref!=null) ? ref.get() : null;
     }
     
@@ -115,15 +136,29 @@ public abstract class DBDatabase extends DBObject
      */
     public static DBDatabase findByClass(Class<? extends DBDatabase> cls)
     {
-        for (WeakReference<DBDatabase> ref : databaseMap.values())
-        {   // find database by class
-            DBDatabase db = ref.get();
-            if (db!=null && cls.isInstance(db))
-                return db;
+        synchronized(databaseMap)
+        {
+            for (WeakReference<DBDatabase> ref : databaseMap.values())
+            {   // find database by class
+                DBDatabase db = ref.get();
+                if (db!=null && cls.isInstance(db))
+                    return db;
+            }
         }
         log.warn("Database of class {} not found!", cls.getSimpleName());
         return null;
     }
+    
+    /**
+     * Returns the number of times a database has been registered or unregistered.<br>
+     * A database is unregistered when it is closed and registered again when it is opened.<br>
+     * This may be used to invalidate caches holding objects found by {@link #findById(String)}.
+     * @return the registration count
+     */
+    public static int getRegistrationCount()
+    {
+        return registrationCount;
+    }
 
     /** the database schema * */
     protected String           schema    = null; // database schema name
@@ -141,6 +176,12 @@ public abstract class DBDatabase extends DBObject
      */
     private boolean preparedStatementsEnabled = false;
 
+    /**
+     * Property that indicates whether cascading deletes (DBCascadeAction.CASCADE_RECORDS) are performed
+     * with one delete statement per relation instead of deleting each depending record individually (Default is false!)
+     */
+    private boolean setBasedCascadeDelete = false;
+
     /**
      * Constructs a new DBDatabase object and sets the specified schema object.
      * 
@@ -180,22 +221,61 @@ public abstract class DBDatabase extends DBObject
      */
     protected void register(String dbid)
     {
-        // Check if it exists
-        if (databaseMap.containsValue(this))
-            databaseMap.remove(instanceId);
-        // find a unique key
-        int inst=0;
-        for (String key : databaseMap.keySet())
+        synchronized(databaseMap)
         {
-            if (key.startsWith(dbid) && databaseMap.get(key).get()!=null)
-                inst++;
+            // Check if it exists
+            if (instanceId!=null && findById(instanceId)==this)
+                databaseMap.remove(instanceId);
+            // find a unique key
+            int inst=0;
+            for (String key : databaseMap.keySet())
+            {
+                if (key.startsWith(dbid) && databaseMap.get(key).get()!=null)
+                    inst++;
+            }
+            if (inst>0)
+                this.instanceId = dbid+":"+String.valueOf(inst+1);
+            else
+                this.instanceId = dbid;
+            // register database in global map
+            databaseMap.put(this.instanceId, new WeakReference<DBDatabase>(this));
+            registrationCount++;
+        }
+    }
+
+    /**
+     * registers the database again after it has been unregistered.<br>
+     * The previous instance id is kept unless it has been taken by another database. 
+     */
+    private void reregister()
+    {
+        synchronized(databaseMap)
+        {
+            DBDatabase other = findById(instanceId);
+            if (other==this)
+                return; // still registered
+            if (other!=null)
+            {   // id is taken
+                register(getClass().getSimpleName());
+                return;
+            }
+            databaseMap.put(instanceId, new WeakReference<DBDatabase>(this));
+            registrationCount++;
+        }
+    }
+
+    /**
+     * removes the database from the global list of databases
+     */
+    protected void unregister()
+    {
+        synchronized(databaseMap)
+        {
+            if (instanceId==null || findById(instanceId)!=this)
+                return;
+            databaseMap.remove(instanceId);
+            registrationCount++;
         }
-        if (inst>0)
-            this.instanceId = dbid+":"+String.valueOf(inst+1);
-        else
-            this.instanceId = dbid;
-        // register database in global map
-        databaseMap.put(this.instanceId, new WeakReference<DBDatabase>(this));
     }
 
     /**
@@ -244,6 +324,55 @@ public abstract class DBDatabase extends DBObject
         log.info("PreparedStatementsEnabled is " + preparedStatementsEnabled);
     }
 
+    /**
+     * returns whether depending records of relations with DBCascadeAction.CASCADE_RECORDS are deleted set based (Default is false)
+     * @return true if depending records are deleted set based or false if they are deleted record by record
+     */
+    public boolean isSetBasedCascadeDelete()
+    {
+        return setBasedCascadeDelete;
+    }
+
+    /**
+     * enables or disables set based deletion of depending records for relations with DBCascadeAction.CASCADE_RECORDS.<BR>
+     * If enabled, the relation graph is walked once and the depending records of each relation are deleted bottom up
+     * by a single statement of the form "DELETE FROM child WHERE fk IN (SELECT key FROM parent WHERE ...)".<BR>
+     * Note: DBRowSet.deleteRecord() is not called for the depending records, hence any overrides of this method will be bypassed.
+     * Relations with compound keys as well as circular relations are still deleted record by record.  
+     * @param setBasedCascadeDelete true to delete depending records set based
+     */
+    public void setSetBasedCascadeDelete(boolean setBasedCascadeDelete)
+    {
+        this.setBasedCascadeDelete = setBasedCascadeDelete;
+    }
+
+    /**
+     * Returns the number of readers on this database that have been opened but not yet closed.<BR>
+     * Readers are only counted if the reader tracking mode is not DBReader.TrackingMode.OFF.
+     * 
+     * @return the number of open readers
+     */
+    public int getOpenReaderCount()
+    {
+        return openReaderCount.get();
+    }
+
+    /**
+     * internally used by DBReader to track open readers
+     */
+    void notifyReaderOpened()
+    {
+        openReaderCount.incrementAndGet();
+    }
+
+    /**
+     * internally used by DBReader to track open readers
+     */
+    void notifyReaderClosed()
+    {
+        openReaderCount.decrementAndGet();
+    }
+
     /**
      * Sets the database driver for this database. This will
      * set up the connection for use.<br>
@@ -256,8 +385,11 @@ public abstract class DBDatabase extends DBObject
         // Close Database if already open
         if (isOpen())
             close(conn);
+        // Register again if closed before
+        reregister();
         // Attach to driver
         driver.attachDatabase(this, conn);
+        driver.updateOpenDatabaseCount(true);
         // set new driver
         this.driver = driver;
     }
@@ -266,15 +398,22 @@ public abstract class DBDatabase extends DBObject
      * closes this database object by detaching it from the driver
      * this is a shortcut for calling
      *  getDriver().closeDatabase(db, conn)
+     * The database is also removed from the global list of databases until it is opened again.
      *   
      * @param conn the connection to close
      */
     public void close(Connection conn)
     {
         if (driver != null)
+        {   // release cached statements
+            driver.clearStatementCache(conn);
             driver.detachDatabase(this, conn);
+            driver.updateOpenDatabaseCount(false);
+        }
         // No diver
         this.driver = null;
+        // remove from global list
+        unregister();
     }
 
     /**
@@ -742,7 +881,7 @@ public abstract class DBDatabase extends DBObject
     {
         // Ask driver
         checkOpen(); 
-        return driver.getNextSequenceValue(this, seqName, 1, conn);
+        return driver.getNextSequenceBlockValue(this, seqName, 1, conn);
     }
 
     /**
@@ -760,6 +899,7 @@ public abstract class DBDatabase extends DBObject
     {
         checkOpen(); 
         ResultSet rs = null;
+        int count = 0;
         try
         {   // Debug
             long start = System.currentTimeMillis();
@@ -775,8 +915,9 @@ public abstract class DBDatabase extends DBObject
                 log.debug("querySingleValue returned no result");
                 return ObjectUtils.NO_VALUE;
             }
+            count = 1;
             // Read value
-            Object result = driver.getResultValue(rs, 1, dataType);
+            Object result = DBDatabaseDriver.readLazyLob(driver.getResultValue(rs, 1, dataType));
             // Debug
             long queryTime = (System.currentTimeMillis() - start);
             if (log.isDebugEnabled())
@@ -790,7 +931,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, count);
         }
     }
 
@@ -1009,6 +1150,7 @@ public abstract class DBDatabase extends DBObject
     {   // Start query
         checkOpen();
         ResultSet rs = null;
+        int count = 0;
         try
         {   // Log performance
             long start = System.currentTimeMillis();
@@ -1019,10 +1161,9 @@ public abstract class DBDatabase extends DBObject
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
             // Check Result
-            int count=0;
             while (rs.next() && (maxRows<0 || count<maxRows))
             {   
-                T item = ObjectUtils.convert(c, driver.getResultValue(rs, 1, dataType));
+                T item = ObjectUtils.convert(c, DBDatabaseDriver.readLazyLob(driver.getResultValue(rs, 1, dataType)));
                 result.add(item);
                 count++;
             }
@@ -1042,7 +1183,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, count);
         }
     }
     
@@ -1106,6 +1247,7 @@ public abstract class DBDatabase extends DBObject
     {   // Execute the  Statement
         checkOpen();
         ResultSet rs = null;
+        int count = 0;
         try
         {   // Debug
             long start = System.currentTimeMillis();
@@ -1118,7 +1260,6 @@ public abstract class DBDatabase extends DBObject
             if (rs.getMetaData().getColumnCount()<2)
                 throw new InvalidArgumentException("sqlCmd", sqlCmd);
             // Check Result
-            int count = 0;
             while (rs.next())
             {
                 Object value = rs.getObject(1);
@@ -1139,7 +1280,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, count);
         }
     }
     
@@ -1185,6 +1326,7 @@ public abstract class DBDatabase extends DBObject
     {   // Perform query
         checkOpen();
         ResultSet rs = null;
+        int count = 0;
         try
         {   // Log performance
             long start = System.currentTimeMillis();
@@ -1196,13 +1338,12 @@ public abstract class DBDatabase extends DBObject
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
             // Read List
             int colCount = rs.getMetaData().getColumnCount();
-            int count = 0;
             while (rs.next() && (maxRows<0 || count<maxRows))
             {   // Read row
                 Object[] item = new Object[colCount];
                 for (int i=0; i<colCount; i++)
                 {   // Read from Resultset
-                    item[i] = driver.getResultValue(rs, i+1, DataType.UNKNOWN);
+                    item[i] = DBDatabaseDriver.readLazyLob(driver.getResultValue(rs, i+1, DataType.UNKNOWN));
                 }
                 result.add(item);
                 count++;
@@ -1220,7 +1361,7 @@ public abstract class DBDatabase extends DBObject
             throw new QueryFailedException(this, sqlCmd, sqle);
         } finally
         { // Cleanup
-            closeResultSet(rs);
+            closeResultSet(rs, count);
         }
     } 
 
@@ -1332,6 +1473,47 @@ public abstract class DBDatabase extends DBObject
     {
         return executeSQL(sqlCmd, sqlParams, conn, null); 
     }
+
+    /**
+     * Executes a list of SQL-Commands as a JDBC batch.<BR>
+     * Consecutive identical commands are executed using a single prepared statement.<BR>
+     * <P>
+     * @param sqlCmd the SQL-Commands
+     * @param sqlParams the parameters for each command or null if no parameters are used
+     * @param conn a valid connection to the database.
+     * @return an array containing the number of affected records for each command
+     */
+    public int[] executeBatch(String[] sqlCmd, Object[][] sqlParams, Connection conn)
+    {
+        checkOpen();
+        try 
+        {   // Check argument
+            if (conn==null)
+                throw new InvalidArgumentException("conn", conn);
+            if (sqlCmd==null || sqlCmd.length==0)
+                throw new InvalidArgumentException("sqlCmd", sqlCmd);
+            // Debug
+            if (log.isInfoEnabled())
+                log.info("Executing batch of {} statements: {}", sqlCmd.length, sqlCmd[0]);
+            // execute batch
+            long start = System.currentTimeMillis();
+            int[] affected = driver.executeBatch(sqlCmd, sqlParams, conn);
+            if (affected == null)
+                throw new UnexpectedReturnValueException(affected, "driver.executeBatch()");
+            // Log
+            long execTime = (System.currentTimeMillis() - start);
+            if (log.isInfoEnabled())
+	            log.info("executeBatch executed {} statements in {} ms ", affected.length, execTime);
+            else if (execTime>=longRunndingStmtThreshold)
+                log.warn("Long running batch took {} seconds for {} statements.", execTime / 1000, sqlCmd.length);
+            // Return number of affected records
+            return affected;
+            
+	    } catch (SQLException sqle) 
+        { 	// Error
+            throw new StatementFailedException(this, sqlCmd[0], sqle);
+	    }    
+    }
     
     /**
      * @deprecated This method has be deprecated in order to avoid missing command parameters for prepared statements  
@@ -1374,7 +1556,11 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeUpdate(DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getUpdate(), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getUpdate(), cmd.getParamValues(), conn);
+        // Discard cached records
+        if (affected>0 && cmd.set!=null && cmd.set.size()>0)
+            cmd.set.get(0).getTable().discardCachedRecords(null, conn);
+        return affected;
     }
 
     /**
@@ -1386,7 +1572,11 @@ public abstract class DBDatabase extends DBObject
      */
     public final int executeDelete(DBTable from, DBCommand cmd, Connection conn)
     {
-        return executeSQL(cmd.getDelete(from), cmd.getParamValues(), conn); 
+        int affected = executeSQL(cmd.getDelete(from), cmd.getParamValues(), conn);
+        // Discard cached records
+        if (affected>0)
+            from.discardCachedRecords(null, conn);
+        return affected;
     }
     
     /**
@@ -1401,6 +1591,23 @@ public abstract class DBDatabase extends DBObject
      * @return the JDBC ResutSet
      */
     public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, Connection conn)
+    {
+        return executeQuery(sqlCmd, sqlParams, scrollable, 0, conn);
+    }
+    
+    /**
+     * Executes a select SQL-Statement and returns a ResultSet containing the query results.<BR>
+     * This function returns a JDBC ResultSet.<BR>
+     * Instead of using this function directly you should use a DBReader object instead.<BR>
+     * <P>
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams a list of parameters for parameter queries (may depend on driver)
+     * @param scrollable true if the reader should be scrollable or false if not
+     * @param fetchSize the JDBC fetch size or 0 to use the driver's default
+     * @param conn a valid connection to the database.
+     * @return the JDBC ResutSet
+     */
+    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, int fetchSize, Connection conn)
     {
         checkOpen();
         try
@@ -1412,7 +1619,7 @@ public abstract class DBDatabase extends DBObject
     	        log.debug("Executing: " + sqlCmd);
             // Execute the Statement
             long start = System.currentTimeMillis();
-            ResultSet rs = driver.executeQuery(sqlCmd, sqlParams, scrollable, conn);
+            ResultSet rs = driver.executeQuery(sqlCmd, sqlParams, scrollable, fetchSize, conn);
             if (rs == null)
                 throw new UnexpectedReturnValueException(rs, "driver.executeQuery()");
             // Debug
@@ -1430,6 +1637,33 @@ public abstract class DBDatabase extends DBObject
         } 
     }
 
+    /**
+     * internally used to clear the record cache of a rowset once the transaction of a connection has been committed
+     * @param rowset the rowset modified in the transaction
+     * @param conn the connection
+     */
+    synchronized void clearRecordCacheOnCommit(DBRowSet rowset, Connection conn)
+    {
+        if (pendingRecordCaches==null)
+            pendingRecordCaches = new WeakHashMap<Connection, Set<DBRowSet>>();
+        Set<DBRowSet> rowsets = pendingRecordCaches.get(conn);
+        if (rowsets==null)
+        {   rowsets = Collections.newSetFromMap(new IdentityHashMap<DBRowSet, Boolean>());
+            pendingRecordCaches.put(conn, rowsets);
+        }
+        rowsets.add(rowset);
+    }
+
+    /**
+     * internally used to remove the rowsets modified in the transaction of a connection
+     * @param conn the connection
+     * @return the rowsets or null
+     */
+    private synchronized Set<DBRowSet> removePendingRecordCaches(Connection conn)
+    {
+        return (pendingRecordCaches!=null ? pendingRecordCaches.remove(conn) : null);
+    }
+
     /**
      * Makes all changes made since the previous commit/rollback
      * permanent and releases any database locks currently held by the
@@ -1446,6 +1680,12 @@ public abstract class DBDatabase extends DBObject
             // Commit
             if (conn.getAutoCommit()==false)
                 conn.commit();
+            // Discard records cached while the transaction was open
+            Set<DBRowSet> rowsets = removePendingRecordCaches(conn);
+            if (rowsets!=null)
+            {   for (DBRowSet rowset : rowsets)
+                    rowset.clearRecordCache();
+            }
             // Done
             return;
         } catch (SQLException sqle) { 
@@ -1470,6 +1710,8 @@ public abstract class DBDatabase extends DBObject
             // rollback
             log.info("Database rollback issued!");
             conn.rollback();
+            // Cached records are not affected
+            removePendingRecordCaches(conn);
             // Done
             return;
         } catch (SQLException sqle) { 
@@ -1488,7 +1730,12 @@ public abstract class DBDatabase extends DBObject
     {
         try
         { // Statement close
-            if (stmt != null)
+            if (stmt == null)
+                return;
+            // release or close
+            if (driver != null)
+                driver.releaseStatement(stmt);
+            else
                 stmt.close();
             // done
             return;
@@ -1505,6 +1752,18 @@ public abstract class DBDatabase extends DBObject
      * @param rset a ResultSet object
      */
     public void closeResultSet(ResultSet rset)
+    {
+        closeResultSet(rset, -1);
+    }
+
+    /**
+     * Closes a JDBC Resultset after its rows have been read.<BR>
+     * The row count is passed on to the driver's statement listener (if any).
+     * <P>
+     * @param rset a ResultSet object
+     * @param rowCount the number of rows read or -1 if unknown
+     */
+    public void closeResultSet(ResultSet rset, int rowCount)
     {
         try
         { 	// check ResultSet
@@ -1516,8 +1775,11 @@ public abstract class DBDatabase extends DBObject
             // check Statement
             if (stmt == null)
                 return;
-            // close Statement
-            stmt.close();
+            // release or close Statement
+            if (driver != null)
+                driver.releaseStatement(stmt, rowCount);
+            else
+                stmt.close();
             // done
             return;
         } catch (SQLException sqle) { 
@@ -19,6 +19,7 @@
 package org.apache.empire.db;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -27,8 +28,14 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -39,8 +46,10 @@ import org.apache.empire.data.DataMode;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.apache.empire.exceptions.InvalidArgumentException;
+import org.apache.empire.exceptions.InvalidPropertyException;
 import org.apache.empire.exceptions.NotImplementedException;
 import org.apache.empire.exceptions.NotSupportedException;
+import org.apache.empire.exceptions.PropertyReadOnlyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -110,6 +119,30 @@ public abstract class DBDatabaseDriver implements Serializable
     // Flag whether or not to set column defaults when crating DDL statements
     protected boolean ddlColumnDefaults = false;
 
+    // Prepared statement cache (disabled by default)
+    private transient DBStatementCache statementCache = null;
+    
+    // Statement listener (disabled by default) and queries whose result has not been released yet
+    private transient DBStatementListener statementListener = null;
+    private transient Map<Statement, PendingQuery> pendingQueries = null;
+    private transient int pendingQueryAddCount = 0;
+    // Number of pending queries added before closed statements are purged
+    private static final int PENDING_QUERY_PURGE_INTERVAL = 100;
+    
+    // Length above which LOBs are not read until accessed (-1 = always read)
+    private int lazyLobThreshold = -1;
+
+    // Fetch size used for streaming queries
+    protected int streamingFetchSize = 1000;
+
+    // Number of sequence values reserved at once (1 = no block allocation)
+    protected volatile int sequenceBlockSize = 1;
+    private transient Map<String, DBSequenceBlock> sequenceBlocks = null;
+    // Independent connection used to reserve blocks of emulated sequences
+    private transient Connection sequenceConnection = null;
+    // Number of databases currently opened with this driver
+    private transient int openDatabaseCount = 0;
+
     // Illegal name chars and reserved SQL keywords
     protected static final char[]   ILLEGAL_NAME_CHARS   = new char[] { '@', '?', '>', '=', '<', ';', ':', 
                                                                     '/', '.', '-', ',', '+', '*', ')', '(',
@@ -129,6 +162,18 @@ public abstract class DBDatabaseDriver implements Serializable
         void set(Object value);
     }
     
+    /**
+     * This class holds the range of sequence values that has been reserved but not yet been used.
+     */
+    private static final class DBSequenceBlock
+    {
+        private long next = 0;
+        private long last = -1;
+        // the most recently reserved range
+        private long reservedFirst = 0;
+        private long reservedLast = -1;
+    }
+    
     /**
      * This class is used to emulate sequences by using a sequence table.
      * It is used with the executeSQL function and only required for insert statements
@@ -158,12 +203,57 @@ public abstract class DBDatabaseDriver implements Serializable
             setPrimaryKey(new DBColumn[] { C_SEQNAME });
         }
 
-        // Overrideable
+        /**
+         * Returns the next value of a sequence.<BR>
+         * If the driver's sequence block size is greater than 1, the sequence value stored in the table
+         * is incremented by the block size and the first value of the reserved block is returned.<BR>
+         * As the values of a block are handed out from memory, the block must not be reserved in the caller's transaction.
+         * Hence the block is reserved on the driver's sequence connection (see {@link DBDatabaseDriver#setSequenceConnection(Connection)})
+         * or on the given connection if it is in auto-commit mode.
+         * 
+         * @param SeqName the name of the sequence
+         * @param minValue the minimum value of the sequence
+         * @param conn a valid database connection
+         * @return the next sequence value
+         */
         public Object getNextValue(String SeqName, long minValue, Connection conn)
         {
             DBDatabaseDriver driver = db.getDriver();
+            long blockSize = driver.getSequenceBlockSize();
+            if (blockSize > 1)
+            {   // Reserve the block in an independent transaction
+                Connection seqConn = driver.getSequenceConnection();
+                if (seqConn != null)
+                {   // The sequence connection may be shared by several threads
+                    synchronized(seqConn)
+                    {
+                        return getNextValue(SeqName, minValue, blockSize, seqConn);
+                    }
+                }
+                if (isAutoCommit(conn)==false)
+                {   // Block would be rolled back with the caller's transaction
+                    log.error("Sequence {} cannot reserve a block of values in a transaction. A sequence connection must be set.", SeqName);
+                    throw new InvalidPropertyException("sequenceConnection", null);
+                }
+            }
+            return getNextValue(SeqName, minValue, blockSize, conn);
+        }
+
+        private boolean isAutoCommit(Connection conn)
+        {
+            try
+            {
+                return conn.getAutoCommit();
+            } catch (SQLException e) {
+                throw new EmpireSQLException(this, e);
+            }
+        }
+
+        private Object getNextValue(String SeqName, long minValue, long blockSize, Connection conn)
+        {
+            DBDatabaseDriver driver = db.getDriver();
+            ResultSet rs = null;
             // Create a Command
-            PreparedStatement stmt = null;
             try
             {   // The select Statement
                 DBCommand cmd = driver.createCommand(db);
@@ -176,21 +266,19 @@ public abstract class DBDatabaseDriver implements Serializable
                 long seqValue = 0;
                 while (seqValue == 0)
                 {
-                    // stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-                    stmt = conn.prepareStatement(selectCmd, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
-                    stmt.setString(1, SeqName);
                     // Query existing value
-                    ResultSet rs = stmt.executeQuery();
+                    rs = driver.executeQuery(selectCmd, new Object[] { SeqName }, true, conn);
                     if (rs.next())
                     { // Read the Sequence Value
                         seqValue = Math.max(rs.getLong(1) + 1, minValue);
                         java.sql.Timestamp current = rs.getTimestamp(2);
                         db.closeResultSet(rs);
+                        rs = null;
                         // Update existing Record
                         cmd.clear();
                         DBCmdParam name = cmd.addParam(SeqName);
                         DBCmdParam time = cmd.addParam(current);
-                        cmd.set(C_SEQVALUE.to(seqValue));
+                        cmd.set(C_SEQVALUE.to(cmd.addParam(DataType.INTEGER, seqValue + blockSize - 1)));
                         cmd.set(C_TIMESTAMP.to(DBDatabase.SYSDATE));
                         cmd.where(C_SEQNAME.is(name));
                         cmd.where(C_TIMESTAMP.is(time));
@@ -200,13 +288,14 @@ public abstract class DBDatabaseDriver implements Serializable
                     else
                     { // Close Reader
                         db.closeResultSet(rs);
+                        rs = null;
                         // sequence does not exist
                         seqValue = minValue;
                         log.warn("Sequence {} does not exist! Creating sequence with start-value of {}", SeqName, seqValue);
                         // create a new sequence entry
                         cmd.clear();
                         cmd.set(C_SEQNAME.to(SeqName));
-                        cmd.set(C_SEQVALUE.to(seqValue));
+                        cmd.set(C_SEQVALUE.to(seqValue + blockSize - 1));
                         cmd.set(C_TIMESTAMP.to(DBDatabase.SYSDATE));
                         if (driver.executeSQL(cmd.getInsert(), cmd.getParamValues(), conn, null) < 1)
                             seqValue = 0; // Try again
@@ -214,20 +303,19 @@ public abstract class DBDatabaseDriver implements Serializable
                     // check for concurrency problem
                     if (seqValue == 0)
                         log.warn("Failed to increment sequence {}. Trying again!", SeqName);
-                    // close
-                    db.closeStatement(stmt);
+                    // reset
                     cmd.clear();
-                    rs = null;
                 }
-                if (log.isInfoEnabled())
-                    log.info("Sequence {} incremented to {}.", SeqName, seqValue);
+                if (log.isDebugEnabled())
+                    log.debug("Sequence {} incremented to {}.", SeqName, seqValue + blockSize - 1);
                 return new Long(seqValue);
             } catch (SQLException e) {
                 // throw exception
                 throw new EmpireSQLException(this, e);
             } finally
             { // Cleanup
-                db.closeStatement(stmt);
+                if (rs != null)
+                    db.closeResultSet(rs);
             }
         }
     }
@@ -359,6 +447,131 @@ public abstract class DBDatabaseDriver implements Serializable
      */
     public abstract Object getNextSequenceValue(DBDatabase db, String SeqName, int minValue, Connection conn);
 
+    /**
+     * Returns the number of sequence values that are reserved with a single call to getNextSequenceValue().
+     * @return the sequence block size
+     */
+    public int getSequenceBlockSize()
+    {
+        return sequenceBlockSize;
+    }
+
+    /**
+     * Sets the number of sequence values that are reserved with a single call to getNextSequenceValue().<BR>
+     * If the block size is greater than 1, the values of a reserved block are handed out from memory.<BR>
+     * <P>
+     * Native sequences must be created with an increment equal to the block size (see createSequence of the DDL generator).
+     * For emulated sequences the sequence table will be incremented by the block size.<BR>
+     * Changing the block size of an existing database may result in duplicate values!<BR>
+     * Hence the block size cannot be changed while a database is open with this driver.
+     * If a reserved block overlaps with the previous block, the native sequence has not been created 
+     * with a matching increment and an InvalidPropertyException is thrown.<BR>
+     * Unused values of a block will be lost when the application terminates.
+     * <P>
+     * @param blockSize the sequence block size (default is 1)
+     */
+    public void setSequenceBlockSize(int blockSize)
+    {
+        if (blockSize<1)
+            throw new InvalidArgumentException("blockSize", blockSize);
+        synchronized(this)
+        {   // check open
+            if (openDatabaseCount>0 && blockSize!=sequenceBlockSize)
+                throw new PropertyReadOnlyException("sequenceBlockSize");
+            // set block size and discard all blocks
+            this.sequenceBlockSize = blockSize;
+            sequenceBlocks = null;
+        }
+    }
+
+    /**
+     * Returns the independent connection on which blocks of emulated sequences are reserved.
+     * @return the sequence connection or null if not set
+     */
+    public Connection getSequenceConnection()
+    {
+        return sequenceConnection;
+    }
+
+    /**
+     * Sets an independent connection on which blocks of emulated sequences (sequence tables) are reserved.<BR>
+     * The connection must be in auto-commit mode and must not be used for anything else.<BR>
+     * A sequence connection is required if the sequence block size is greater than 1 
+     * and sequence values are requested on connections which are not in auto-commit mode.
+     * Otherwise a rollback of the caller's transaction would also undo the reservation of the block
+     * while the values of the block are still handed out.<BR>
+     * Native sequences are not affected by a rollback and do not require a sequence connection.
+     * <P>
+     * @param conn the sequence connection or null to remove the sequence connection
+     */
+    public void setSequenceConnection(Connection conn)
+    {
+        this.sequenceConnection = conn;
+    }
+
+    /**
+     * Returns the next value of a named sequence using block allocation.<BR>
+     * If the sequence block size is 1 then this is the same as calling getNextSequenceValue().
+     * Otherwise the database sequence is only queried once for every block of values.<BR>
+     * A new block is reserved without holding a lock, so that other threads are not blocked by the database round-trip.
+     * If two threads reserve a block at the same time the remaining values of one of the blocks are lost.
+     * 
+     * @param db the database
+     * @param SeqName the name of the sequence
+     * @param minValue the minimum value of the sequence
+     * @param conn a valid database connection
+     * @return a new unique sequence value or null if an error occurred
+     */
+    public Object getNextSequenceBlockValue(DBDatabase db, String SeqName, int minValue, Connection conn)
+    {
+        int blockSize = sequenceBlockSize;
+        if (blockSize<=1)
+            return getNextSequenceValue(db, SeqName, minValue, conn);
+        // find the block
+        DBSequenceBlock block;
+        synchronized(this)
+        {
+            if (sequenceBlocks==null)
+                sequenceBlocks = new HashMap<String, DBSequenceBlock>();
+            String key = db.getId()+"."+SeqName;
+            block = sequenceBlocks.get(key);
+            if (block==null)
+            {   block = new DBSequenceBlock();
+                sequenceBlocks.put(key, block);
+            }
+        }
+        // get next value
+        synchronized(block)
+        {
+            if (block.next <= block.last)
+                return new Long(block.next++);
+        }
+        // reserve a new block without holding the lock
+        Object value = getNextSequenceValue(db, SeqName, minValue, conn);
+        if (value==null)
+            return null;
+        long next = ObjectUtils.getLong(value);
+        long last = next + blockSize - 1;
+        synchronized(block)
+        {
+            if (next <= block.reservedLast && last >= block.reservedFirst)
+            {   // sequence increment does not match the block size
+                log.error("Sequence {} returned {} which is within the previously reserved block. Sequence increment must be {}.", new Object[] { SeqName, next, blockSize });
+                throw new InvalidPropertyException("sequenceBlockSize", blockSize);
+            }
+            block.reservedFirst = next;
+            block.reservedLast = last;
+            if (block.next <= block.last)
+            {   // another thread has reserved a block in the meantime
+                log.debug("Sequence {} discarded values {} to {}", new Object[] { SeqName, block.next, block.last });
+            }
+            block.next = next;
+            block.last = last;
+            log.debug("Sequence {} reserved values {} to {}", new Object[] { SeqName, next, last });
+            return new Long(block.next++);
+        }
+    }
+
     /**
      * Returns an auto-generated value for a particular column
      * 
@@ -400,6 +613,7 @@ public abstract class DBDatabaseDriver implements Serializable
     protected void prepareStatement(PreparedStatement pstmt, Object[] sqlParams) 
     	throws SQLException
 	{
+        boolean debug = log.isDebugEnabled();
         for (int i=0; i<sqlParams.length; i++)
         {
             Object value = sqlParams[i];
@@ -409,11 +623,157 @@ public abstract class DBDatabaseDriver implements Serializable
                 log.error("SQLException: Unable to set prepared statement parameter {} to '{}'", i+1, StringUtils.toString(value));
                 throw e;
             }
+            // log
+            if (debug)
+                log.debug("Statement param {} set to '{}'", i+1, getParamLogValue(value));
         }
 	}
+    
+    /**
+     * Returns the value of a statement parameter for logging
+     */
+    private static Object getParamLogValue(Object value)
+    {
+        if (value instanceof DBBlobData)
+            return "BLOB data";
+        if (value instanceof DBClobData)
+            return "CLOB data";
+        return value;
+    }
+
+    /**
+     * Binds parameter values of a particular Java class to a prepared statement using the corresponding typed setter.<BR>
+     * This avoids the type detection of PreparedStatement.setObject() in the JDBC driver.
+     */
+    protected static enum StatementParamBinder
+    {
+        STRING {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setString(paramIndex, (String)value);
+            }
+        },
+        CHARACTER {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setString(paramIndex, value.toString());
+            }
+        },
+        INTEGER {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setInt(paramIndex, ((Integer)value).intValue());
+            }
+        },
+        LONG {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setLong(paramIndex, ((Long)value).longValue());
+            }
+        },
+        SHORT {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setShort(paramIndex, ((Short)value).shortValue());
+            }
+        },
+        BYTE {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setByte(paramIndex, ((Byte)value).byteValue());
+            }
+        },
+        DOUBLE {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setDouble(paramIndex, ((Double)value).doubleValue());
+            }
+        },
+        FLOAT {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setFloat(paramIndex, ((Float)value).floatValue());
+            }
+        },
+        DECIMAL {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setBigDecimal(paramIndex, (BigDecimal)value);
+            }
+        },
+        BOOLEAN {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setBoolean(paramIndex, ((Boolean)value).booleanValue());
+            }
+        },
+        TIMESTAMP {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setTimestamp(paramIndex, (Timestamp)value);
+            }
+        },
+        DATE {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {   // java.util.Date is passed as timestamp
+                pstmt.setTimestamp(paramIndex, new Timestamp(((Date)value).getTime()));
+            }
+        },
+        BYTES {
+            @Override
+            public void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException
+            {
+                pstmt.setBytes(paramIndex, (byte[])value);
+            }
+        };
+        
+        /**
+         * Binds the value to the statement
+         * @param pstmt the prepared statement
+         * @param paramIndex the parameter index
+         * @param value the parameter value (not null)
+         * @throws SQLException if a database access error occurs
+         */
+        public abstract void bind(PreparedStatement pstmt, int paramIndex, Object value) throws SQLException;
+    }
+    
+    /**
+     * Maps the exact class of a parameter value to its binder.<BR>
+     * Values of other classes (including subclasses) are handled by addStatementParam() 
+     */
+    private static final Map<Class<?>, StatementParamBinder> paramBinders = new HashMap<Class<?>, StatementParamBinder>();
+    static
+    {
+        paramBinders.put(String.class,      StatementParamBinder.STRING);
+        paramBinders.put(Character.class,   StatementParamBinder.CHARACTER);
+        paramBinders.put(Integer.class,     StatementParamBinder.INTEGER);
+        paramBinders.put(Long.class,        StatementParamBinder.LONG);
+        paramBinders.put(Short.class,       StatementParamBinder.SHORT);
+        paramBinders.put(Byte.class,        StatementParamBinder.BYTE);
+        paramBinders.put(Double.class,      StatementParamBinder.DOUBLE);
+        paramBinders.put(Float.class,       StatementParamBinder.FLOAT);
+        paramBinders.put(BigDecimal.class,  StatementParamBinder.DECIMAL);
+        paramBinders.put(Boolean.class,     StatementParamBinder.BOOLEAN);
+        paramBinders.put(Timestamp.class,   StatementParamBinder.TIMESTAMP);
+        paramBinders.put(Date.class,        StatementParamBinder.DATE);
+        paramBinders.put(byte[].class,      StatementParamBinder.BYTES);
+    }
 
     /**
-     * Adds a statement parameter to a prepared statement
+     * Adds a statement parameter to a prepared statement.<BR>
+     * Parameter values are logged by prepareStatement().
      * 
      * @param pstmt the prepared statement
      * @param paramIndex the parameter index
@@ -422,32 +782,28 @@ public abstract class DBDatabaseDriver implements Serializable
     protected void addStatementParam(PreparedStatement pstmt, int paramIndex, Object value)
 		throws SQLException
 	{
-        if (value instanceof DBBlobData)
+        StatementParamBinder binder = (value!=null ? paramBinders.get(value.getClass()) : null);
+        if (binder!=null)
+        {   // use typed setter
+            binder.bind(pstmt, paramIndex, value);
+        }
+        else if (value instanceof DBBlobData)
         {
             // handling for blobs
             DBBlobData blobData = (DBBlobData)value;
             pstmt.setBinaryStream(paramIndex, blobData.getInputStream(), blobData.getLength());
-            // log
-            if (log.isDebugEnabled())
-                log.debug("Statement param {} set to BLOB data", paramIndex);
         }
         else if(value instanceof DBClobData)
         {
             // handling for clobs
             DBClobData clobData = (DBClobData)value;
             pstmt.setCharacterStream(paramIndex, clobData.getReader(), clobData.getLength());
-            // log
-            if (log.isDebugEnabled())
-                log.debug("Statement param {} set to CLOB data", paramIndex);
         }
         else if(value instanceof Date && !(value instanceof Timestamp))
         {
             // handling for dates
             Timestamp ts = new Timestamp(((Date)value).getTime());
             pstmt.setObject(paramIndex, ts);
-            // log
-            if (log.isDebugEnabled())
-                log.debug("Statement param {} set to date '{}'", paramIndex, ts);
         }
         else if((value instanceof Character) 
         	 || (value instanceof Enum<?>))
@@ -455,16 +811,10 @@ public abstract class DBDatabaseDriver implements Serializable
             // Objects that need String conversion
             String strval = value.toString();
             pstmt.setObject(paramIndex, strval);
-            // log
-            if (log.isDebugEnabled())
-                log.debug("Statement param {} set to '{}'", paramIndex, strval);
         }
         else
         {   // simple parameter value 
             pstmt.setObject(paramIndex, value);
-            // log
-            if (log.isDebugEnabled())
-                log.debug("Statement param {} set to '{}'", paramIndex, value);
         }
 	}
     
@@ -505,12 +855,22 @@ public abstract class DBDatabaseDriver implements Serializable
         else if (dataType == DataType.CLOB)
         {
             java.sql.Clob clob = rset.getClob(columnIndex);
-            return ((clob != null) ? clob.getSubString(1, (int) clob.length()) : null);
+            if (clob == null)
+                return null;
+            int length = (int) clob.length();
+            if (isLazyLob(length))
+                return new DBClobData(clob, length);
+            return clob.getSubString(1, length);
         } 
         else if (dataType == DataType.BLOB)
         { // Get bytes of a binary large object
             java.sql.Blob blob = rset.getBlob(columnIndex);
-            return ((blob != null) ? blob.getBytes(1, (int) blob.length()) : null);
+            if (blob == null)
+                return null;
+            int length = (int) blob.length();
+            if (isLazyLob(length))
+                return new DBBlobData(blob, length);
+            return blob.getBytes(1, length);
         } 
         else
         {
@@ -518,6 +878,150 @@ public abstract class DBDatabaseDriver implements Serializable
         }
     }
     
+    /**
+     * Returns the length above which LOBs are returned as handles by getResultValue().
+     * @return the lazy LOB threshold or -1 if LOBs are always read
+     */
+    public int getLazyLobThreshold()
+    {
+        return lazyLobThreshold;
+    }
+
+    /**
+     * Sets the length above which CLOB and BLOB values are not read when the row is read.<BR>
+     * Instead getResultValue() returns a DBClobData or DBBlobData object that reads the data when accessed.<BR>
+     * Such a value is only valid as long as the result set is open and positioned on the row it was read from.
+     * Hence lazy LOBs are only returned by DBReader.getValue(). Values loaded into a DBRecord 
+     * or returned by the query methods of DBDatabase are read immediately (see readLazyLob). 
+     * <P>
+     * @param threshold the number of characters or bytes above which LOBs are not read, 0 for all LOBs or -1 to always read LOBs
+     */
+    public void setLazyLobThreshold(int threshold)
+    {
+        if (threshold<-1)
+            throw new InvalidArgumentException("threshold", threshold);
+        this.lazyLobThreshold = threshold;
+    }
+    
+    /**
+     * Returns true if a LOB of the given length should not be read by getResultValue()
+     * @param length the length of the LOB
+     * @return true if a handle should be returned or false if the LOB should be read
+     */
+    protected boolean isLazyLob(long length)
+    {
+        return (lazyLobThreshold>=0 && length>lazyLobThreshold);
+    }
+
+    /**
+     * Reads the data of a lazy LOB returned by getResultValue().<BR>
+     * This must be called while the result set is still positioned on the row the value was read from.
+     * @param value a value returned by getResultValue()
+     * @return the String or byte array of a lazy LOB or the value itself otherwise
+     */
+    public static Object readLazyLob(Object value)
+    {
+        if ((value instanceof DBClobData) && ((DBClobData)value).isLazy())
+            return value.toString();
+        if ((value instanceof DBBlobData) && ((DBBlobData)value).isLazy())
+            return ((DBBlobData)value).getBytes();
+        return value;
+    }
+    
+    /**
+     * Reads a single column value from the given JDBC resultset and returns it as an int.<BR>
+     * For integer columns the value is read with ResultSet.getInt() thus avoiding the creation of a wrapper object.
+     * Null values are returned as 0. Use ResultSet.wasNull() to distinguish null values.
+     * <P>
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * 
+     * @return the value of the Column 
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public int getResultInt(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType == DataType.INTEGER || dataType == DataType.AUTOINC)
+            return rset.getInt(columnIndex);
+        // convert
+        return ObjectUtils.getInteger(getResultValue(rset, columnIndex, dataType));
+    }
+    
+    /**
+     * Reads a single column value from the given JDBC resultset and returns it as a long.<BR>
+     * For integer columns the value is read with ResultSet.getLong() thus avoiding the creation of a wrapper object.
+     * Null values are returned as 0. Use ResultSet.wasNull() to distinguish null values.
+     * <P>
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * 
+     * @return the value of the Column 
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public long getResultLong(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType == DataType.INTEGER || dataType == DataType.AUTOINC)
+            return rset.getLong(columnIndex);
+        // convert
+        return ObjectUtils.getLong(getResultValue(rset, columnIndex, dataType));
+    }
+    
+    /**
+     * Reads a single column value from the given JDBC resultset and returns it as a double.<BR>
+     * For numeric columns the value is read with ResultSet.getDouble() thus avoiding the creation of a wrapper object.
+     * Null values are returned as 0. Use ResultSet.wasNull() to distinguish null values.
+     * <P>
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * 
+     * @return the value of the Column 
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public double getResultDouble(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        switch (dataType)
+        {
+            case INTEGER:
+            case AUTOINC:
+            case DECIMAL:
+            case FLOAT:
+                return rset.getDouble(columnIndex);
+            default:
+                return ObjectUtils.getDouble(getResultValue(rset, columnIndex, dataType));
+        }
+    }
+    
+    /**
+     * Reads a single column value from the given JDBC resultset and returns it as a boolean.<BR>
+     * For boolean columns the value is read with ResultSet.getBoolean() thus avoiding the creation of a wrapper object.
+     * Null values are returned as false. Use ResultSet.wasNull() to distinguish null values.
+     * <P>
+     * @param rset the sql Resultset with the current data row
+     * @param columnIndex one based column Index of the desired column
+     * @param dataType the data type of the column
+     * 
+     * @return the value of the Column 
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public boolean getResultBoolean(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType == DataType.BOOL)
+            return rset.getBoolean(columnIndex);
+        // convert
+        return ObjectUtils.getBoolean(getResultValue(rset, columnIndex, dataType));
+    }
+    
     /**
      * Executes the select, update or delete SQL-Command with a Statement object.
      * 
@@ -533,26 +1037,34 @@ public abstract class DBDatabaseDriver implements Serializable
     public int executeSQL(String sqlCmd, Object[] sqlParams, Connection conn, DBSetGenKeys genKeys)
         throws SQLException
     {   // Execute the Statement
+        DBStatementListener listener = statementListener;
+        long start = (listener!=null ? System.nanoTime() : 0);
+        long prepared = 0;
+        long executed = 0;
         Statement stmt = null;
         try
         {
             int count = 0;
             if (sqlParams!=null)
             {   // Use a prepared statement
-                PreparedStatement pstmt = (genKeys!=null) 
-                    ? conn.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS)
-                    : conn.prepareStatement(sqlCmd);
+                PreparedStatement pstmt = createPreparedStatement(conn, sqlCmd, ResultSet.TYPE_FORWARD_ONLY, (genKeys!=null));
     	        stmt = pstmt;
 	            prepareStatement(pstmt, sqlParams); 
+	            if (listener!=null)
+	                prepared = System.nanoTime();
 	            count = pstmt.executeUpdate(); 
             }
             else
             {   // Execute a simple statement
                 stmt = conn.createStatement();
+                if (listener!=null)
+                    prepared = System.nanoTime();
                 count = (genKeys!=null)
                     ? stmt.executeUpdate(sqlCmd, Statement.RETURN_GENERATED_KEYS)
                     : stmt.executeUpdate(sqlCmd);
             }
+            if (listener!=null)
+                executed = System.nanoTime();
             // Retrieve any auto-generated keys
             if (genKeys!=null && count>0)
             {   // Return Keys
@@ -567,7 +1079,16 @@ public abstract class DBDatabaseDriver implements Serializable
                 }
             }
             // done
+            if (listener!=null)
+                notifyStatementListener(listener, sqlCmd, DBStatementInfo.StatementType.UPDATE, start, prepared, executed, count, null);
             return count;
+        } catch(SQLException e) {
+            // statement may not be reused
+            discard(stmt);
+            stmt = null;
+            if (listener!=null)
+                notifyStatementListener(listener, sqlCmd, DBStatementInfo.StatementType.UPDATE, start, prepared, executed, -1, e);
+            throw e;
         } finally
         {
             close(stmt);
@@ -585,13 +1106,16 @@ public abstract class DBDatabaseDriver implements Serializable
     public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
         throws SQLException
     {   // Execute the Statement
+        DBStatementListener listener = statementListener;
+        long start = (listener!=null ? System.nanoTime() : 0);
+        long prepared = 0;
         if (sqlCmdParams!=null)
         {   // Use a prepared statement
         	PreparedStatement pstmt = null;
+        	String lastCmd = null;
 	        try
 	        {
             	int pos=0;
-            	String lastCmd = null;
             	int[] result = new int[sqlCmd.length];
             	for (int i=0; i<=sqlCmd.length; i++)
             	{	// get cmd
@@ -601,19 +1125,27 @@ public abstract class DBDatabaseDriver implements Serializable
             			if (pstmt!=null)
             			{	// execute and close
 			        		log.debug("Executing batch containing {} statements", i-pos);
+			        		if (listener!=null)
+			        		    prepared = System.nanoTime();
             				int[] res = pstmt.executeBatch();
             				for (int j=0; j<res.length; j++)
             					result[pos+j]=res[j];
             				pos+=res.length;
             				close(pstmt);
             				pstmt = null;
+            				if (listener!=null)
+            				{   // notify and start next
+            				    notifyStatementListener(listener, lastCmd, DBStatementInfo.StatementType.BATCH, start, prepared, 0, getBatchRowCount(res), null);
+            				    start = System.nanoTime();
+            				    prepared = 0;
+            				}
             			}
             			// has next?
 	        			if (cmd==null)
 	        				break;
 	        			// new statement
 	        			log.debug("Creating prepared statement for batch: "+cmd);
-            			pstmt = conn.prepareStatement(cmd);
+            			pstmt = createPreparedStatement(conn, cmd, ResultSet.TYPE_FORWARD_ONLY, false);
             			lastCmd = cmd;
             		}
             		// add batch
@@ -625,6 +1157,13 @@ public abstract class DBDatabaseDriver implements Serializable
             		pstmt.addBatch();
             	}
 	            return result; 
+            } catch(SQLException e) {
+                // statement may not be reused
+                discard(pstmt);
+                pstmt = null;
+                if (listener!=null)
+                    notifyStatementListener(listener, lastCmd, DBStatementInfo.StatementType.BATCH, start, prepared, 0, -1, e);
+                throw e;
             } finally {
 	            close(pstmt);
 	        }
@@ -640,8 +1179,16 @@ public abstract class DBDatabaseDriver implements Serializable
             		stmt.addBatch(cmd);
             	}
         		log.debug("Executing batch containing {} statements", sqlCmd.length);
+        		if (listener!=null)
+        		    prepared = System.nanoTime();
 	            int result[] = stmt.executeBatch();
+	            if (listener!=null)
+	                notifyStatementListener(listener, getBatchSql(sqlCmd), DBStatementInfo.StatementType.BATCH, start, prepared, 0, getBatchRowCount(result), null);
 	            return result;
+            } catch(SQLException e) {
+                if (listener!=null)
+                    notifyStatementListener(listener, getBatchSql(sqlCmd), DBStatementInfo.StatementType.BATCH, start, prepared, 0, -1, e);
+                throw e;
             } finally {
 	            close(stmt);
 	        }
@@ -652,44 +1199,477 @@ public abstract class DBDatabaseDriver implements Serializable
     public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, Connection conn)
         throws SQLException
     {
+        return executeQuery(sqlCmd, sqlParams, scrollable, 0, conn);
+    }
+    
+    /**
+     * Executes a query and returns the ResultSet.<BR>
+     * If a fetch size other than 0 is supplied, the statement is configured using setFetchSize() and will not be cached.
+     * 
+     * @param sqlCmd the SQL-Command
+     * @param sqlParams array of sql command parameters used for prepared statements (Optional).
+     * @param scrollable true if the reader should be scrollable or false if not
+     * @param fetchSize the fetch size or 0 for the driver's default 
+     * @param conn a valid connection to the database.
+     * 
+     * @return the JDBC ResultSet
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public ResultSet executeQuery(String sqlCmd, Object[] sqlParams, boolean scrollable, int fetchSize, Connection conn)
+        throws SQLException
+    {
+        DBStatementListener listener = statementListener;
+        long start = (listener!=null ? System.nanoTime() : 0);
+        long prepared = 0;
         Statement stmt = null;
         try
         {   // Set scroll type
             int type = (scrollable ? ResultSet.TYPE_SCROLL_INSENSITIVE
                                    : ResultSet.TYPE_FORWARD_ONLY);
             // Create an execute a query statement
+            ResultSet rset;
 	        if (sqlParams!=null)
 	        {	// Use prepared statement
-	            PreparedStatement pstmt = conn.prepareStatement(sqlCmd, type, ResultSet.CONCUR_READ_ONLY);
+	            PreparedStatement pstmt = (fetchSize!=0) 
+	                ? conn.prepareStatement(sqlCmd, type, ResultSet.CONCUR_READ_ONLY)
+	                : createPreparedStatement(conn, sqlCmd, type, false);
 	            stmt = pstmt;
+	            if (fetchSize!=0)
+	                setFetchSize(pstmt, fetchSize, conn);
 	            prepareStatement(pstmt, sqlParams); 
-	            return pstmt.executeQuery();
+	            if (listener!=null)
+	                prepared = System.nanoTime();
+	            rset = pstmt.executeQuery();
 	        } else
 	        {	// Use simple statement
 	            stmt = conn.createStatement(type, ResultSet.CONCUR_READ_ONLY);
-	            return stmt.executeQuery(sqlCmd);
+	            if (fetchSize!=0)
+	                setFetchSize(stmt, fetchSize, conn);
+	            if (listener!=null)
+	                prepared = System.nanoTime();
+	            rset = stmt.executeQuery(sqlCmd);
 	        }
+	        // remember until released
+	        if (listener!=null)
+	            addPendingQuery(stmt, sqlCmd, start, prepared);
+	        return rset;
         } catch(SQLException e) {
             // close statement (if not null)
             log.error("Error executing query '"+sqlCmd+"' --> "+e.getMessage(), e);
-            close(stmt);
+            discard(stmt);
+            if (listener!=null)
+                notifyStatementListener(listener, sqlCmd, DBStatementInfo.StatementType.QUERY, start, prepared, 0, -1, e);
             throw e;
         }
     }
     
+    /**
+     * Sets the fetch size of a query statement.<br>
+     * Drivers may override this in order to apply vendor specific streaming semantics. 
+     * 
+     * @param stmt the statement
+     * @param fetchSize the fetch size
+     * @param conn the connection
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    protected void setFetchSize(Statement stmt, int fetchSize, Connection conn)
+        throws SQLException
+    {
+        stmt.setFetchSize(fetchSize);
+    }
+    
+    /**
+     * Prepares a connection for streaming a query result (see DBReader.openStreaming()).<br>
+     * Drivers may override this in order to apply vendor specific requirements for cursor based fetching.
+     * 
+     * @param conn the connection
+     * @return true if the connection has been changed and endStreaming() must be called when the reader is closed
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public boolean beginStreaming(Connection conn)
+        throws SQLException
+    {
+        return false;
+    }
+
+    /**
+     * Restores a connection that has been changed by beginStreaming().
+     * 
+     * @param conn the connection
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public void endStreaming(Connection conn)
+        throws SQLException
+    {
+        // nothing to do
+    }
+    
+    /**
+     * Returns the fetch size used for streaming queries (see DBReader.openStreaming()).
+     * @return the streaming fetch size
+     */
+    public int getStreamingFetchSize()
+    {
+        return streamingFetchSize;
+    }
+
+    /**
+     * Sets the fetch size used for streaming queries (see DBReader.openStreaming()).
+     * @param streamingFetchSize the fetch size
+     */
+    public void setStreamingFetchSize(int streamingFetchSize)
+    {
+        this.streamingFetchSize = streamingFetchSize;
+    }
+    
+    /**
+     * Creates a prepared statement for the given sql command.<br>
+     * If the statement cache is enabled, a cached statement is returned if available.<br>
+     * Statements obtained by this method must be released by calling releaseStatement().
+     * 
+     * @param conn a valid connection to the database.
+     * @param sqlCmd the SQL-Command
+     * @param resultSetType the result set type (ResultSet.TYPE_FORWARD_ONLY or ResultSet.TYPE_SCROLL_INSENSITIVE)
+     * @param genKeys flag whether auto generated keys should be returned
+     * 
+     * @return the prepared statement
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    protected PreparedStatement createPreparedStatement(Connection conn, String sqlCmd, int resultSetType, boolean genKeys)
+        throws SQLException
+    {
+        DBStatementCache cache = statementCache;
+        if (cache!=null)
+        {   // Find in cache
+            PreparedStatement pstmt = cache.getStatement(conn, sqlCmd, resultSetType, genKeys);
+            if (pstmt!=null)
+                return pstmt;
+        }
+        // Create new statement
+        PreparedStatement pstmt = (genKeys) 
+            ? conn.prepareStatement(sqlCmd, Statement.RETURN_GENERATED_KEYS)
+            : conn.prepareStatement(sqlCmd, resultSetType, ResultSet.CONCUR_READ_ONLY);
+        // Add to cache
+        if (cache!=null)
+            cache.addStatement(pstmt, conn, sqlCmd, resultSetType, genKeys);
+        return pstmt;
+    }
+    
+    /**
+     * Releases a statement after use.<br>
+     * If the statement is managed by the statement cache it is returned to the cache, otherwise it is closed.
+     * 
+     * @param stmt the statement to release
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public void releaseStatement(Statement stmt)
+        throws SQLException
+    {
+        releaseStatement(stmt, -1);
+    }
+    
+    /**
+     * Releases a query statement after its result has been read.<br>
+     * If a statement listener is registered, the listener is notified about the completed query.
+     * 
+     * @param stmt the statement to release
+     * @param rowCount the number of rows read from the result or -1 if unknown
+     * 
+     * @throws SQLException if a database access error occurs
+     */
+    public void releaseStatement(Statement stmt, int rowCount)
+        throws SQLException
+    {
+        if (stmt==null)
+            return;
+        // Notify listener
+        if (pendingQueries!=null)
+            removePendingQuery(stmt, rowCount);
+        // Return to cache
+        DBStatementCache cache = statementCache;
+        if (cache!=null && cache.releaseStatement(stmt))
+            return;
+        // Close
+        stmt.close();
+    }
+    
     // close
     protected void close(Statement stmt)
     {
         try
         { // Statement close
-            if (stmt != null)
-                stmt.close();
+            releaseStatement(stmt);
         } catch (SQLException sqle) 
         {
             log.error("close statement:" + sqle.toString());
         }
     }
     
+    // discard
+    protected void discard(Statement stmt)
+    {
+        if (stmt==null)
+            return;
+        // Forget pending query
+        Map<Statement, PendingQuery> pending = pendingQueries;
+        if (pending!=null)
+        {
+            synchronized(pending)
+            {
+                pending.remove(stmt);
+            }
+        }
+        // Remove from cache
+        DBStatementCache cache = statementCache;
+        if (cache!=null)
+            cache.discardStatement(stmt);
+        else
+            close(stmt);
+    }
+    
+    /**
+     * Returns the maximum number of prepared statements held by the statement cache.
+     * @return the statement cache size or 0 if the statement cache is disabled
+     */
+    public int getStatementCacheSize()
+    {
+        return (statementCache!=null ? statementCache.getMaxSize() : 0);
+    }
+
+    /**
+     * Enables or disables the prepared statement cache.<br>
+     * When enabled, prepared statements are kept open and reused for identical SQL on the same connection.<br>
+     * Cached statements are keyed by the connection object. They must be released by calling clearStatementCache(conn)
+     * before a connection is closed or returned to a connection pool.<br>
+     * Pools that return a new proxy object on every checkout will never hit cached statements of a previous checkout.
+     * 
+     * @param size the maximum number of statements to cache or 0 to disable the cache
+     */
+    public void setStatementCacheSize(int size)
+    {
+        if (size<0)
+            throw new InvalidArgumentException("size", size);
+        // discard old cache
+        if (statementCache!=null)
+            statementCache.clear();
+        // create new cache
+        statementCache = (size>0 ? new DBStatementCache(size) : null);
+        log.info("Statement cache size set to {}", size);
+    }
+
+    /**
+     * Returns the prepared statement cache
+     * @return the statement cache or null if the statement cache is disabled
+     */
+    public DBStatementCache getStatementCache()
+    {
+        return statementCache;
+    }
+
+    /**
+     * Returns the number of statements that have been served from the statement cache
+     * @return the number of cache hits
+     */
+    public long getStatementCacheHits()
+    {
+        return (statementCache!=null ? statementCache.getHitCount() : 0);
+    }
+
+    /**
+     * Returns the number of statements that had to be prepared despite the statement cache being enabled
+     * @return the number of cache misses
+     */
+    public long getStatementCacheMisses()
+    {
+        return (statementCache!=null ? statementCache.getMissCount() : 0);
+    }
+
+    /**
+     * Closes all cached statements of a connection.<br>
+     * This must be called before a connection is closed or returned to a connection pool.
+     * 
+     * @param conn the connection
+     */
+    public void clearStatementCache(Connection conn)
+    {
+        if (statementCache!=null)
+            statementCache.clear(conn);
+    }
+    
+    /**
+     * Returns the statement listener
+     * @return the statement listener or null if no listener is registered
+     */
+    public DBStatementListener getStatementListener()
+    {
+        return statementListener;
+    }
+
+    /**
+     * Sets a listener that is notified about every statement executed by this driver.<br>
+     * This includes all queries, updates and batches executed via DBDatabase, DBReader and DBSQLScript.
+     * 
+     * @param listener the statement listener or null to remove the current listener
+     */
+    public synchronized void setStatementListener(DBStatementListener listener)
+    {
+        if (listener!=null && pendingQueries==null)
+            pendingQueries = new IdentityHashMap<Statement, PendingQuery>();
+        if (listener==null && pendingQueries!=null)
+        {   // forget pending queries
+            synchronized(pendingQueries)
+            {
+                pendingQueries.clear();
+            }
+        }
+        this.statementListener = listener;
+    }
+    
+    /**
+     * Removes queries whose statement has been closed directly instead of using releaseStatement() or DBDatabase.closeResultSet().<BR>
+     * Such queries are reported to the statement listener with an unknown row count.<BR>
+     * This is called automatically at regular intervals while queries are executed.
+     * 
+     * @return the number of queries removed
+     */
+    public int purgeClosedQueries()
+    {
+        Map<Statement, PendingQuery> pending = pendingQueries;
+        if (pending==null)
+            return 0;
+        // collect closed statements
+        List<PendingQuery> closed = new ArrayList<PendingQuery>();
+        synchronized(pending)
+        {
+            Iterator<Map.Entry<Statement, PendingQuery>> it = pending.entrySet().iterator();
+            while (it.hasNext())
+            {
+                Map.Entry<Statement, PendingQuery> entry = it.next();
+                if (isStatementClosed(entry.getKey()))
+                {   closed.add(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+        // report
+        DBStatementListener listener = statementListener;
+        for (PendingQuery query : closed)
+        {
+            log.warn("Statement for query '{}' has been closed without being released.", query.sqlCmd);
+            if (listener!=null)
+                notifyStatementListener(listener, query.sqlCmd, DBStatementInfo.StatementType.QUERY, query.start, query.prepared, query.executed, -1, null);
+        }
+        return closed.size();
+    }
+    
+    private static boolean isStatementClosed(Statement stmt)
+    {
+        try
+        {   return stmt.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+    
+    /**
+     * Notifies the statement listener about a completed statement.<br>
+     * Any exception thrown by the listener is logged and ignored.
+     * 
+     * @param listener the statement listener
+     * @param sqlCmd the sql command
+     * @param type the statement type
+     * @param start the nano time at which the statement was started
+     * @param prepared the nano time at which the statement was prepared or 0 if the statement has failed before
+     * @param executed the nano time at which the statement was executed or 0 if the statement has not been fully executed
+     * @param rowCount the number of rows read or affected or -1 if unknown
+     * @param error the error or null if the statement was successful
+     */
+    protected void notifyStatementListener(DBStatementListener listener, String sqlCmd, DBStatementInfo.StatementType type,
+                                           long start, long prepared, long executed, int rowCount, SQLException error)
+    {
+        long end = System.nanoTime();
+        if (prepared==0)
+            prepared = end;
+        if (executed==0)
+            executed = end;
+        try
+        {   // notify
+            listener.statementExecuted(new DBStatementInfo(sqlCmd, type, prepared-start, executed-prepared, end-executed, rowCount, error));
+        } catch(RuntimeException e) {
+            log.error("Statement listener failed: "+e.toString(), e);
+        }
+    }
+
+    /**
+     * A query that has been executed but whose result has not been released yet
+     */
+    private static final class PendingQuery
+    {
+        final String sqlCmd;
+        final long   start;
+        final long   prepared;
+        final long   executed;
+
+        PendingQuery(String sqlCmd, long start, long prepared, long executed)
+        {
+            this.sqlCmd = sqlCmd;
+            this.start = start;
+            this.prepared = prepared;
+            this.executed = executed;
+        }
+    }
+
+    private void addPendingQuery(Statement stmt, String sqlCmd, long start, long prepared)
+    {
+        PendingQuery query = new PendingQuery(sqlCmd, start, prepared, System.nanoTime());
+        Map<Statement, PendingQuery> pending = pendingQueries;
+        boolean purge;
+        synchronized(pending)
+        {
+            pending.put(stmt, query);
+            purge = (++pendingQueryAddCount % PENDING_QUERY_PURGE_INTERVAL)==0;
+        }
+        // remove statements that have been closed directly
+        if (purge)
+            purgeClosedQueries();
+    }
+
+    private void removePendingQuery(Statement stmt, int rowCount)
+    {
+        PendingQuery query;
+        Map<Statement, PendingQuery> pending = pendingQueries;
+        synchronized(pending)
+        {
+            query = pending.remove(stmt);
+        }
+        DBStatementListener listener = statementListener;
+        if (query!=null && listener!=null)
+            notifyStatementListener(listener, query.sqlCmd, DBStatementInfo.StatementType.QUERY, query.start, query.prepared, query.executed, rowCount, null);
+    }
+
+    private static int getBatchRowCount(int[] result)
+    {
+        int count = 0;
+        for (int i=0; i<result.length; i++)
+        {   // Statement.SUCCESS_NO_INFO and EXECUTE_FAILED are negative
+            if (result[i]>0)
+                count += result[i];
+        }
+        return count;
+    }
+
+    private static String getBatchSql(String[] sqlCmd)
+    {
+        // the first statement represents the batch
+        return (sqlCmd.length>0 ? sqlCmd[0] : "");
+    }
+    
     /**
      * Creates a sql string for a given value. 
      * Text will be enclosed in single quotes and existing single quotes will be doubled.
@@ -891,6 +1871,17 @@ public abstract class DBDatabaseDriver implements Serializable
     {
         // Override to implement closing behaviour
     }
+    
+    /**
+     * Called by DBDatabase.open() and DBDatabase.close() to keep track of open databases
+     */
+    synchronized void updateOpenDatabaseCount(boolean opened)
+    {
+        if (opened)
+            openDatabaseCount++;
+        else if (openDatabaseCount>0)
+            openDatabaseCount--;
+    }
 
     /**
      * Checks the database whether or not it is consistent with the description.
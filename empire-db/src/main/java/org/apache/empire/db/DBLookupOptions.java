@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+
+import org.apache.empire.commons.Options;
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class provides the options of a lookup table which are loaded lazily using {@link DBDatabase#queryOptionList(DBCommand, Connection, Options)}.<br>
+ * The options are loaded once on first access and then shared by all callers until they expire or {@link #clear()} is called.<br>
+ * <P>
+ * The command must select the option value as the first and the option text as the second column, e.g.:
+ * <pre>
+ *   DBCommand cmd = db.createCommand();
+ *   cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME);
+ *   cmd.orderBy(db.DEPARTMENT.NAME);
+ *   DBLookupOptions departments = new DBLookupOptions(cmd);
+ *   ...
+ *   Options options = departments.getOptions(conn);
+ * </pre>
+ * Since the options returned are shared, they must not be modified by the caller.
+ */
+public class DBLookupOptions
+{
+    private static final Logger log = LoggerFactory.getLogger(DBLookupOptions.class);
+    
+    private final DBCommand cmd;
+    private final long timeToLive;
+    // the loaded options
+    private volatile Options options = null;
+    private volatile long expires = 0;
+
+    /**
+     * Creates a lookup options source
+     * @param cmd the command selecting the option value and text
+     * @param timeToLive the number of milliseconds after which the options are loaded again or 0 for no limit
+     */
+    public DBLookupOptions(DBCommand cmd, long timeToLive)
+    {
+        DBColumnExpr[] select = (cmd!=null ? cmd.getSelectExprList() : null);
+        if (select==null || select.length<2)
+            throw new InvalidArgumentException("cmd", cmd);
+        if (timeToLive<0)
+            throw new InvalidArgumentException("timeToLive", timeToLive);
+        // the command is copied since it must not change
+        this.cmd = cmd.clone();
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Creates a lookup options source without a time limit
+     * @param cmd the command selecting the option value and text
+     */
+    public DBLookupOptions(DBCommand cmd)
+    {
+        this(cmd, 0);
+    }
+
+    /**
+     * Returns the number of milliseconds after which the options are loaded again
+     * @return the time to live or 0 if the options do not expire
+     */
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    /**
+     * Returns true if the options have been loaded and have not expired 
+     * @return true if the options are loaded or false otherwise
+     */
+    public boolean isLoaded()
+    {
+        return (options!=null && !isExpired());
+    }
+
+    /**
+     * Returns the options loaded previously.
+     * @return the options or null if the options have not been loaded
+     */
+    public Options getOptions()
+    {
+        return options;
+    }
+
+    /**
+     * Returns the options and loads them if necessary.
+     * @param conn a valid connection to the database
+     * @return the options 
+     */
+    public Options getOptions(Connection conn)
+    {
+        Options result = options;
+        if (result!=null && !isExpired())
+            return result;
+        // load
+        synchronized(this)
+        {   // may have been loaded by another thread
+            result = options;
+            if (result!=null && !isExpired())
+                return result;
+            result = loadOptions(conn);
+            expires = (timeToLive>0 ? System.currentTimeMillis()+timeToLive : 0);
+            options = result;
+        }
+        return result;
+    }
+
+    /**
+     * Discards the loaded options.
+     * The options will be loaded again on next access.
+     */
+    public void clear()
+    {
+        options = null;
+    }
+
+    /**
+     * Loads the options from the database.<br>
+     * Override this function in order to add further options.
+     * @param conn a valid connection to the database
+     * @return the options
+     */
+    protected Options loadOptions(Connection conn)
+    {
+        Options result = new Options();
+        int count = cmd.getDatabase().queryOptionList(cmd, conn, result);
+        if (log.isDebugEnabled())
+            log.debug("{} lookup options loaded.", count);
+        return result;
+    }
+    
+    private boolean isExpired()
+    {
+        long exp = expires;
+        return (exp!=0 && exp<System.currentTimeMillis());
+    }
+}
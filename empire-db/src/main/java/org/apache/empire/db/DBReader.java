@@ -18,27 +18,27 @@
  */
 package org.apache.empire.db;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectOutputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.commons.beanutils.ConstructorUtils;
 import org.apache.empire.commons.ObjectUtils;
 import org.apache.empire.data.ColumnExpr;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.apache.empire.db.exceptions.QueryNoResultException;
-import org.apache.empire.exceptions.BeanInstantiationException;
 import org.apache.empire.exceptions.InvalidArgumentException;
 import org.apache.empire.exceptions.ObjectNotValidException;
 import org.apache.empire.xml.XMLUtil;
@@ -70,7 +70,7 @@ import org.w3c.dom.Element;
  *
  *
  */
-public class DBReader extends DBRecordData
+public class DBReader extends DBRecordData implements Closeable
 {
     private final static long serialVersionUID = 1L;
   
@@ -222,17 +222,83 @@ public class DBReader extends DBRecordData
         }
     }
 
+    /**
+     * This is a forward iterator which closes the reader when no more records are available.
+     * The same limitations as for the DBReaderForwardIterator apply.
+     */
+    public class DBReaderClosingIterator extends DBReaderForwardIterator
+    {
+        public DBReaderClosingIterator()
+        {
+            super(-1);
+        }
+
+        /**
+         * Implements the Iterator Interface.
+         * Closes the reader if there are no more records.
+         * 
+         * @return true if there is another record to read
+         */
+        @Override
+        public boolean hasNext()
+        {
+            if (rset == null)
+                return false; // already closed
+            boolean hasNext = super.hasNext();
+            if (hasNext == false)
+                close();
+            return hasNext;
+        }
+    }
+
     // Logger
     protected static final Logger    log               = LoggerFactory.getLogger(DBReader.class);
     
+    /**
+     * Defines how open readers are tracked in order to find readers which have not been closed.
+     */
+    public enum TrackingMode
+    {
+        /**
+         * Open readers are not tracked
+         */
+        OFF,
+        /**
+         * Open readers are counted per database (see DBDatabase.getOpenReaderCount())
+         */
+        COUNTING,
+        /**
+         * Open readers are counted and the stack of every n-th opening call is recorded (see setTrackingSampleRate())
+         */
+        SAMPLED,
+        /**
+         * Open readers are counted and the stack of every opening call is recorded
+         */
+        FULL
+    }
+    
     /**
      * Support for finding code errors where a DBRecordSet is opened but not closed
      */
     private static ThreadLocal<Map<DBReader, Exception>> threadLocalOpenResultSets = new ThreadLocal<Map<DBReader, Exception>>();
     
+    private static volatile TrackingMode trackingMode = TrackingMode.FULL;
+    private static volatile int          trackingSampleRate = 100;
+    private static final AtomicLong      trackingSampleCount = new AtomicLong();
+    
     // Object references
     private DBDatabase     db                = null;
     private DBColumnExpr[] colList           = null;
+    // Field indexes of the rowset columns (built on demand)
+    private transient Map<DBRowSet, int[]> fieldIndexMap = null;
+    // number of rows read (reported to the statement listener)
+    private transient int rowCount = 0;
+    // connection to restore when closed (see openStreaming)
+    private transient Connection streamingConn = null;
+    
+    // Tracking
+    private transient boolean counted        = false;
+    private transient boolean traced         = false;
 
     // Direct column access
     protected ResultSet    rset              = null;
@@ -299,6 +365,31 @@ public class DBReader extends DBRecordData
         return -1;
     }
 
+    /**
+     * Returns the field indexes of all columns of a rowset.<BR>
+     * The indexes are determined once for each rowset and reused until the reader is closed or opened again.
+     * This allows to initialize records from a reader without searching the select list for each row.
+     * 
+     * @param rowset the rowset
+     * @return an array containing the field index for each column of the rowset or -1 if the column is not provided
+     */
+    protected int[] getFieldIndexes(DBRowSet rowset)
+    {
+        if (fieldIndexMap==null)
+            fieldIndexMap = new IdentityHashMap<DBRowSet, int[]>();
+        // find
+        List<DBColumn> columns = rowset.getColumns();
+        int[] fieldIndexes = fieldIndexMap.get(rowset);
+        if (fieldIndexes==null || fieldIndexes.length!=columns.size())
+        {   // build now
+            fieldIndexes = new int[columns.size()];
+            for (int i=0; i<fieldIndexes.length; i++)
+                fieldIndexes[i] = getFieldIndex(columns.get(i));
+            fieldIndexMap.put(rowset, fieldIndexes);
+        }
+        return fieldIndexes;
+    }
+
     /** Get the column Expression at position */
     @Override
     public DBColumnExpr getColumnExpr(int iColumn)
@@ -378,6 +469,118 @@ public class DBReader extends DBRecordData
         }
     }
 
+    /**
+     * Returns a data value identified by the column index.<BR>
+     * Integer columns are read directly from the resultset without creating a wrapper object.<BR>
+     * Null values are returned as 0. Call wasNull() afterwards in order to detect null values.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public int getInt(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultInt(rset, index + 1, colList[index].getDataType());
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns a data value identified by the column index.<BR>
+     * Integer columns are read directly from the resultset without creating a wrapper object.<BR>
+     * Null values are returned as 0. Call wasNull() afterwards in order to detect null values.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public long getLong(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultLong(rset, index + 1, colList[index].getDataType());
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns a data value identified by the column index.<BR>
+     * Numeric columns are read directly from the resultset without creating a wrapper object.<BR>
+     * Null values are returned as 0. Call wasNull() afterwards in order to detect null values.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public double getDouble(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultDouble(rset, index + 1, colList[index].getDataType());
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns a data value identified by the column index.<BR>
+     * Boolean columns are read directly from the resultset without creating a wrapper object.<BR>
+     * Null values are returned as false. Call wasNull() afterwards in order to detect null values.
+     * 
+     * @param index index of the column
+     * @return the value
+     */
+    @Override
+    public boolean getBoolean(int index)
+    {
+        // Check params
+        if (index < 0 || index >= colList.length)
+            throw new InvalidArgumentException("index", index);
+        try
+        {   // Get Value from Resultset
+            return db.driver.getResultBoolean(rset, index + 1, colList[index].getDataType());
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
+    /**
+     * Returns whether the last value read from the current row was null.<BR>
+     * This allows to detect null values after calling getInt(), getLong(), getDouble() or getBoolean()
+     * without reading the value again as isNull() does.
+     * 
+     * @return true if the last value read was null or false otherwise
+     */
+    public boolean wasNull()
+    {
+        try
+        {   // Check Resultset
+            if (rset == null)
+                throw new ObjectNotValidException(this);
+            return rset.wasNull();
+        } catch (SQLException e)
+        { // Operation failed
+            throw new EmpireSQLException(this, e);
+        }
+    }
+
     /** 
      * Checks if the rowset is open
      *  
@@ -407,13 +610,77 @@ public class DBReader extends DBRecordData
             close();
         // SQL Command
         String sqlCmd = cmd.getSelect();
+        // Open
+        open(cmd.getDatabase(), sqlCmd, cmd.getParamValues(), cmd.getSelectExprList(), scrollable, cmd.getFetchSize(), conn);
+    }
+
+    /**
+     * Opens the reader for reading large query results with bounded memory.<BR>
+     * The reader is forward only and the statement is configured for streaming using the fetch size of the command
+     * or - if not set - the streaming fetch size of the driver (see DBDatabaseDriver.getStreamingFetchSize()).<BR>
+     * Depending on the driver additional requirements may apply, e.g. PostgreSQL turns off auto-commit until the reader is closed
+     * (see DBDatabaseDriver.beginStreaming()).<BR>
+     * <P>
+     * Use closingIterator() to iterate over all rows and close the reader after the last row has been read.
+     * <P>
+     * @param cmd the SQL-Command with cmd.getSelect()
+     * @param conn a valid JDBC connection.
+     */
+    public void openStreaming(DBCommandExpr cmd, Connection conn)
+    {
+        if (isOpen())
+            close();
+        // SQL Command
+        String sqlCmd = cmd.getSelect();
+        // Fetch size
+        DBDatabase db = cmd.getDatabase();
+        int fetchSize = cmd.getFetchSize();
+        if (fetchSize==0 && db.getDriver()!=null)
+            fetchSize = db.getDriver().getStreamingFetchSize();
+        // Prepare the connection
+        boolean restore = false;
+        try
+        {
+            if (db.getDriver()!=null)
+                restore = db.getDriver().beginStreaming(conn);
+            // Open
+            open(db, sqlCmd, cmd.getParamValues(), cmd.getSelectExprList(), false, fetchSize, conn);
+        } catch (SQLException e) {
+            throw new EmpireSQLException(db, e);
+        } finally {
+            if (restore && rset==null)
+                endStreaming(conn);
+        }
+        // restore when closed
+        if (restore)
+            streamingConn = conn;
+    }
+
+    /**
+     * Opens the reader by executing a previously generated SQL statement.<BR>
+     * This is used internally for statements that have been cached by a rowset.<BR>
+     * <P>
+     * @param db the database
+     * @param sqlCmd the SQL select statement
+     * @param sqlParams the statement parameters (Optional)
+     * @param selectExprList the column expressions of the select list in the order of the statement
+     * @param scrollable true if the reader should be scrollable or false if not
+     * @param fetchSize the JDBC fetch size or 0 to use the driver's default
+     * @param conn a valid JDBC connection.
+     */
+    protected void open(DBDatabase db, String sqlCmd, Object[] sqlParams, DBColumnExpr[] selectExprList, boolean scrollable, int fetchSize, Connection conn)
+    {
+        if (isOpen())
+            close();
         // Create Statement
-        db = cmd.getDatabase();
-        rset = db.executeQuery(sqlCmd, cmd.getParamValues(), scrollable, conn);
+        this.db = db;
+        rset = db.executeQuery(sqlCmd, sqlParams, scrollable, fetchSize, conn);
+        rowCount = 0;
         if (rset==null)
             throw new QueryNoResultException(sqlCmd);
         // successfully opened
-        colList = cmd.getSelectExprList();
+        colList = selectExprList;
+        fieldIndexMap = null;
         addOpenResultSet();
     }
 
@@ -470,12 +737,19 @@ public class DBReader extends DBRecordData
             // Close Recordset
             if (rset != null)
             {
-                getDatabase().closeResultSet(rset);
+                getDatabase().closeResultSet(rset, rowCount);
                 removeOpenResultSet();
             }
             // Detach columns
             colList = null;
+            fieldIndexMap = null;
             rset = null;
+            // Restore the connection
+            if (streamingConn != null)
+            {
+                endStreaming(streamingConn);
+                streamingConn = null;
+            }
             // Done
         } catch (Exception e)
         { // What's wrong here?
@@ -483,6 +757,20 @@ public class DBReader extends DBRecordData
         }
     }
 
+    /**
+     * Restores a connection that has been prepared for streaming
+     */
+    private void endStreaming(Connection conn)
+    {
+        try
+        {   // restore
+            if (db!=null && db.getDriver()!=null)
+                db.getDriver().endStreaming(conn);
+        } catch (SQLException e) {
+            log.error("Unable to restore the connection after streaming: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Moves the cursor down the given number of rows.
      * 
@@ -552,6 +840,7 @@ public class DBReader extends DBRecordData
                 close();
                 return false;
             }
+            rowCount++;
             return true;
 
         } catch (SQLException e) {
@@ -593,6 +882,21 @@ public class DBReader extends DBRecordData
         return iterator(-1);
     }
 
+    /**
+     * Returns a forward only row iterator which closes the reader after the last row has been read.<BR>
+     * This is intended for streaming large results (see openStreaming()).<BR>
+     * If the iteration is stopped before the end, the reader must still be closed explicitly.  
+     * There can only be one iterator at a time.
+     * <P>
+     * @return the row iterator
+     */
+    public Iterator<DBRecordData> closingIterator()
+    {
+        if (iterator == null && rset != null)
+            iterator = new DBReaderClosingIterator();
+        return iterator;
+    }
+
     /**
      * <PRE>
      * initializes a DBRecord object with the values of the current row.
@@ -621,7 +925,6 @@ public class DBReader extends DBRecordData
      * 
      * @return the list of T
      */
-    @SuppressWarnings("unchecked")
     public <C extends Collection<T>, T> C getBeanList(C c, Class<T> t, int maxCount)
     {
         // Check Recordset
@@ -629,47 +932,19 @@ public class DBReader extends DBRecordData
         {   // Resultset not available
             throw new ObjectNotValidException(this);
         }
-        // Query List
-        try
-        {
-            // Check whether we can use a constructor
-            Class[] paramTypes = new Class[getFieldCount()];
-            for (int i = 0; i < colList.length; i++)
-                paramTypes[i] = DBExpr.getValueClass(colList[i].getDataType()); 
-            // Find Constructor
-            Constructor ctor = findMatchingAccessibleConstructor(t, paramTypes);
-            Object[] args = (ctor!=null) ? new Object[getFieldCount()] : null; 
-            
-            // Create a list of beans
-            while (moveNext() && maxCount != 0)
-            { // Create bean an init
-                if (ctor!=null)
-                {   // Use Constructor
-                    Class<?>[] ctorParamTypes = ctor.getParameterTypes();
-                    for (int i = 0; i < getFieldCount(); i++)
-                        args[i] = ObjectUtils.convert(ctorParamTypes[i], getValue(i));
-                    T bean = (T)ctor.newInstance(args);
-                    c.add(bean);
-                }
-                else
-                {   // Use Property Setters
-                    T bean = t.newInstance();
-                    getBeanProperties(bean);
-                    c.add(bean);
-                }
-                // Decrease count
-                if (maxCount > 0)
-                    maxCount--;
-            }
-            // done
-            return c;
-        } catch (InvocationTargetException e) {
-            throw new BeanInstantiationException(t, e);
-        } catch (IllegalAccessException e) {
-            throw new BeanInstantiationException(t, e);
-        } catch (InstantiationException e) {
-            throw new BeanInstantiationException(t, e);
+        // Get the mapper
+        DBBeanMapper<T> mapper = DBBeanMapper.getInstance(t, colList);
+        boolean useHook = DBBeanMapper.isBeanPropertyHookOverridden(getClass());
+        // Create a list of beans
+        while (maxCount != 0 && moveNext())
+        { // Create bean an init
+            c.add(mapper.createBean(this, useHook));
+            // Decrease count
+            if (maxCount > 0)
+                maxCount--;
         }
+        // done
+        return c;
     }
     
     /**
@@ -807,8 +1082,20 @@ public class DBReader extends DBRecordData
      * 
      * @author bond
      */
-    private synchronized void addOpenResultSet()
+    private void addOpenResultSet()
     {
+        TrackingMode mode = trackingMode;
+        if (mode==TrackingMode.OFF)
+            return;
+        // count
+        db.notifyReaderOpened();
+        counted = true;
+        // record the stack?
+        if (mode==TrackingMode.COUNTING)
+            return;
+        if (mode==TrackingMode.SAMPLED && (trackingSampleCount.incrementAndGet() % trackingSampleRate)!=0)
+            return;
+        traced = true;
         // add this to the vector of open resultsets on this thread
         Map<DBReader, Exception> openResultSets = threadLocalOpenResultSets.get();
         if (openResultSets == null)
@@ -836,10 +1123,19 @@ public class DBReader extends DBRecordData
      * 
      * @author bond
      */
-    private synchronized void removeOpenResultSet()
+    private void removeOpenResultSet()
     {
+        if (counted)
+        {   // decrease count
+            db.notifyReaderClosed();
+            counted = false;
+        }
+        if (traced==false)
+            return;
+        traced = false;
+        // remove this from the open resultsets on this thread
         Map<DBReader, Exception> openResultSets = threadLocalOpenResultSets.get();
-        if (openResultSets.containsKey(this) == false)
+        if (openResultSets==null || openResultSets.containsKey(this) == false)
         {
             log
                .error(
@@ -859,56 +1155,48 @@ public class DBReader extends DBRecordData
     }
 
     /**
-     * copied from org.apache.commons.beanutils.ConstructorUtils since it's private there
-     */
-    @SuppressWarnings("unchecked")
-    private static Constructor findMatchingAccessibleConstructor(Class clazz, Class[] parameterTypes)
-    {
-        // See if we can find the method directly
-        // probably faster if it works
-        // (I am not sure whether it's a good idea to run into Exceptions)
-        // try {
-        //     Constructor ctor = clazz.getConstructor(parameterTypes);
-        //     try {
-        //         // see comment in org.apache.commons.beanutils.ConstructorUtils
-        //         ctor.setAccessible(true);
-        //     } catch (SecurityException se) { /* ignore */ }
-        //     return ctor;
-        // } catch (NoSuchMethodException e) { /* SWALLOW */ }
-
-        // search through all constructors 
-        int paramSize = parameterTypes.length;
-        Constructor[] ctors = clazz.getConstructors();
-        for (int i = 0, size = ctors.length; i < size; i++)
-        {   // compare parameters
-            Class[] ctorParams = ctors[i].getParameterTypes();
-            int ctorParamSize = ctorParams.length;
-            if (ctorParamSize == paramSize)
-            {   // Param Size matches
-                boolean match = true;
-                for (int n = 0; n < ctorParamSize; n++)
-                {
-                    if (!ObjectUtils.isAssignmentCompatible(ctorParams[n], parameterTypes[n]))
-                    {
-                        match = false;
-                        break;
-                    }
-                }
-                if (match) {
-                    // get accessible version of method
-                    Constructor ctor = ConstructorUtils.getAccessibleConstructor(ctors[i]);
-                    if (ctor != null) {
-                        try {
-                            ctor.setAccessible(true);
-                        } catch (SecurityException se) { /* ignore */ }
-                        return ctor;
-                    }
-                }
-            }
-        }
-        return null;
+     * Returns the mode used for tracking open readers.
+     * @return the tracking mode
+     */
+    public static TrackingMode getTrackingMode()
+    {
+        return trackingMode;
     }
-    
+
+    /**
+     * Sets the mode used for tracking open readers.<BR>
+     * The default is TrackingMode.FULL which records the stack of each opening call.<BR>
+     * For production systems TrackingMode.COUNTING or TrackingMode.SAMPLED is recommended. 
+     * @param mode the tracking mode
+     */
+    public static void setTrackingMode(TrackingMode mode)
+    {
+        if (mode==null)
+            throw new InvalidArgumentException("mode", mode);
+        trackingMode = mode;
+    }
+
+    /**
+     * Returns the sample rate used with TrackingMode.SAMPLED.
+     * @return the sample rate
+     */
+    public static int getTrackingSampleRate()
+    {
+        return trackingSampleRate;
+    }
+
+    /**
+     * Sets the sample rate used with TrackingMode.SAMPLED.<BR>
+     * The stack of every n-th opening call will be recorded.
+     * @param sampleRate the sample rate (default is 100)
+     */
+    public static void setTrackingSampleRate(int sampleRate)
+    {
+        if (sampleRate<1)
+            throw new InvalidArgumentException("sampleRate", sampleRate);
+        trackingSampleRate = sampleRate;
+    }
+
     /**
      * <PRE>
      * Call this if you want to check whether there are any unclosed resultsets
@@ -916,7 +1204,7 @@ public class DBReader extends DBRecordData
      * where a DBReader was opened but not closed.
      * </PRE>
      */
-    public static synchronized void checkOpenResultSets()
+    public static void checkOpenResultSets()
     {
         Map<DBReader, Exception> openResultSets = threadLocalOpenResultSets.get();
         if (openResultSets != null && openResultSets.isEmpty() == false)
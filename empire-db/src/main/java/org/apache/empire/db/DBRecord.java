@@ -18,9 +18,17 @@
  */
 package org.apache.empire.db;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Connection;
+import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.beanutils.BeanUtilsBean;
@@ -48,7 +56,7 @@ import org.w3c.dom.Element;
  */
 public class DBRecord extends DBRecordData implements Record, Cloneable
 {
-    private final static long serialVersionUID = 1L;
+    private final static long serialVersionUID = 2L;
   
     /* Record state enum */
     public enum State
@@ -72,14 +80,38 @@ public class DBRecord extends DBRecordData implements Record, Cloneable
 
     protected static final Logger log    = LoggerFactory.getLogger(DBRecord.class);
 
-    // This is the record data
-    private State           state;
-    private DBRowSet        rowset;
-    private Object[]        fields;
-    private boolean[]       modified;
-    private boolean         validateFieldValues;
+    // This is the record data (serialized by writeObject)
+    private transient State     state;
+    private transient DBRowSet  rowset;
+    private transient Object[]  fields;
+    private transient boolean[] modified;
+    private transient boolean   validateFieldValues;
     // Special Rowset Data (usually null)
-    private Object          rowsetData;
+    private transient Object    rowsetData;
+
+    // Serialization of unmodified fields (see setDeltaSerialization)
+    private static volatile boolean deltaSerialization = false;
+
+    // Serialization format
+    private static final int  SERIAL_VERSION     = 1;
+    private static final int  FLAG_VALIDATE      = 0x01;
+    private static final int  FLAG_MODIFIED      = 0x02;
+    private static final int  FLAG_DELTA         = 0x04;
+    private static final int  ROWSET_NONE        = 0;
+    private static final int  ROWSET_ID          = 1;
+    private static final int  ROWSET_OBJECT      = 2;
+    // Value tags
+    private static final int  TAG_OBJECT         = 0;
+    private static final int  TAG_STRING         = 1;
+    private static final int  TAG_INTEGER        = 2;
+    private static final int  TAG_LONG           = 3;
+    private static final int  TAG_TRUE           = 4;
+    private static final int  TAG_FALSE          = 5;
+    private static final int  TAG_DECIMAL        = 6;
+    private static final int  TAG_DOUBLE         = 7;
+    private static final int  TAG_DATE           = 8;
+    private static final int  TAG_SQLDATE        = 9;
+    private static final int  TAG_TIMESTAMP      = 10;
 
     /**
      * Create a new DBRecord object.<BR>
@@ -312,14 +344,10 @@ public class DBRecord extends DBRecordData implements Record, Cloneable
     public int getFieldIndex(String column)
     {
         if (rowset != null)
-        {
-            List<DBColumn> columns = rowset.getColumns();
-            for (int i = 0; i < columns.size(); i++)
-            {
-                DBColumn col = columns.get(i);
-                if (col.getName().equalsIgnoreCase(column))
-                    return i;
-            }
+        {   // find column by name
+            DBColumn col = rowset.getColumn(column);
+            if (col != null)
+                return rowset.getColumnIndex(col);
         }
         // not found
         return -1;
@@ -937,6 +965,42 @@ public class DBRecord extends DBRecordData implements Record, Cloneable
         return root.getOwnerDocument();
     }
 
+    /**
+     * Reads the values of all fields that have the value {@link ObjectUtils#NO_VALUE} from the database.<BR>
+     * This is used to complete a record that has been deserialized in delta mode (see {@link #setDeltaSerialization(boolean)}).<BR>
+     * Modified fields are not affected.
+     * 
+     * @param conn the sql connection
+     *  
+     * @return the number of fields read
+     */
+    public int readMissingValues(Connection conn)
+    {
+        if (!isValid())
+            throw new ObjectNotValidException(this);
+        if (state==State.New)
+            return 0;
+        // find missing fields
+        int missing = 0;
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (fields[i] == ObjectUtils.NO_VALUE)
+                missing++;
+        }
+        if (missing==0)
+            return 0;
+        // read record
+        DBRecord rec = new DBRecord();
+        rowset.readRecord(rec, getKeyValues(), conn);
+        Object[] values = rec.getFields();
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (fields[i] == ObjectUtils.NO_VALUE)
+                fields[i] = values[i];
+        }
+        return missing;
+    }
+
     /**
      * Set the record default value for the fields with 
      * the value {@link ObjectUtils#NO_VALUE}
@@ -1062,4 +1126,346 @@ public class DBRecord extends DBRecordData implements Record, Cloneable
             log.debug("Record field " + rowset.getColumn(i).getName() + " changed to " + String.valueOf(fields[i]));
     }
     
+    /**
+     * Returns whether records are serialized in delta mode.
+     * @return true if only key, timestamp and modified fields are serialized
+     */
+    public static boolean isDeltaSerialization()
+    {
+        return deltaSerialization;
+    }
+
+    /**
+     * Enables or disables the delta mode for record serialization.<BR>
+     * In delta mode only the key fields, the timestamp field and the modified fields of an existing record are serialized.
+     * All other fields are set to {@link ObjectUtils#NO_VALUE} on deserialization 
+     * and may be read from the database by calling {@link #readMissingValues(Connection)}.<BR>
+     * New records are always serialized completely.<BR>
+     * The default is false.
+     * @param delta true to enable the delta mode
+     */
+    public static void setDeltaSerialization(boolean delta)
+    {
+        deltaSerialization = delta;
+    }
+
+    /**
+     * Returns whether this record should be serialized in delta mode.<BR>
+     * Override this in order to enable or disable the delta mode for particular records.
+     * @return true if only key, timestamp and modified fields should be serialized
+     */
+    protected boolean isSerializeDelta()
+    {
+        return deltaSerialization && (state==State.Valid || state==State.Modified);
+    }
+
+    /**
+     * Custom serialization using a compact binary encoding of the record data.<BR>
+     * The rowset is written by its id, the field states are written as bit sets 
+     * and the field values are written with a type tag followed by a compact representation of the value.
+     */
+    private void writeObject(ObjectOutputStream strm) throws IOException 
+    {
+        strm.defaultWriteObject();
+        // header
+        boolean delta = (fields!=null && rowset!=null && isSerializeDelta());
+        int flags = (validateFieldValues ? FLAG_VALIDATE : 0);
+        if (modified!=null)
+            flags |= FLAG_MODIFIED;
+        if (delta)
+            flags |= FLAG_DELTA;
+        strm.writeByte(SERIAL_VERSION);
+        strm.writeByte(flags);
+        strm.writeByte(state.ordinal());
+        // rowset
+        if (rowset==null)
+            strm.writeByte(ROWSET_NONE);
+        else if (rowset.getDatabase()!=null && rowset.getDatabase().getRowSet(rowset.getName())==rowset)
+        {   // by id
+            strm.writeByte(ROWSET_ID);
+            strm.writeUTF(rowset.getId());
+        }
+        else
+        {   // by object
+            strm.writeByte(ROWSET_OBJECT);
+            strm.writeObject(rowset);
+        }
+        strm.writeObject(rowsetData);
+        // fields
+        if (fields==null)
+        {   // no fields
+            writeVarInt(strm, -1);
+            return;
+        }
+        int count = fields.length;
+        writeVarInt(strm, count);
+        // collect fields to write
+        boolean[] skip = new boolean[count];
+        if (delta)
+        {   // only key, timestamp and modified fields
+            for (int i=0; i<count; i++)
+                skip[i] = (modified==null || !modified[i]);
+            DBColumn[] keyColumns = rowset.getKeyColumns();
+            if (keyColumns!=null)
+            {
+                for (int i=0; i<keyColumns.length; i++)
+                    skip[rowset.getColumnIndex(keyColumns[i])] = false;
+            }
+            DBColumn timestampColumn = rowset.getTimestampColumn();
+            if (timestampColumn!=null)
+                skip[rowset.getColumnIndex(timestampColumn)] = false;
+        }
+        // bit sets
+        byte[] nullBits = new byte[(count+7)/8];
+        byte[] noValueBits = new byte[(count+7)/8];
+        byte[] modifiedBits = (modified!=null ? new byte[(count+7)/8] : null);
+        for (int i=0; i<count; i++)
+        {
+            int b = (i>>3);
+            int m = (1<<(i&7));
+            if (skip[i] || fields[i]==ObjectUtils.NO_VALUE)
+                noValueBits[b] |= m;
+            else if (fields[i]==null)
+                nullBits[b] |= m;
+            if (modifiedBits!=null && modified[i])
+                modifiedBits[b] |= m;
+        }
+        strm.write(nullBits);
+        strm.write(noValueBits);
+        if (modifiedBits!=null)
+            strm.write(modifiedBits);
+        // values
+        for (int i=0; i<count; i++)
+        {
+            if (skip[i] || fields[i]==ObjectUtils.NO_VALUE || fields[i]==null)
+                continue;
+            writeValue(strm, fields[i]);
+        }
+    }
+
+    /**
+     * Custom deserialization of the record data written by writeObject.
+     */
+    private void readObject(ObjectInputStream strm) throws IOException, ClassNotFoundException
+    {
+        strm.defaultReadObject();
+        // header
+        int version = strm.readUnsignedByte();
+        if (version!=SERIAL_VERSION)
+            throw new InvalidObjectException("Unsupported record serialization version "+version);
+        int flags = strm.readUnsignedByte();
+        validateFieldValues = ((flags & FLAG_VALIDATE)!=0);
+        state = State.values()[strm.readUnsignedByte()];
+        // rowset
+        int rowsetMode = strm.readUnsignedByte();
+        if (rowsetMode==ROWSET_ID)
+            rowset = DBRowSet.findById(strm.readUTF());
+        else if (rowsetMode==ROWSET_OBJECT)
+            rowset = (DBRowSet)strm.readObject();
+        else
+            rowset = null;
+        rowsetData = strm.readObject();
+        // fields
+        int count = readVarInt(strm);
+        if (count<0)
+        {   // no fields
+            fields = null;
+            modified = null;
+            return;
+        }
+        if (rowset!=null && rowset.getColumns().size()!=count)
+            throw new InvalidObjectException("Field count mismatch for rowset "+rowset.getName());
+        // bit sets
+        byte[] nullBits = new byte[(count+7)/8];
+        byte[] noValueBits = new byte[(count+7)/8];
+        strm.readFully(nullBits);
+        strm.readFully(noValueBits);
+        byte[] modifiedBits = null;
+        if ((flags & FLAG_MODIFIED)!=0)
+        {
+            modifiedBits = new byte[(count+7)/8];
+            strm.readFully(modifiedBits);
+        }
+        // values
+        fields = new Object[count];
+        modified = (modifiedBits!=null ? new boolean[count] : null);
+        for (int i=0; i<count; i++)
+        {
+            int b = (i>>3);
+            int m = (1<<(i&7));
+            if ((noValueBits[b] & m)!=0)
+                fields[i] = ObjectUtils.NO_VALUE;
+            else if ((nullBits[b] & m)==0)
+                fields[i] = readValue(strm);
+            if (modifiedBits!=null)
+                modified[i] = ((modifiedBits[b] & m)!=0);
+        }
+    }
+
+    private static void writeValue(ObjectOutputStream strm, Object value) throws IOException
+    {
+        Class<?> c = value.getClass();
+        if (c==String.class)
+        {   strm.writeByte(TAG_STRING);
+            writeString(strm, (String)value);
+        }
+        else if (c==Integer.class)
+        {   strm.writeByte(TAG_INTEGER);
+            writeVarLong(strm, ((Integer)value).longValue());
+        }
+        else if (c==Long.class)
+        {   strm.writeByte(TAG_LONG);
+            writeVarLong(strm, ((Long)value).longValue());
+        }
+        else if (c==Boolean.class)
+        {   strm.writeByte(((Boolean)value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+        }
+        else if (c==BigDecimal.class)
+        {   BigDecimal d = (BigDecimal)value;
+            strm.writeByte(TAG_DECIMAL);
+            writeVarInt(strm, d.scale());
+            byte[] unscaled = d.unscaledValue().toByteArray();
+            writeVarInt(strm, unscaled.length);
+            strm.write(unscaled);
+        }
+        else if (c==Double.class)
+        {   strm.writeByte(TAG_DOUBLE);
+            strm.writeDouble(((Double)value).doubleValue());
+        }
+        else if (c==Date.class)
+        {   strm.writeByte(TAG_DATE);
+            writeVarLong(strm, ((Date)value).getTime());
+        }
+        else if (c==java.sql.Date.class)
+        {   strm.writeByte(TAG_SQLDATE);
+            writeVarLong(strm, ((Date)value).getTime());
+        }
+        else if (c==Timestamp.class)
+        {   Timestamp ts = (Timestamp)value;
+            strm.writeByte(TAG_TIMESTAMP);
+            writeVarLong(strm, ts.getTime());
+            writeVarInt(strm, ts.getNanos());
+        }
+        else
+        {   // any other object
+            strm.writeByte(TAG_OBJECT);
+            strm.writeObject(value);
+        }
+    }
+
+    private static Object readValue(ObjectInputStream strm) throws IOException, ClassNotFoundException
+    {
+        int tag = strm.readUnsignedByte();
+        switch(tag)
+        {
+            case TAG_STRING:
+                return readString(strm);
+            case TAG_INTEGER:
+                return Integer.valueOf((int)readVarLong(strm));
+            case TAG_LONG:
+                return Long.valueOf(readVarLong(strm));
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_DECIMAL:
+            {   int scale = readVarInt(strm);
+                byte[] unscaled = new byte[readVarInt(strm)];
+                strm.readFully(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            case TAG_DOUBLE:
+                return Double.valueOf(strm.readDouble());
+            case TAG_DATE:
+                return new Date(readVarLong(strm));
+            case TAG_SQLDATE:
+                return new java.sql.Date(readVarLong(strm));
+            case TAG_TIMESTAMP:
+            {   Timestamp ts = new Timestamp(readVarLong(strm));
+                ts.setNanos(readVarInt(strm));
+                return ts;
+            }
+            case TAG_OBJECT:
+                return strm.readObject();
+            default:
+                throw new InvalidObjectException("Invalid value tag "+tag);
+        }
+    }
+
+    private static void writeString(ObjectOutputStream strm, String value) throws IOException
+    {
+        // unsigned, hence characters below 128 take a single byte
+        int len = value.length();
+        writeUnsignedVarInt(strm, len);
+        for (int i=0; i<len; i++)
+            writeUnsignedVarInt(strm, value.charAt(i));
+    }
+
+    private static String readString(ObjectInputStream strm) throws IOException
+    {
+        int len = readUnsignedVarInt(strm);
+        char[] chars = new char[len];
+        for (int i=0; i<len; i++)
+            chars[i] = (char)readUnsignedVarInt(strm);
+        return new String(chars);
+    }
+
+    private static void writeUnsignedVarInt(ObjectOutputStream strm, int value) throws IOException
+    {
+        while ((value & ~0x7F)!=0)
+        {
+            strm.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        strm.writeByte(value);
+    }
+
+    private static int readUnsignedVarInt(ObjectInputStream strm) throws IOException
+    {
+        int v = 0;
+        for (int shift=0; shift<32; shift+=7)
+        {
+            int b = strm.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80)==0)
+                return v;
+        }
+        throw new InvalidObjectException("Invalid variable length number");
+    }
+
+    private static void writeVarInt(ObjectOutputStream strm, int value) throws IOException
+    {
+        writeVarLong(strm, value);
+    }
+
+    private static int readVarInt(ObjectInputStream strm) throws IOException
+    {
+        return (int)readVarLong(strm);
+    }
+
+    private static void writeVarLong(ObjectOutputStream strm, long value) throws IOException
+    {
+        // zig-zag encoding for small negative numbers
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL)!=0)
+        {
+            strm.writeByte((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        strm.writeByte((int)v);
+    }
+
+    private static long readVarLong(ObjectInputStream strm) throws IOException
+    {
+        long v = 0;
+        for (int shift=0; shift<64; shift+=7)
+        {
+            int b = strm.readUnsignedByte();
+            v |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80)==0)
+                return (v >>> 1) ^ -(v & 1);
+        }
+        throw new InvalidObjectException("Invalid variable length number");
+    }
+
 }
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.empire.commons.ObjectUtils;
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * This class implements a bounded LRU cache for the field values of records identified by their primary key.<br>
+ * It may be assigned to a rowset by calling {@link DBRowSet#setRecordCache(DBRecordCache)} 
+ * in order to avoid reading records that rarely change (e.g. reference tables) from the database again and again.<br>
+ * <P>
+ * An entry is removed from the cache if the record is updated or deleted through its rowset. 
+ * Statements executed by {@link DBDatabase#executeUpdate(DBCommand, java.sql.Connection)} or 
+ * {@link DBDatabase#executeDelete(DBTable, DBCommand, java.sql.Connection)} clear the cache of the rowset.<br>
+ * Records are only cached and served for connections in auto-commit mode. Changes made in a transaction clear the cache 
+ * of the rowset again when the transaction is committed with {@link DBDatabase#commit(java.sql.Connection)}.<br>
+ * Changes made by other applications or by plain SQL are not detected, hence a time to live should be set for such tables.<br>
+ * Key values are compared with equals(). The rowset converts them according to the data type of its key columns 
+ * (see {@link DBRowSet#getRecordCacheKey(Object[])}) before accessing the cache.
+ */
+public class DBRecordCache
+{
+    /**
+     * The key used to identify a cached record
+     */
+    protected static final class RecordKey
+    {
+        private final Object[] values;
+        private final int      hashCode;
+
+        public RecordKey(Object[] key)
+        {
+            values = key.clone();
+            hashCode = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other==this)
+                return true;
+            if (!(other instanceof RecordKey))
+                return false;
+            return Arrays.equals(values, ((RecordKey)other).values);
+        }
+    }
+
+    /**
+     * A cached record
+     */
+    private static final class CacheEntry
+    {
+        private final Object[] fields;
+        private final long     expires;
+
+        public CacheEntry(Object[] fields, long expires)
+        {
+            this.fields = fields;
+            this.expires = expires;
+        }
+    }
+
+    // the cache
+    private final int  maxSize;
+    private final long timeToLive;
+    private final LinkedHashMap<RecordKey, CacheEntry> cache;
+    // statistics
+    private long hitCount      = 0;
+    private long missCount     = 0;
+    private long evictionCount = 0;
+
+    /**
+     * Creates a record cache
+     * @param maxSize the maximum number of records held by the cache
+     * @param timeToLive the number of milliseconds after which a record is read from the database again or 0 for no limit
+     */
+    public DBRecordCache(int maxSize, long timeToLive)
+    {
+        if (maxSize<1)
+            throw new InvalidArgumentException("maxSize", maxSize);
+        if (timeToLive<0)
+            throw new InvalidArgumentException("timeToLive", timeToLive);
+        // create the cache
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.cache = new LinkedHashMap<RecordKey, CacheEntry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RecordKey, CacheEntry> eldest)
+            {
+                if (size() <= DBRecordCache.this.maxSize)
+                    return false;
+                // evict
+                evictionCount++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates a record cache without a time limit
+     * @param maxSize the maximum number of records held by the cache
+     */
+    public DBRecordCache(int maxSize)
+    {
+        this(maxSize, 0);
+    }
+
+    /**
+     * Returns the maximum number of records held by this cache
+     * @return the maximum cache size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of milliseconds after which a cached record expires
+     * @return the time to live or 0 if records do not expire
+     */
+    public long getTimeToLive()
+    {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the number of records currently held by this cache
+     * @return the number of records
+     */
+    public synchronized int getSize()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of records that have been served from the cache
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of records that were not found in the cache
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of records that have been removed in order to keep the cache within its bounds
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Returns a copy of the field values of a cached record.
+     * @param key the primary key of the record
+     * @return the field values or null if the record is not cached or has expired
+     */
+    public synchronized Object[] getFields(Object[] key)
+    {
+        RecordKey rk = new RecordKey(key);
+        CacheEntry entry = cache.get(rk);
+        if (entry!=null && entry.expires!=0 && entry.expires<System.currentTimeMillis())
+        {   // expired
+            cache.remove(rk);
+            entry = null;
+        }
+        if (entry==null)
+        {   // not available
+            missCount++;
+            return null;
+        }
+        // found
+        hitCount++;
+        return entry.fields.clone();
+    }
+
+    /**
+     * Adds the field values of a record to the cache.
+     * @param key the primary key of the record
+     * @param fields the field values of the record
+     */
+    public synchronized void putFields(Object[] key, Object[] fields)
+    {
+        long expires = (timeToLive>0 ? System.currentTimeMillis()+timeToLive : 0);
+        cache.put(new RecordKey(key), new CacheEntry(fields.clone(), expires));
+    }
+
+    /**
+     * Removes a record from the cache.
+     * @param key the primary key of the record
+     * @return true if the record was cached or false otherwise
+     */
+    public synchronized boolean remove(Object[] key)
+    {
+        return (cache.remove(new RecordKey(key))!=null);
+    }
+
+    /**
+     * Removes a record from the cache if the value of its timestamp field differs from the given value.<br>
+     * This is used to detect changes when a record is read from the database by other means.  
+     * @param key the primary key of the record
+     * @param timestampIndex the field index of the timestamp column
+     * @param timestamp the current timestamp value of the record
+     * @return true if a cached record was removed or false otherwise
+     */
+    public synchronized boolean removeIfChanged(Object[] key, int timestampIndex, Object timestamp)
+    {
+        RecordKey rk = new RecordKey(key);
+        CacheEntry entry = cache.get(rk);
+        if (entry==null || ObjectUtils.compareEqual(entry.fields[timestampIndex], timestamp))
+            return false;
+        // timestamp has changed
+        cache.remove(rk);
+        return true;
+    }
+
+    /**
+     * Removes all records from the cache.
+     */
+    public synchronized void clear()
+    {
+        cache.clear();
+    }
+}
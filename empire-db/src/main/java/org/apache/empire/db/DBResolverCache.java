@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class implements a cache for objects which are resolved by name from the registered databases,
+ * e.g. columns found by a "database.table.column" string.<br>
+ * <P>
+ * All entries are discarded whenever a database is registered or unregistered (see {@link DBDatabase#getRegistrationCount()}).
+ * Since a database is unregistered when it is closed, the cache does not return objects of closed databases.<br>
+ * Values are held by weak reference, hence the cache does not keep objects of databases that are no longer used.<br>
+ * The cache may be accessed concurrently.
+ *
+ * @param <V> the type of the cached objects
+ */
+public class DBResolverCache<V>
+{
+    /**
+     * A cache entry
+     */
+    private static final class Entry<V> extends WeakReference<V>
+    {
+        private final int registrationCount;
+
+        public Entry(V value, int registrationCount)
+        {
+            super(value);
+            this.registrationCount = registrationCount;
+        }
+    }
+
+    private final ConcurrentMap<String, Entry<V>> cache = new ConcurrentHashMap<String, Entry<V>>();
+    private volatile int registrationCount = -1;
+
+    /**
+     * Discards all entries if a database has been registered or unregistered.
+     * @return the current registration count
+     */
+    private int checkRegistrationCount()
+    {
+        int count = DBDatabase.getRegistrationCount();
+        if (count!=registrationCount)
+        {   // databases have changed
+            cache.clear();
+            registrationCount = count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a cached object
+     * @param key the key under which the object has been cached
+     * @return the object or null if not cached
+     */
+    public V get(String key)
+    {
+        int count = checkRegistrationCount();
+        Entry<V> entry = cache.get(key);
+        if (entry==null)
+            return null;
+        V value = entry.get();
+        if (value==null || entry.registrationCount!=count)
+        {   // collected or outdated
+            cache.remove(key, entry);
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Adds an object to the cache.
+     * @param key the key under which to cache the object
+     * @param value the object
+     */
+    public void put(String key, V value)
+    {
+        if (value==null)
+            return;
+        int count = checkRegistrationCount();
+        cache.put(key, new Entry<V>(value, count));
+    }
+
+    /**
+     * Returns the number of cached objects
+     * @return the number of objects
+     */
+    public int size()
+    {
+        checkRegistrationCount();
+        return cache.size();
+    }
+
+    /**
+     * Removes all objects from the cache
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+}
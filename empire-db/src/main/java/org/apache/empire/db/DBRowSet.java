@@ -22,11 +22,20 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,6 +45,7 @@ import org.apache.empire.data.Column;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBRelation.DBCascadeAction;
 import org.apache.empire.db.DBRelation.DBReference;
+import org.apache.empire.db.exceptions.EmpireSQLException;
 import org.apache.empire.db.exceptions.FieldNotNullException;
 import org.apache.empire.db.exceptions.NoPrimaryKeyException;
 import org.apache.empire.db.exceptions.QueryNoResultException;
@@ -83,6 +93,123 @@ public abstract class DBRowSet extends DBExpr
             fields[index]=value;
         }
     }
+
+    /**
+     * This class is used to identify a cached record statement.
+     * The statement text only depends on the kind of statement and the columns involved.
+     */
+    private static final class DBRecordStatementKey
+    {
+        private final char    kind;
+        private final BitSet  columns;
+        private final boolean constraint;
+        private final int     hashCode;
+        public DBRecordStatementKey(char kind, BitSet columns, boolean constraint)
+        {
+            this.kind = kind;
+            this.columns = columns;
+            this.constraint = constraint;
+            this.hashCode = 31 * (31 * kind + (columns!=null ? columns.hashCode() : 0)) + (constraint ? 1 : 0);
+        }
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof DBRecordStatementKey))
+                return false;
+            DBRecordStatementKey key = (DBRecordStatementKey)other;
+            return (kind==key.kind && constraint==key.constraint && (columns!=null ? columns.equals(key.columns) : key.columns==null));
+        }
+    }
+
+    /**
+     * This class holds a compiled record statement.
+     * For each statement parameter it stores the index of the value to bind.
+     */
+    private static final class DBRecordStatement
+    {
+        private static final int PARAM_TIMESTAMP = -1;
+        private final DBDatabaseDriver driver;
+        private final int              columnCount;
+        private final String           sql;
+        private final int[]            paramIndex;
+        private final DataType[]       paramTypes;
+        private final DBColumnExpr[]   selectList;
+        public DBRecordStatement(DBDatabaseDriver driver, int columnCount, String sql, int[] paramIndex, DataType[] paramTypes, DBColumnExpr[] selectList)
+        {
+            this.driver = driver;
+            this.columnCount = columnCount;
+            this.sql = sql;
+            this.paramIndex = paramIndex;
+            this.paramTypes = paramTypes;
+            this.selectList = selectList;
+        }
+        public Object[] getParamValues(Object[] values, Object timestamp)
+        {
+            Object[] params = new Object[paramIndex.length];
+            for (int i=0; i<params.length; i++)
+            {
+                Object value = (paramIndex[i]==PARAM_TIMESTAMP ? timestamp : values[paramIndex[i]]);
+                params[i] = DBCmdParam.getCmdParamValue(paramTypes[i], value);
+            }
+            return params;
+        }
+    }
+
+    /**
+     * This class holds the statement for inserting or updating a record.
+     */
+    private static final class DBRecordUpdate
+    {
+        private final DBRecord rec;
+        private final String   sql;
+        private final Object[] sqlParams;
+        private final DBDatabaseDriver.DBSetGenKeys setGenKey;
+        private final boolean  timestampConstraint;
+        public DBRecordUpdate(DBRecord rec, String sql, Object[] sqlParams, DBDatabaseDriver.DBSetGenKeys setGenKey, boolean timestampConstraint)
+        {
+            this.rec = rec;
+            this.sql = sql;
+            this.sqlParams = sqlParams;
+            this.setGenKey = setGenKey;
+            this.timestampConstraint = timestampConstraint;
+        }
+    }
+
+    /**
+     * This class provides a hash based lookup of the columns of a rowset.
+     * An instance is immutable and only valid for the number of columns it was created for.
+     */
+    private static final class DBColumnIndex
+    {
+        private final int size;
+        private final Map<DBColumn, Integer> indexMap;
+        private final Map<String, DBColumn> nameMap;
+        public DBColumnIndex(List<DBColumn> columns)
+        {
+            this.size = columns.size();
+            this.indexMap = new HashMap<DBColumn, Integer>(size * 2);
+            this.nameMap = new HashMap<String, DBColumn>(size * 2);
+            for (int i=0; i<size; i++)
+            {   // first occurrence wins
+                DBColumn col = columns.get(i);
+                if (!indexMap.containsKey(col))
+                    indexMap.put(col, Integer.valueOf(i));
+                String key = col.getName().toUpperCase(Locale.ENGLISH);
+                if (!nameMap.containsKey(key))
+                    nameMap.put(key, col);
+            }
+        }
+    }
+
+    // The maximum number of record statements held per rowset
+    private static final int MAX_RECORD_STATEMENTS = 64;
+    
+    private static final DBRecordStatementKey READ_RECORD_KEY = new DBRecordStatementKey('R', null, false);
     
     // Logger
     protected static final Logger log = LoggerFactory.getLogger(DBRowSet.class);
@@ -94,6 +221,13 @@ public abstract class DBRowSet extends DBExpr
     protected Map<DBColumn, DBColumn> columnReferences = null;
     // The column List
     protected List<DBColumn> columns          = new ArrayList<DBColumn>();
+    // Compiled record statements
+    private transient Map<DBRecordStatementKey, DBRecordStatement> recordStatements = null;
+    // Column lookup and hash code (built on demand)
+    private transient volatile DBColumnIndex columnIndex = null;
+    private transient int hashCode = 0;
+    // Optional cache for records read by key
+    private transient DBRecordCache recordCache = null;
 
     /**
      * Constructs a DBRecord object set the current database object.
@@ -183,8 +317,45 @@ public abstract class DBRowSet extends DBExpr
     @Override 
     public int hashCode() 
     {
-    	String nameWithAlias = getFullName()+"_"+getAlias();
-    	return nameWithAlias.hashCode();
+        int hash = hashCode;
+        if (hash == 0)
+        {   // calculate from name and alias
+            String nameWithAlias = getFullName()+"_"+getAlias();
+            hash = nameWithAlias.hashCode();
+            // the schema may only change as long as the database is not open
+            if (db!=null && db.isOpen())
+                hashCode = hash;
+        }
+        return hash;
+    }
+    
+    /**
+     * Discards all information that is cached for this rowset.<BR>
+     * This must be called if the identity of the rowset changes e.g. when a rowset is cloned.
+     */
+    protected void clearCachedInfo()
+    {
+        hashCode = 0;
+        columnIndex = null;
+        synchronized(this)
+        {
+            recordStatements = null;
+        }
+    }
+    
+    /**
+     * Returns the column lookup for this rowset and rebuilds it if columns have been added.
+     * @return the column lookup
+     */
+    private DBColumnIndex getColumnLookup()
+    {
+        DBColumnIndex index = columnIndex;
+        if (index==null || index.size!=columns.size())
+        {   // build new index
+            index = new DBColumnIndex(columns);
+            columnIndex = index;
+        }
+        return index;
     }
 
     @Override
@@ -271,7 +442,10 @@ public abstract class DBRowSet extends DBExpr
      */
     public int getColumnIndex(DBColumn column)
     {
-        return columns.indexOf(column);
+        if (column==null)
+            return -1;
+        Integer index = getColumnLookup().indexMap.get(column);
+        return (index!=null ? index.intValue() : -1);
     }
     
     /**
@@ -309,13 +483,9 @@ public abstract class DBRowSet extends DBExpr
      */
     public DBColumn getColumn(String name)
     {
-        for (int i = 0; i < columns.size(); i++)
-        {
-            DBColumn col = columns.get(i);
-            if (col.getName().equalsIgnoreCase(name))
-                return col;
-        }
-        return null;
+        if (name==null)
+            return null;
+        return getColumnLookup().nameMap.get(name.toUpperCase(Locale.ENGLISH));
     }
 
     /**
@@ -392,6 +562,124 @@ public abstract class DBRowSet extends DBExpr
     {
         this.timestampColumn = timestampColumn;
     }
+
+    /**
+     * Returns the cache used for records read by their primary key.
+     * @return the record cache or null if records are not cached
+     */
+    public DBRecordCache getRecordCache()
+    {
+        return recordCache;
+    }
+
+    /**
+     * Sets a cache for records read by their primary key with readRecord().<BR>
+     * Caching should only be enabled for rowsets which are rarely changed by other applications.<BR>
+     * Records updated or deleted through this rowset are removed from the cache automatically.<BR>
+     * The cache is only used with connections in auto-commit mode, hence it never holds uncommitted data.
+     * Changes made in a transaction additionally clear the cache when the transaction is committed with DBDatabase.commit().
+     * <P>
+     * @param recordCache the record cache or null to disable caching
+     */
+    public void setRecordCache(DBRecordCache recordCache)
+    {
+        this.recordCache = recordCache;
+    }
+
+    /**
+     * Removes all records from the record cache (if any).<BR>
+     * This must be called after the rowset has been modified by means other than the record or database methods.
+     */
+    public void clearRecordCache()
+    {
+        DBRecordCache cache = recordCache;
+        if (cache!=null)
+            cache.clear();
+    }
+
+    /**
+     * internally used to discard cached records after the rowset has been modified.<BR>
+     * If the connection is not in auto-commit mode, the record cache is cleared again on commit 
+     * since other connections may have cached the previous values in the meantime.
+     * @param key the key of the modified record or null if several records may have been modified
+     * @param conn the connection used for the modification
+     */
+    void discardCachedRecords(Object[] key, Connection conn)
+    {
+        DBRecordCache cache = recordCache;
+        if (cache==null)
+            return;
+        if (key!=null)
+            cache.remove(getRecordCacheKey(key));
+        else
+            cache.clear();
+        // in a transaction?
+        if (isAutoCommit(conn)==false)
+            db.clearRecordCacheOnCommit(this, conn);
+    }
+
+    /**
+     * Returns the key of a record in the record cache.<BR>
+     * The key values are converted according to the data type of the key columns,
+     * since the same key may be supplied e.g. as String, Integer, Long or BigDecimal.
+     * @param key the primary key values
+     * @return the normalized key values
+     */
+    protected Object[] getRecordCacheKey(Object[] key)
+    {
+        DBColumn[] keyColumns = (primaryKey!=null ? primaryKey.getColumns() : null);
+        if (keyColumns==null || key.length!=keyColumns.length)
+            return key;
+        Object[] cacheKey = new Object[key.length];
+        for (int i=0; i<key.length; i++)
+        {
+            Object value = key[i];
+            if (!ObjectUtils.isEmpty(value))
+            {   try
+                {   // convert to the type of the key column
+                    switch(keyColumns[i].getDataType())
+                    {
+                        case INTEGER:
+                        case AUTOINC:
+                            value = ObjectUtils.toLong(value);
+                            break;
+                        case FLOAT:
+                        case DECIMAL:
+                            BigDecimal dec = ObjectUtils.toDecimal(value);
+                            value = (dec.signum()==0 ? BigDecimal.ZERO : dec.stripTrailingZeros());
+                            break;
+                        case TEXT:
+                        case CHAR:
+                            value = value.toString();
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                catch (NumberFormatException e)
+                {   // not a valid key value: leave unchanged
+                    log.debug("Key value {} cannot be converted for the record cache", value);
+                }
+            }
+            cacheKey[i] = value;
+        }
+        return cacheKey;
+    }
+
+    /**
+     * Returns whether the record cache may be used with the given connection
+     * @param conn the connection
+     * @return true if the connection is in auto-commit mode or false otherwise
+     */
+    private boolean isAutoCommit(Connection conn)
+    {
+        try
+        {   // only committed data may be cached
+            return conn.getAutoCommit();
+        } catch (SQLException e) {
+            throw new EmpireSQLException(this, e);
+        }
+    }
     
     /**
      * Returns the a list of column references.
@@ -530,13 +818,15 @@ public abstract class DBRowSet extends DBExpr
     {
         // Initialize the record
         prepareInitRecord(rec, null, false);
+        // Field indexes of a reader are determined only once
+        int[] fieldIndexes = (recData instanceof DBReader) ? ((DBReader)recData).getFieldIndexes(this) : null;
         // Get Record Field Values
         Object[] fields = rec.getFields();
         for (int i = 0; i < fields.length; i++)
         {
             // Read a value
         	DBColumn column = columns.get(i);
-        	int rdi = recData.getFieldIndex(column);
+        	int rdi = (fieldIndexes!=null ? fieldIndexes[i] : recData.getFieldIndex(column));
         	if (rdi<0)
         	{	// Field not available in Record Data
         		if (primaryKey!=null && primaryKey.contains(column))
@@ -552,10 +842,17 @@ public abstract class DBRowSet extends DBExpr
                 fields[i] = ObjectUtils.NO_VALUE;
         	}
         	else
-        	{   // Get Field value
-                fields[i] = recData.getValue(rdi);
+        	{   // Get Field value (lazy LOBs are only valid while the reader is open)
+                fields[i] = DBDatabaseDriver.readLazyLob(recData.getValue(rdi));
         	}
         }
+        // Discard cached record if it has been changed
+        DBRecordCache cache = recordCache;
+        if (cache!=null && timestampColumn!=null && primaryKey!=null)
+        {   int ti = getColumnIndex(timestampColumn);
+            if (ti>=0 && fields[ti]!=ObjectUtils.NO_VALUE)
+                cache.removeIfChanged(getRecordCacheKey(getRecordKey(rec)), ti, fields[ti]);
+        }
         // Done
         completeInitRecord(rec);
     }
@@ -618,6 +915,30 @@ public abstract class DBRowSet extends DBExpr
         }
     }
     
+    /**
+     * Reads a single record from the database using a previously compiled statement.<BR>
+     * <P>
+     * @param rec the DBRecord object which holds the record data
+     * @param sqlCmd the SQL select statement
+     * @param sqlParams the statement parameters
+     * @param selectList the select expressions of the statement
+     * @param conn a valid JDBC connection.
+     */
+    private void readRecord(DBRecord rec, String sqlCmd, Object[] sqlParams, DBColumnExpr[] selectList, Connection conn)
+    {
+        DBReader reader = new DBReader();
+        try
+        {   // read record using a DBReader
+            reader.open(db, sqlCmd, sqlParams, selectList, false, 0, conn);
+            if (!reader.moveNext())
+                throw new QueryNoResultException(sqlCmd);
+            initRecord(rec, reader);
+            
+        } finally {
+            reader.close();
+        }
+    }
+    
     /**
      * Reads the record with the given primary key from the database.
      * If the record cannot be found, a RecordNotFoundException is thrown.
@@ -631,14 +952,50 @@ public abstract class DBRowSet extends DBExpr
         // Check Arguments
         if (conn == null || rec == null)
             throw new InvalidArgumentException("conn|rec", null);
-        // Select
-        DBCommand cmd = db.createCommand();
-        cmd.select(columns);
-        // Set key constraints
-        setKeyConstraints(cmd, key);
+        // Lookup the record cache
+        DBRecordCache cache = recordCache;
+        if (cache!=null && isAutoCommit(conn)==false)
+            cache = null; // uncommitted data must not be cached
+        Object[] cacheKey = null;
+        if (cache!=null && primaryKey!=null && key!=null && key.length==primaryKey.getColumns().length)
+        {   cacheKey = getRecordCacheKey(key);
+            Object[] fields = cache.getFields(cacheKey);
+            if (fields!=null && fields.length==columns.size())
+            {   // Init record from cache
+                prepareInitRecord(rec, null, false);
+                System.arraycopy(fields, 0, rec.getFields(), 0, fields.length);
+                completeInitRecord(rec);
+                return;
+            }
+        }
+        // Find a compiled statement
+        boolean cacheable = isRecordStatementCacheable(key);
+        DBRecordStatement stmt = (cacheable ? getRecordStatement(READ_RECORD_KEY) : null);
         try {
+            if (stmt!=null)
+            {   // Read Record using the compiled statement
+                readRecord(rec, stmt.sql, stmt.getParamValues(key, null), stmt.selectList, conn);
+                if (cacheKey!=null)
+                    cache.putFields(cacheKey, rec.getFields());
+                return;
+            }
+            // Select
+            DBCommand cmd = db.createCommand();
+            cmd.select(columns);
+            // Set key constraints
+            setKeyConstraints(cmd, key);
             // Read Record
             readRecord(rec, cmd, conn);
+            if (cacheKey!=null)
+                cache.putFields(cacheKey, rec.getFields());
+            // Compile statement for next use
+            if (cacheable)
+            {   // parameters have been added in the order of the key columns
+                Map<DBCmdParam, Integer> paramMap = new IdentityHashMap<DBCmdParam, Integer>();
+                for (int i=0; i<key.length; i++)
+                    paramMap.put(cmd.cmdParams.get(i), i);
+                putRecordStatement(READ_RECORD_KEY, createRecordStatement(cmd.getSelect(), cmd, paramMap, cmd.getSelectExprList()));
+            }
         } catch (QueryNoResultException e) {
             // Translate exception
             throw new RecordNotFoundException(this, key);
@@ -704,18 +1061,156 @@ public abstract class DBRowSet extends DBExpr
         if (conn == null)
             throw new InvalidArgumentException("conn", conn);
         // Get the new Timestamp
-        String name = getName();
         Timestamp timestamp = (timestampColumn!=null) ? db.getUpdateTimestamp(conn) : null;
+        // Prepare the statement
+        DBRecordUpdate update = prepareUpdate(rec, timestamp, conn);
+        if (update==null)
+            return; // Nothing to do
+        // Perform action
+        int affected = db.executeSQL(update.sql, update.sqlParams, conn, update.setGenKey);
+        completeUpdate(update, affected, timestamp, conn);
+    }
+
+    /**
+     * Updates or Inserts a collection of records in the database using JDBC batches.<BR>
+     * Records which generate the same SQL statement are executed as one batch.
+     * Records which require an auto-generated key from the driver are executed one by one.<BR>
+     * Only modified fields will be inserted or updated in the database.<BR>
+     * <P>
+     * The records are grouped by statement but will otherwise be executed in the order supplied.
+     * Hence records of a self-referencing table should be supplied in separate calls.
+     * <P>
+     * If a timestamp-column is set for this RowSet then a constraint will be added in the 
+     * update statement of each record in order to detect concurrent changes.<BR> 
+     * If the JDBC driver does not report the number of rows affected by a batch (Statement.SUCCESS_NO_INFO)
+     * then the constraint cannot be checked and an UnexpectedReturnValueException is thrown for those records.
+     * In this case the transaction should be rolled back and the records should be updated one by one.
+     * <P>
+     * @param records the records to insert or update. All records must belong to this rowset.
+     * @param conn a valid JDBC connection.
+     * @return the number of records inserted or updated
+     */
+    public int updateRecords(Collection<DBRecord> records, Connection conn)
+    {
+        // check updateable
+        if (isUpdateable()==false)
+            throw new NotSupportedException(this, "updateRecords");
+        // Check Arguments
+        if (records == null)
+            throw new InvalidArgumentException("records", records);
+        if (conn == null)
+            throw new InvalidArgumentException("conn", conn);
+        // Get the new Timestamp
+        Timestamp timestamp = (timestampColumn!=null) ? db.getUpdateTimestamp(conn) : null;
+        // Prepare all records and group by statement
+        Map<String, List<DBRecordUpdate>> batches = new LinkedHashMap<String, List<DBRecordUpdate>>();
+        List<DBRecordUpdate> singles = new ArrayList<DBRecordUpdate>();
+        int count = 0;
+        for (DBRecord rec : records)
+        {   // Check record
+            if (rec == null)
+                throw new InvalidArgumentException("record", rec);
+            if (rec.isValid()==false)
+                throw new ObjectNotValidException(rec);
+            if (equals(rec.getRowSet())==false)
+                throw new InvalidArgumentException("record", rec);
+            // Prepare
+            DBRecordUpdate update = prepareUpdate(rec, timestamp, conn);
+            if (update==null)
+                continue; // Nothing to do
+            if (update.setGenKey!=null)
+            {   // Key must be obtained from the statement
+                singles.add(update);
+                continue;
+            }
+            // Add to batch
+            List<DBRecordUpdate> batch = batches.get(update.sql);
+            if (batch==null)
+            {   batch = new ArrayList<DBRecordUpdate>();
+                batches.put(update.sql, batch);
+            }
+            batch.add(update);
+            count++;
+        }
+        // Execute batches
+        if (count>0)
+        {   // Build statement list
+            String[] sqlCmds = new String[count];
+            Object[][] sqlParams = null;
+            DBRecordUpdate[] updates = new DBRecordUpdate[count];
+            int i = 0;
+            for (List<DBRecordUpdate> batch : batches.values())
+            {
+                for (DBRecordUpdate update : batch)
+                {
+                    sqlCmds[i] = update.sql;
+                    if (update.sqlParams!=null)
+                    {   // Use prepared statements
+                        if (sqlParams==null)
+                            sqlParams = new Object[count][];
+                        sqlParams[i] = update.sqlParams;
+                    }
+                    updates[i++] = update;
+                }
+            }
+            // Execute
+            int[] affected = db.executeBatch(sqlCmds, sqlParams, conn);
+            // Complete all successful records before reporting the first failure
+            RuntimeException failure = null;
+            for (i=0; i<updates.length; i++)
+            {
+                int result = (i<affected.length ? affected[i] : Statement.EXECUTE_FAILED);
+                try {
+                    if (result==Statement.SUCCESS_NO_INFO)
+                    {   // Success with an unknown number of rows
+                        if (updates[i].timestampConstraint)
+                            throw new UnexpectedReturnValueException(result, "db.executeBatch()");
+                        result = 1;
+                    }
+                    completeUpdate(updates[i], result, timestamp, conn);
+                } catch(RuntimeException e) {
+                    // record could not be updated
+                    if (failure==null)
+                        failure = e;
+                }
+            }
+            if (failure!=null)
+                throw failure;
+        }
+        // Execute single statements
+        for (DBRecordUpdate update : singles)
+        {
+            int affected = db.executeSQL(update.sql, update.sqlParams, conn, update.setGenKey);
+            completeUpdate(update, affected, timestamp, conn);
+            count++;
+        }
+        // done
+        return count;
+    }
+
+    /**
+     * Prepares the insert or update statement for a record.<BR>
+     * <P>
+     * @param rec the DBRecord object. contains all fields and the field properties
+     * @param timestamp the new update timestamp (if any)
+     * @param conn a valid JDBC connection.
+     * @return the statement to execute or null if there is nothing to update or insert
+     */
+    private DBRecordUpdate prepareUpdate(DBRecord rec, Timestamp timestamp, Connection conn)
+    {
+        String name = getName();
         DBDatabaseDriver.DBSetGenKeys setGenKey = null;
         // Get the fields and the flags
         Object[] fields = rec.getFields();
-        // Build SQL-Statement
-        DBCommand cmd = db.createCommand();
-        String sql = null;
+        // Determine the columns to set
+        BitSet setColumns = new BitSet(columns.size());
+        boolean timestampConstraint = false;
+        boolean cacheable = db.isPreparedStatementsEnabled();
         int setCount = 0;
         // Perform action
         DBRecord.State recordState = rec.getState(); 
-        if (recordState==DBRecord.State.New)
+        boolean insert = (recordState==DBRecord.State.New);
+        if (insert)
         {	// Insert Record
             for (int i = 0; i < columns.size(); i++)
             {   // search for the column
@@ -723,7 +1218,7 @@ public abstract class DBRowSet extends DBExpr
                 DBTableColumn col = (DBTableColumn) columns.get(i);
                 if (timestampColumn == col)
                 {   // Make sure the update timestamp column is set
-                    cmd.set(col.to(timestamp));
+                    setColumns.set(i);
                     continue;
                 } 
                 boolean empty = ObjectUtils.isEmpty(value); 
@@ -745,7 +1240,9 @@ public abstract class DBRowSet extends DBExpr
                     if (col.isAutoGenerated()==false && rec.isValidateFieldValues())
                         col.validate(value);
                     // Insert a field
-                    cmd.set(col.to(value));
+                    setColumns.set(i);
+                    if (isParamValue(value)==false)
+                        cacheable = false;
                     setCount++;
                 }
                 else if (primaryKey!=null && primaryKey.contains(col))
@@ -757,7 +1254,6 @@ public abstract class DBRowSet extends DBExpr
                     throw new FieldNotNullException(col);
                 }
             }
-            sql = cmd.getInsert();
         }
         else if (recordState==DBRecord.State.Modified)
         {	// Update Record
@@ -778,23 +1274,22 @@ public abstract class DBRowSet extends DBExpr
                     { // Requires a primary key
                         log.warn("updateRecord: " + name + " primary has been modified!");
                     }
-                    // set pk constraint
-                    if (db.isPreparedStatementsEnabled())
-                        value = cmd.addParam(col, value);
-                    cmd.where(col.is(value));
+                    // pk constraint
+                    if (isParamValue(value)==false)
+                        cacheable = false;
                 } 
                 else if (timestampColumn == col)
                 {   // Check the update-timestamp
                 	if (empty==false) 
-                	{   // set timestamp constraint
-                        if (db.isPreparedStatementsEnabled())
-                            value = cmd.addParam(col, value);
-                        cmd.where(col.is(value));
+                	{   // timestamp constraint
+                	    timestampConstraint = true;
+                        if (isParamValue(value)==false)
+                            cacheable = false;
                 	}    
                 	else if (log.isDebugEnabled()) {
                 		log.debug("updateRecord has no value for timestamp column. Concurrent changes will not be detected.");
                 	}	
-                    cmd.set(col.to(timestamp));
+                    setColumns.set(i);
                 } 
                 else if (modified && value!=ObjectUtils.NO_VALUE)
                 { 	// Update a field
@@ -803,25 +1298,89 @@ public abstract class DBRowSet extends DBExpr
                     // Check the value
                     col.validate(value);
                     // Set the column
-                    cmd.set(col.to(value));
+                    setColumns.set(i);
+                    if (isParamValue(value)==false)
+                        cacheable = false;
                     setCount++;
                 }
             }
-            // Get the SQL statement
-            sql = cmd.getUpdate();
         }
         else
         {	// Not modified
             log.info("updateRecord: " + name + " record has not been modified! ");
-            return;
+            return null;
         }
         if (setCount == 0)
         {   // Nothing to update
             log.info("updateRecord: " + name + " nothing to update or insert!");
-            return;
+            return null;
         }
-        // Perform action
-        int affected = db.executeSQL(sql, cmd.getParamValues(), conn, setGenKey);
+        // Find a compiled statement
+        DBRecordStatementKey stmtKey = (cacheable ? new DBRecordStatementKey((insert ? 'I' : 'U'), setColumns, timestampConstraint) : null);
+        DBRecordStatement stmt = (stmtKey!=null ? getRecordStatement(stmtKey) : null);
+        String sql;
+        Object[] sqlParams;
+        if (stmt!=null)
+        {   // Use the compiled statement
+            sql = stmt.sql;
+            sqlParams = stmt.getParamValues(fields, timestamp);
+        }
+        else
+        {   // Build SQL-Statement
+            Map<DBCmdParam, Integer> paramMap = (stmtKey!=null ? new IdentityHashMap<DBCmdParam, Integer>() : null);
+            DBCommand cmd = db.createCommand();
+            for (int i = 0; i < columns.size(); i++)
+            {
+                DBColumn col = columns.get(i);
+                if (insert)
+                {   // Insert a field
+                    if (setColumns.get(i)==false)
+                        continue;
+                    if (timestampColumn == col)
+                        cmd.set(col.to(getCmdValue(cmd, col, timestamp, DBRecordStatement.PARAM_TIMESTAMP, paramMap)));
+                    else
+                        cmd.set(col.to(getCmdValue(cmd, col, fields[i], i, paramMap)));
+                }
+                else if (primaryKey.contains(col))
+                {   // set pk constraint
+                    cmd.where(col.is(getCmdValue(cmd, col, fields[i], i, paramMap)));
+                }
+                else if (timestampColumn == col)
+                {   // set timestamp constraint
+                    if (timestampConstraint)
+                        cmd.where(col.is(getCmdValue(cmd, col, fields[i], i, paramMap)));
+                    cmd.set(col.to(getCmdValue(cmd, col, timestamp, DBRecordStatement.PARAM_TIMESTAMP, paramMap)));
+                }
+                else if (setColumns.get(i))
+                {   // Update a field
+                    cmd.set(col.to(getCmdValue(cmd, col, fields[i], i, paramMap)));
+                }
+            }
+            // Get the SQL statement
+            sql = (insert ? cmd.getInsert() : cmd.getUpdate());
+            sqlParams = cmd.getParamValues();
+            // Compile statement for next use
+            if (stmtKey!=null)
+                putRecordStatement(stmtKey, createRecordStatement(sql, cmd, paramMap, null));
+        }
+        // done
+        return new DBRecordUpdate(rec, sql, sqlParams, setGenKey, timestampConstraint);
+    }
+
+    /**
+     * Checks the result of an insert or update statement and completes the record update.<BR>
+     * <P>
+     * @param update the executed statement
+     * @param affected the number of affected records 
+     * @param timestamp the new update timestamp (if any)
+     * @param conn the connection used for the update
+     */
+    private void completeUpdate(DBRecordUpdate update, int affected, Timestamp timestamp, Connection conn)
+    {
+        DBRecord rec = update.rec;
+        // Discard cached record
+        if (recordCache!=null && rec.getState()!=DBRecord.State.New)
+            discardCachedRecords(getRecordKey(rec), conn);
         if (affected < 0)
         {   // Update Failed
             throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
@@ -839,12 +1398,107 @@ public abstract class DBRowSet extends DBExpr
         { // Set the correct Timestamp
             int i = rec.getFieldIndex(timestampColumn);
             if (i >= 0)
-                fields[i] = timestamp;
+                rec.getFields()[i] = timestamp;
         }
         // Change State
         rec.updateComplete(rec.getRowSetData());
     }
     
+    /**
+     * Returns true if the given value can be supplied as a statement parameter. 
+     */
+    private boolean isParamValue(Object value)
+    {
+        return !(value instanceof DBExpr || value instanceof DBDatabase.DBSystemDate);
+    }
+
+    /**
+     * Returns the value to use for a column in a record statement.
+     * If prepared statements are enabled the value is wrapped by a command parameter.
+     */
+    private Object getCmdValue(DBCommand cmd, DBColumn col, Object value, int index, Map<DBCmdParam, Integer> paramMap)
+    {
+        if (db.isPreparedStatementsEnabled()==false || isParamValue(value)==false)
+            return value;
+        // use a command param
+        DBCmdParam param = cmd.addParam(col, value);
+        if (paramMap!=null)
+            paramMap.put(param, index);
+        return param;
+    }
+
+    /**
+     * Returns true if a statement for the given key can be compiled and reused.
+     */
+    private boolean isRecordStatementCacheable(Object[] key)
+    {
+        if (db.isPreparedStatementsEnabled()==false || primaryKey==null)
+            return false;
+        if (key==null || key.length!=primaryKey.getColumns().length)
+            return false;
+        for (int i=0; i<key.length; i++)
+            if (isParamValue(key[i])==false)
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns a compiled record statement or null if no matching statement is available.
+     */
+    private synchronized DBRecordStatement getRecordStatement(DBRecordStatementKey key)
+    {
+        if (recordStatements==null)
+            return null;
+        DBRecordStatement stmt = recordStatements.get(key);
+        if (stmt==null || stmt.driver!=db.getDriver() || stmt.columnCount!=columns.size())
+            return null; // not available or outdated
+        return stmt;
+    }
+
+    /**
+     * Stores a compiled record statement for later use.
+     */
+    private synchronized void putRecordStatement(DBRecordStatementKey key, DBRecordStatement stmt)
+    {
+        if (stmt==null)
+            return;
+        if (recordStatements==null)
+        {   // Create a bounded map
+            recordStatements = new LinkedHashMap<DBRecordStatementKey, DBRecordStatement>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<DBRecordStatementKey, DBRecordStatement> eldest)
+                {
+                    return size() > MAX_RECORD_STATEMENTS;
+                }
+            };
+        }
+        recordStatements.put(key, stmt);
+    }
+
+    /**
+     * Compiles a record statement from a command.
+     * Returns null if a statement parameter cannot be mapped to a value index.
+     */
+    private DBRecordStatement createRecordStatement(String sql, DBCommand cmd, Map<DBCmdParam, Integer> paramMap, DBColumnExpr[] selectList)
+    {
+        List<DBCmdParam> params = cmd.getParamOrder();
+        int count = (params!=null ? params.size() : 0);
+        int[] paramIndex = new int[count];
+        DataType[] paramTypes = new DataType[count];
+        for (int i=0; i<count; i++)
+        {
+            DBCmdParam param = params.get(i);
+            Integer index = paramMap.get(param);
+            if (index==null)
+                return null; // unknown parameter
+            paramIndex[i] = index.intValue();
+            paramTypes[i] = param.getDataType();
+        }
+        return new DBRecordStatement(db.getDriver(), columns.size(), sql, paramIndex, paramTypes, selectList);
+    }
+    
     /**
      * Deletes a single record from the database.<BR>
      * <P>
@@ -908,6 +1562,14 @@ public abstract class DBRowSet extends DBExpr
                 cmd.where(refs[i].getSourceColumn().is(parentKey[i]));
             if (db.executeSQL(cmd.getDelete((DBTable)this), cmd.getParamValues(), conn)<0)
                 throw new UnexpectedReturnValueException(-1, "db.executeSQL()");
+            discardCachedRecords(null, conn);
+        }
+        else if (db.isSetBasedCascadeDelete() && isSetBasedDeletePossible(new HashSet<DBRowSet>()))
+        {   // Delete set based
+            DBCommand cmd = db.createCommand();
+            for (int i=0; i<parentKey.length; i++)
+                cmd.where(refs[i].getSourceColumn().is(parentKey[i]));
+            deleteReferenceRecords(cmd, conn);
         }
         else
         {   // Query all keys
@@ -922,12 +1584,102 @@ public abstract class DBRowSet extends DBExpr
             List<Object[]> recKeys = db.queryObjectList(cmd, conn);
             for (Object[] recKey : recKeys)
             {   
-                log.info("Deleting Record " + StringUtils.valueOf(recKey) + " from table " + getName());
+                if (log.isDebugEnabled())
+                    log.debug("Deleting Record " + StringUtils.valueOf(recKey) + " from table " + getName());
                 deleteRecord(recKey, conn);
             }
         }
         // Done
     }
     
+    /**
+     * Returns all relations with DBCascadeAction.CASCADE_RECORDS which reference the primary key of this rowset. 
+     * <P>
+     * @return the list of relations
+     */
+    protected List<DBRelation> getCascadeRecordsRelations()
+    {
+        List<DBRelation> list = new ArrayList<DBRelation>();
+        DBColumn[] keyColumns = getKeyColumns();
+        if (keyColumns==null || keyColumns.length==0)
+            return list; // No primary key - no references!
+        for (DBRelation rel : db.getRelations())
+        {   // Check cascade
+            if (rel.getOnDeleteAction()!=DBCascadeAction.CASCADE_RECORDS)
+                continue;
+            // References
+            DBReference[] refs = rel.getReferences();
+            for (int i=0; i<refs.length; i++)
+            {
+                if (refs[i].getTargetColumn().equals(keyColumns[0]))
+                {   // Found a reference on RowSet
+                    list.add(rel);
+                    break;
+                }
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * Checks whether the records of this rowset and all records depending on them can be deleted set based.<BR>
+     * This is only possible for tables with a single column primary key (or no primary key at all) 
+     * and if there are no circular relations. 
+     * <P>
+     * @param path the rowsets on the current path of the relation graph
+     * @return true if a set based delete is possible or false otherwise
+     */
+    protected boolean isSetBasedDeletePossible(Set<DBRowSet> path)
+    {
+        if (!(this instanceof DBTable) || path.contains(this))
+            return false;
+        DBColumn[] keyColumns = getKeyColumns();
+        if (keyColumns==null || keyColumns.length==0)
+            return true; // No primary key - no references!
+        if (keyColumns.length>1)
+            return false; // Compound keys not supported
+        // check all depending rowsets
+        path.add(this);
+        for (DBRelation rel : getCascadeRecordsRelations())
+        {
+            DBRowSet rs = rel.getReferences()[0].getSourceColumn().getRowSet();
+            if (!rs.isSetBasedDeletePossible(path))
+                return false;
+        }
+        path.remove(this);
+        return true;
+    }
+    
+    /**
+     * Deletes all records of this rowset which match the constraints of the given command together with all depending records.<BR>
+     * The depending records are deleted bottom up by one delete statement per relation.
+     * The command must only contain constraints on columns of this rowset.
+     * <P>
+     * @param cmd the command containing the constraints for the records to delete
+     * @param conn a valid connection
+     */
+    protected void deleteReferenceRecords(DBCommand cmd, Connection conn)
+    {
+        // Delete depending records first
+        for (DBRelation rel : getCascadeRecordsRelations())
+        {   // Select keys of this rowset
+            DBCommand keyCmd = cmd.clone();
+            keyCmd.select(getKeyColumns()[0]);
+            // Delete records of referencing rowset
+            DBRowSet rs = rel.getReferences()[0].getSourceColumn().getRowSet();
+            DBCommand refCmd = db.createCommand();
+            refCmd.where(rel.getReferences()[0].getSourceColumn().in(keyCmd));
+            rs.deleteReferenceRecords(refCmd, conn);
+        }
+        // Delete records
+        int affected = db.executeSQL(cmd.getDelete((DBTable)this), cmd.getParamValues(), conn);
+        if (affected<0)
+            throw new UnexpectedReturnValueException(affected, "db.executeSQL()");
+        if (affected>0)
+            discardCachedRecords(null, conn);
+        if (log.isDebugEnabled())
+            log.debug("{} depending records deleted from table {}", affected, getName());
+    }
+    
 }
 
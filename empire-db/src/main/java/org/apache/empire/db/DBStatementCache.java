@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a bounded LRU cache for JDBC prepared statements.<br>
+ * Statements are identified by their connection, their SQL text, their result set type
+ * and whether or not auto-generated keys are requested.<br>
+ * <P>
+ * A statement obtained from the cache is removed from the cache until it is released again.
+ * Hence a statement can never be used by two callers at the same time.<br>
+ * Statements that have been obtained from the cache must be released using {@link #releaseStatement(Statement)}.
+ * <P>
+ * The cache is disabled by default and may be enabled by calling {@link DBDatabaseDriver#setStatementCacheSize(int)}.<br>
+ * Cached statements of a connection are not released automatically.<br>
+ * <b>The caller must call {@link DBDatabaseDriver#clearStatementCache(Connection)} before a connection is closed
+ * or returned to a connection pool.</b>
+ * As a safety net, statements of connections that have been closed without being released 
+ * are discarded periodically (see {@link #clearClosed()}).
+ * <P>
+ * Statements are keyed by the identity of the connection object.
+ * Connection pools that hand out a new proxy object on every checkout will never produce a cache hit
+ * across checkouts. For such pools, use the statement cache of the pool instead.
+ */
+public class DBStatementCache
+{
+    private static final Logger log = LoggerFactory.getLogger(DBStatementCache.class);
+
+    /**
+     * The key used to identify a cached statement
+     */
+    protected static final class StatementKey
+    {
+        private final Connection conn;
+        private final String     sqlCmd;
+        private final int        resultSetType;
+        private final boolean    genKeys;
+        private final int        hashCode;
+
+        public StatementKey(Connection conn, String sqlCmd, int resultSetType, boolean genKeys)
+        {
+            this.conn = conn;
+            this.sqlCmd = sqlCmd;
+            this.resultSetType = resultSetType;
+            this.genKeys = genKeys;
+            // precalculate hash
+            int hash = System.identityHashCode(conn);
+            hash = 31 * hash + sqlCmd.hashCode();
+            hash = 31 * hash + resultSetType;
+            this.hashCode = (genKeys ? hash + 1 : hash);
+        }
+
+        public Connection getConnection()
+        {
+            return conn;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (other==this)
+                return true;
+            if (!(other instanceof StatementKey))
+                return false;
+            StatementKey key = (StatementKey)other;
+            return (conn==key.conn && resultSetType==key.resultSetType && genKeys==key.genKeys && sqlCmd.equals(key.sqlCmd));
+        }
+    }
+
+    // the cache
+    private final int maxSize;
+    private final LinkedHashMap<StatementKey, PreparedStatement> cache;
+    private final Map<Statement, StatementKey> inUse = new IdentityHashMap<Statement, StatementKey>();
+    // statistics
+    private long hitCount      = 0;
+    private long missCount     = 0;
+    private long evictionCount = 0;
+    // number of statements added since the last check for closed connections
+    private int  addCount      = 0;
+
+    /**
+     * Creates a statement cache
+     * @param maxSize the maximum number of idle statements held by the cache
+     */
+    public DBStatementCache(int maxSize)
+    {
+        if (maxSize<1)
+            throw new InvalidArgumentException("maxSize", maxSize);
+        // create the cache
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<StatementKey, PreparedStatement>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatementKey, PreparedStatement> eldest)
+            {
+                if (size() <= DBStatementCache.this.maxSize)
+                    return false;
+                // evict
+                evictionCount++;
+                closeStatement(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of idle statements held by this cache
+     * @return the maximum cache size
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of idle statements currently held by this cache
+     * @return the number of idle statements
+     */
+    public synchronized int getSize()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of statement requests that have been served from the cache
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of statement requests that could not be served from the cache
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of statements that have been closed in order to keep the cache within its bounds
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Obtains a statement from the cache.<br>
+     * If a statement is returned, it is removed from the cache until it is released again.
+     *
+     * @param conn the connection
+     * @param sqlCmd the sql command
+     * @param resultSetType the result set type
+     * @param genKeys flag whether the statement was prepared with Statement.RETURN_GENERATED_KEYS
+     * @return the cached statement or null if no idle statement is available
+     */
+    public synchronized PreparedStatement getStatement(Connection conn, String sqlCmd, int resultSetType, boolean genKeys)
+    {
+        StatementKey key = new StatementKey(conn, sqlCmd, resultSetType, genKeys);
+        PreparedStatement pstmt = cache.remove(key);
+        if (pstmt==null)
+        {   // not available
+            missCount++;
+            return null;
+        }
+        // found
+        hitCount++;
+        inUse.put(pstmt, key);
+        return pstmt;
+    }
+
+    /**
+     * Adds a newly prepared statement to the cache.<br>
+     * The statement is considered in use until it is released by calling releaseStatement().
+     *
+     * @param pstmt the prepared statement
+     * @param conn the connection on which the statement was prepared
+     * @param sqlCmd the sql command
+     * @param resultSetType the result set type
+     * @param genKeys flag whether the statement was prepared with Statement.RETURN_GENERATED_KEYS
+     */
+    public void addStatement(PreparedStatement pstmt, Connection conn, String sqlCmd, int resultSetType, boolean genKeys)
+    {
+        boolean checkClosed;
+        synchronized(this)
+        {
+            inUse.put(pstmt, new StatementKey(conn, sqlCmd, resultSetType, genKeys));
+            checkClosed = (++addCount >= maxSize);
+            if (checkClosed)
+                addCount = 0;
+        }
+        // discard statements of closed connections
+        if (checkClosed)
+            clearClosed();
+    }
+
+    /**
+     * Returns a statement to the cache.<br>
+     * If the statement has not been obtained from this cache, false is returned and the caller is responsible for closing it.
+     *
+     * @param stmt the statement to release
+     * @return true if the statement is managed by the cache or false otherwise
+     */
+    public boolean releaseStatement(Statement stmt)
+    {
+        StatementKey key;
+        synchronized(this)
+        {   // remove from in use list
+            key = inUse.remove(stmt);
+            if (key==null)
+                return false;
+        }
+        // prepare for next use
+        PreparedStatement pstmt = (PreparedStatement)stmt;
+        try {
+            pstmt.clearParameters();
+        } catch(SQLException e) {
+            // statement cannot be reused
+            log.warn("Failed to clear statement parameters. Statement will be closed: "+e.getMessage());
+            closeStatement(pstmt);
+            return true;
+        }
+        // put back to cache
+        PreparedStatement prev;
+        synchronized(this)
+        {   // another instance of the same statement may have been returned before
+            prev = cache.put(key, pstmt);
+        }
+        if (prev!=null && prev!=pstmt)
+            closeStatement(prev);
+        return true;
+    }
+
+    /**
+     * Removes a statement from the cache and closes it.<br>
+     * This should be used instead of releaseStatement() if the state of a statement is uncertain e.g. after an error.
+     *
+     * @param stmt the statement to discard
+     */
+    public void discardStatement(Statement stmt)
+    {
+        synchronized(this)
+        {
+            inUse.remove(stmt);
+        }
+        closeStatement(stmt);
+    }
+
+    /**
+     * Closes and removes all idle statements of a particular connection.<br>
+     * Statements that are currently in use will be closed by the owner.
+     *
+     * @param conn the connection for which to remove all statements
+     * @return the number of statements closed
+     */
+    public int clear(Connection conn)
+    {
+        List<PreparedStatement> closeList = new ArrayList<PreparedStatement>();
+        synchronized(this)
+        {   // idle statements
+            Iterator<Map.Entry<StatementKey, PreparedStatement>> i = cache.entrySet().iterator();
+            while (i.hasNext())
+            {
+                Map.Entry<StatementKey, PreparedStatement> e = i.next();
+                if (conn==null || e.getKey().getConnection()==conn)
+                {
+                    closeList.add(e.getValue());
+                    i.remove();
+                }
+            }
+            // forget statements in use
+            Iterator<StatementKey> k = inUse.values().iterator();
+            while (k.hasNext())
+            {
+                StatementKey key = k.next();
+                if (conn==null || key.getConnection()==conn)
+                    k.remove();
+            }
+        }
+        // close now
+        for (PreparedStatement pstmt : closeList)
+            closeStatement(pstmt);
+        if (log.isDebugEnabled())
+            log.debug("{} cached statements closed.", closeList.size());
+        return closeList.size();
+    }
+
+    /**
+     * Closes and removes all statements of connections that have been closed 
+     * without calling {@link DBDatabaseDriver#clearStatementCache(Connection)}.
+     * @return the number of statements closed
+     */
+    public int clearClosed()
+    {
+        Set<Connection> connections = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+        synchronized(this)
+        {
+            for (StatementKey key : cache.keySet())
+                connections.add(key.getConnection());
+            for (StatementKey key : inUse.values())
+                connections.add(key.getConnection());
+        }
+        int count = 0;
+        for (Connection conn : connections)
+        {
+            try {
+                if (!conn.isClosed())
+                    continue;
+            } catch(SQLException e) {
+                // connection is not usable
+                log.debug("Unable to check connection state: "+e.getMessage());
+            }
+            log.warn("Statements of a closed connection found in statement cache. Use DBDatabaseDriver.clearStatementCache() before closing a connection.");
+            count += clear(conn);
+        }
+        return count;
+    }
+
+    /**
+     * Closes and removes all idle statements from the cache.
+     * @return the number of statements closed
+     */
+    public final int clear()
+    {
+        return clear(null);
+    }
+
+    /**
+     * Closes a statement and logs any error.
+     * @param stmt the statement to close
+     */
+    protected void closeStatement(Statement stmt)
+    {
+        try
+        {   // close
+            stmt.close();
+        } catch (SQLException e) {
+            log.error("close statement:" + e.toString());
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+
+/**
+ * This class holds information about a single statement execution.<br>
+ * It is passed to a {@link DBStatementListener} after a statement has completed.
+ * <P>
+ * All times are given in nanoseconds and are split into the following phases:<br>
+ * prepare: creating the statement and binding the parameters<br>
+ * execute: executing the statement on the database<br>
+ * fetch: reading the result rows (queries) or the generated keys (inserts)<br>
+ */
+public class DBStatementInfo
+{
+    /**
+     * The kind of statement executed
+     */
+    public enum StatementType
+    {
+        QUERY,
+        UPDATE,
+        BATCH
+    }
+
+    // matches a list of parameters e.g. in an IN clause
+    private static final Pattern PARAM_LIST = Pattern.compile("\\(\\?(?: ?, ?\\?)+\\)");
+
+    private final String        sqlCmd;
+    private final StatementType type;
+    private final long          prepareNanos;
+    private final long          executeNanos;
+    private final long          fetchNanos;
+    private final int           rowCount;
+    private final SQLException  error;
+    private String              normalizedSql = null;
+
+    /**
+     * Creates a statement info
+     * @param sqlCmd the sql command as executed
+     * @param type the statement type
+     * @param prepareNanos the time needed to create the statement and to bind the parameters
+     * @param executeNanos the time needed to execute the statement
+     * @param fetchNanos the time needed to read the result
+     * @param rowCount the number of rows read or affected or -1 if unknown
+     * @param error the error that has occurred or null if the statement was successful
+     */
+    public DBStatementInfo(String sqlCmd, StatementType type, long prepareNanos, long executeNanos, long fetchNanos, int rowCount, SQLException error)
+    {
+        this.sqlCmd = sqlCmd;
+        this.type = type;
+        this.prepareNanos = prepareNanos;
+        this.executeNanos = executeNanos;
+        this.fetchNanos = fetchNanos;
+        this.rowCount = rowCount;
+        this.error = error;
+    }
+
+    /**
+     * Returns the sql command as executed
+     * @return the sql command
+     */
+    public String getSql()
+    {
+        return sqlCmd;
+    }
+
+    /**
+     * Returns the normalized sql command i.e. the statement shape.<br>
+     * Literals are replaced by parameter markers so that statements which only differ in their values are equal.
+     * @return the normalized sql command
+     */
+    public String getNormalizedSql()
+    {
+        if (normalizedSql==null)
+            normalizedSql = normalizeSql(sqlCmd);
+        return normalizedSql;
+    }
+
+    /**
+     * Returns the statement type
+     * @return the statement type
+     */
+    public StatementType getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the time needed to create the statement and to bind the parameters
+     * @return the prepare time in nanoseconds
+     */
+    public long getPrepareNanos()
+    {
+        return prepareNanos;
+    }
+
+    /**
+     * Returns the time needed to execute the statement
+     * @return the execution time in nanoseconds
+     */
+    public long getExecuteNanos()
+    {
+        return executeNanos;
+    }
+
+    /**
+     * Returns the time needed to read the result.<br>
+     * For queries this is the time between execution and closing of the ResultSet.
+     * @return the fetch time in nanoseconds
+     */
+    public long getFetchNanos()
+    {
+        return fetchNanos;
+    }
+
+    /**
+     * Returns the total time of the statement
+     * @return the sum of prepare, execute and fetch time in nanoseconds
+     */
+    public long getTotalNanos()
+    {
+        return prepareNanos + executeNanos + fetchNanos;
+    }
+
+    /**
+     * Returns the number of rows read by a query or affected by an update or batch
+     * @return the row count or -1 if unknown
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Returns the error that has occurred 
+     * @return the error or null if the statement was successful
+     */
+    public SQLException getError()
+    {
+        return error;
+    }
+
+    /**
+     * Returns whether or not the statement has failed
+     * @return true if an error has occurred
+     */
+    public boolean isError()
+    {
+        return (error!=null);
+    }
+
+    @Override
+    public String toString()
+    {
+        return type.name()+" ["+(getTotalNanos()/1000)+"us, "+rowCount+" rows"+(error!=null ? ", failed" : "")+"] "+sqlCmd;
+    }
+
+    /**
+     * Normalizes a sql command.<br>
+     * String and numeric literals are replaced by '?', whitespace is collapsed 
+     * and lists of parameters such as "(?, ?, ?)" are reduced to "(?)".
+     * @param sql the sql command
+     * @return the normalized sql command
+     */
+    public static String normalizeSql(String sql)
+    {
+        if (sql==null)
+            return null;
+        int len = sql.length();
+        StringBuilder b = new StringBuilder(len);
+        int i = 0;
+        while (i<len)
+        {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c))
+            {   // collapse whitespace
+                while (i<len && Character.isWhitespace(sql.charAt(i)))
+                    i++;
+                if (b.length()>0 && i<len)
+                    b.append(' ');
+                continue;
+            }
+            if (c=='\'')
+            {   // string literal
+                i++;
+                while (i<len)
+                {
+                    if (sql.charAt(i++)!='\'')
+                        continue;
+                    if (i<len && sql.charAt(i)=='\'')
+                    {   // escaped quote
+                        i++;
+                        continue;
+                    }
+                    break;
+                }
+                b.append('?');
+                continue;
+            }
+            if (c=='"')
+            {   // quoted identifier
+                int end = sql.indexOf('"', i+1);
+                end = (end<0 ? len : end+1);
+                b.append(sql, i, end);
+                i = end;
+                continue;
+            }
+            if (Character.isDigit(c) && !isIdentifierPart(b))
+            {   // numeric literal
+                while (i<len && (Character.isDigit(sql.charAt(i)) || sql.charAt(i)=='.'))
+                    i++;
+                b.append('?');
+                continue;
+            }
+            b.append(c);
+            i++;
+        }
+        // reduce parameter lists
+        String result = b.toString();
+        if (result.indexOf("?,")>0 || result.indexOf("? ,")>0)
+            result = PARAM_LIST.matcher(result).replaceAll("(?)");
+        return result;
+    }
+
+    private static boolean isIdentifierPart(StringBuilder b)
+    {
+        if (b.length()==0)
+            return false;
+        char c = b.charAt(b.length()-1);
+        return (Character.isLetterOrDigit(c) || c=='_' || c=='.' || c=='$');
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+/**
+ * This interface allows to monitor the sql statements executed by a {@link DBDatabaseDriver}.<br>
+ * A listener is registered with the driver by calling {@link DBDatabaseDriver#setStatementListener(DBStatementListener)}.
+ * <P>
+ * The listener is notified once for every statement after it has completed.
+ * For queries this is the time at which the statement is released, i.e. when the ResultSet is closed
+ * by {@link DBDatabase#closeResultSet(java.sql.ResultSet)} or by {@link DBReader#close()}.<br>
+ * Implementations must be thread safe and should return quickly, since they are called synchronously
+ * on the thread executing the statement.<br>
+ * A built-in implementation collecting statistics in memory is provided by {@link DBStatementStats}.
+ */
+public interface DBStatementListener
+{
+    /**
+     * Called after a statement has been executed or has failed.
+     * @param info information about the statement execution
+     */
+    void statementExecuted(DBStatementInfo info);
+}
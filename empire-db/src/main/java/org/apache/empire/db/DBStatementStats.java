@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.empire.exceptions.InvalidArgumentException;
+
+/**
+ * This class implements a {@link DBStatementListener} that collects statement statistics in memory.<br>
+ * For every statement shape (see {@link DBStatementInfo#getNormalizedSql()}) the number of executions, errors and rows
+ * as well as the accumulated times and a latency histogram are kept.
+ * Additionally the slowest individual statements are recorded.
+ * <P>
+ * The statistics may be published via JMX e.g. by<br>
+ * <code>ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName("org.apache.empire.db:type=DBStatementStats"));</code>
+ */
+public class DBStatementStats implements DBStatementListener, DBStatementStatsMBean
+{
+    /**
+     * The upper bounds of the latency histogram buckets in nanoseconds.<br>
+     * The last bucket holds all statements above the last bound.
+     */
+    public static final long[] HISTOGRAM_BOUNDS = new long[] { 
+        100000L,            // 100us
+        1000000L,           // 1ms
+        10000000L,          // 10ms
+        100000000L,         // 100ms
+        1000000000L,        // 1s
+        10000000000L        // 10s
+    };
+
+    /**
+     * The statistics of a statement shape
+     */
+    public static class ShapeStats
+    {
+        private final String shape;
+        private final DBStatementInfo.StatementType type;
+        private long count        = 0;
+        private long errorCount   = 0;
+        private long rowCount     = 0;
+        private long prepareNanos = 0;
+        private long executeNanos = 0;
+        private long fetchNanos   = 0;
+        private long maxNanos     = 0;
+        private final long[] histogram = new long[HISTOGRAM_BOUNDS.length+1];
+
+        protected ShapeStats(String shape, DBStatementInfo.StatementType type)
+        {
+            this.shape = shape;
+            this.type = type;
+        }
+
+        protected synchronized void add(DBStatementInfo info)
+        {
+            long total = info.getTotalNanos();
+            count++;
+            if (info.isError())
+                errorCount++;
+            if (info.getRowCount()>0)
+                rowCount += info.getRowCount();
+            prepareNanos += info.getPrepareNanos();
+            executeNanos += info.getExecuteNanos();
+            fetchNanos   += info.getFetchNanos();
+            if (total>maxNanos)
+                maxNanos = total;
+            // histogram
+            int bucket = 0;
+            while (bucket<HISTOGRAM_BOUNDS.length && total>HISTOGRAM_BOUNDS[bucket])
+                bucket++;
+            histogram[bucket]++;
+        }
+
+        protected synchronized ShapeStats copy()
+        {
+            ShapeStats copy = new ShapeStats(shape, type);
+            copy.count = count;
+            copy.errorCount = errorCount;
+            copy.rowCount = rowCount;
+            copy.prepareNanos = prepareNanos;
+            copy.executeNanos = executeNanos;
+            copy.fetchNanos = fetchNanos;
+            copy.maxNanos = maxNanos;
+            System.arraycopy(histogram, 0, copy.histogram, 0, histogram.length);
+            return copy;
+        }
+
+        public String getShape()
+        {
+            return shape;
+        }
+
+        public DBStatementInfo.StatementType getType()
+        {
+            return type;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getErrorCount()
+        {
+            return errorCount;
+        }
+
+        public long getRowCount()
+        {
+            return rowCount;
+        }
+
+        public long getPrepareNanos()
+        {
+            return prepareNanos;
+        }
+
+        public long getExecuteNanos()
+        {
+            return executeNanos;
+        }
+
+        public long getFetchNanos()
+        {
+            return fetchNanos;
+        }
+
+        public long getTotalNanos()
+        {
+            return prepareNanos + executeNanos + fetchNanos;
+        }
+
+        public long getMaxNanos()
+        {
+            return maxNanos;
+        }
+
+        /**
+         * Returns the latency histogram
+         * @return the number of statements per bucket (see {@link DBStatementStats#HISTOGRAM_BOUNDS})
+         */
+        public long[] getHistogram()
+        {
+            return histogram.clone();
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder b = new StringBuilder();
+            b.append(type.name());
+            b.append(" count=");
+            b.append(count);
+            b.append(" errors=");
+            b.append(errorCount);
+            b.append(" rows=");
+            b.append(rowCount);
+            b.append(" totalMs=");
+            b.append(getTotalNanos()/1000000);
+            b.append(" (prepare=");
+            b.append(prepareNanos/1000000);
+            b.append(" execute=");
+            b.append(executeNanos/1000000);
+            b.append(" fetch=");
+            b.append(fetchNanos/1000000);
+            b.append(") maxMs=");
+            b.append(maxNanos/1000000);
+            b.append(" histogram=[");
+            for (int i=0; i<histogram.length; i++)
+            {
+                if (i>0)
+                    b.append(',');
+                b.append(histogram[i]);
+            }
+            b.append("] ");
+            b.append(shape);
+            return b.toString();
+        }
+    }
+
+    private static final Comparator<DBStatementInfo> SLOWEST_LAST = new Comparator<DBStatementInfo>()
+    {
+        @Override
+        public int compare(DBStatementInfo o1, DBStatementInfo o2)
+        {
+            long t1 = o1.getTotalNanos();
+            long t2 = o2.getTotalNanos();
+            return (t1<t2 ? -1 : (t1==t2 ? 0 : 1));
+        }
+    };
+
+    private final int maxShapes;
+    private final int maxSlowest;
+    private final ConcurrentMap<String, ShapeStats> shapes = new ConcurrentHashMap<String, ShapeStats>();
+    private final PriorityQueue<DBStatementInfo> slowest;
+    private volatile long slowestThreshold = 0;
+    private final AtomicLong statementCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Creates statement statistics
+     * @param maxShapes the maximum number of distinct statement shapes to keep
+     * @param maxSlowest the number of slowest statements to keep
+     */
+    public DBStatementStats(int maxShapes, int maxSlowest)
+    {
+        if (maxShapes<1)
+            throw new InvalidArgumentException("maxShapes", maxShapes);
+        if (maxSlowest<0)
+            throw new InvalidArgumentException("maxSlowest", maxSlowest);
+        this.maxShapes = maxShapes;
+        this.maxSlowest = maxSlowest;
+        this.slowest = new PriorityQueue<DBStatementInfo>(Math.max(maxSlowest, 1), SLOWEST_LAST);
+    }
+
+    /**
+     * Creates statement statistics keeping up to 1000 statement shapes and the 20 slowest statements
+     */
+    public DBStatementStats()
+    {
+        this(1000, 20);
+    }
+
+    @Override
+    public void statementExecuted(DBStatementInfo info)
+    {
+        statementCount.incrementAndGet();
+        if (info.isError())
+            errorCount.incrementAndGet();
+        // shape statistics
+        String shape = info.getNormalizedSql();
+        ShapeStats stats = shapes.get(shape);
+        if (stats==null)
+        {   // new shape
+            if (shapes.size()>=maxShapes)
+                droppedCount.incrementAndGet();
+            else
+            {   // add
+                ShapeStats prev = shapes.putIfAbsent(shape, new ShapeStats(shape, info.getType()));
+                stats = (prev!=null ? prev : shapes.get(shape));
+            }
+        }
+        if (stats!=null)
+            stats.add(info);
+        // slowest statements
+        if (maxSlowest>0 && info.getTotalNanos()>slowestThreshold)
+        {
+            synchronized(slowest)
+            {
+                slowest.add(info);
+                if (slowest.size()>maxSlowest)
+                    slowest.poll();
+                if (slowest.size()>=maxSlowest)
+                    slowestThreshold = slowest.peek().getTotalNanos();
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics of all statement shapes ordered by their total time (descending)
+     * @return the shape statistics
+     */
+    public List<ShapeStats> getShapes()
+    {
+        List<ShapeStats> list = new ArrayList<ShapeStats>(shapes.size());
+        for (ShapeStats stats : shapes.values())
+            list.add(stats.copy());
+        Collections.sort(list, new Comparator<ShapeStats>()
+        {
+            @Override
+            public int compare(ShapeStats o1, ShapeStats o2)
+            {
+                long t1 = o1.getTotalNanos();
+                long t2 = o2.getTotalNanos();
+                return (t1>t2 ? -1 : (t1==t2 ? 0 : 1));
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Returns the statistics of a particular statement shape
+     * @param sql the sql command (will be normalized)
+     * @return a snapshot of the shape statistics or null if the shape has not been recorded
+     */
+    public ShapeStats getShape(String sql)
+    {
+        ShapeStats stats = shapes.get(DBStatementInfo.normalizeSql(sql));
+        return (stats!=null ? stats.copy() : null);
+    }
+
+    /**
+     * Returns the slowest statements recorded ordered by their total time (descending)
+     * @return the slowest statements
+     */
+    public List<DBStatementInfo> getSlowest()
+    {
+        List<DBStatementInfo> list;
+        synchronized(slowest)
+        {
+            list = new ArrayList<DBStatementInfo>(slowest);
+        }
+        Collections.sort(list, Collections.reverseOrder(SLOWEST_LAST));
+        return list;
+    }
+
+    @Override
+    public long getStatementCount()
+    {
+        return statementCount.get();
+    }
+
+    @Override
+    public long getErrorCount()
+    {
+        return errorCount.get();
+    }
+
+    @Override
+    public int getShapeCount()
+    {
+        return shapes.size();
+    }
+
+    @Override
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+
+    @Override
+    public String[] getShapeStatistics()
+    {
+        List<ShapeStats> list = getShapes();
+        String[] result = new String[list.size()];
+        for (int i=0; i<result.length; i++)
+            result[i] = list.get(i).toString();
+        return result;
+    }
+
+    @Override
+    public String[] getSlowestStatements()
+    {
+        List<DBStatementInfo> list = getSlowest();
+        String[] result = new String[list.size()];
+        for (int i=0; i<result.length; i++)
+            result[i] = list.get(i).toString();
+        return result;
+    }
+
+    @Override
+    public void reset()
+    {
+        shapes.clear();
+        synchronized(slowest)
+        {
+            slowest.clear();
+            slowestThreshold = 0;
+        }
+        statementCount.set(0);
+        errorCount.set(0);
+        droppedCount.set(0);
+    }
+}
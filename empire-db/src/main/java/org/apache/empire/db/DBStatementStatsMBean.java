@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+/**
+ * The JMX management interface of {@link DBStatementStats}.
+ */
+public interface DBStatementStatsMBean
+{
+    /**
+     * Returns the total number of statements recorded
+     * @return the number of statements
+     */
+    long getStatementCount();
+
+    /**
+     * Returns the number of statements that have failed
+     * @return the number of errors
+     */
+    long getErrorCount();
+
+    /**
+     * Returns the number of distinct statement shapes recorded
+     * @return the number of statement shapes
+     */
+    int getShapeCount();
+
+    /**
+     * Returns the number of statements that have not been recorded because the maximum number of shapes was reached
+     * @return the number of dropped statements
+     */
+    long getDroppedCount();
+
+    /**
+     * Returns the statistics of all statement shapes ordered by their total time
+     * @return one line per statement shape
+     */
+    String[] getShapeStatistics();
+
+    /**
+     * Returns the slowest statements recorded ordered by their total time
+     * @return one line per statement
+     */
+    String[] getSlowestStatements();
+
+    /**
+     * Discards all recorded statistics
+     */
+    void reset();
+}
@@ -172,6 +172,7 @@ public class DBTable extends DBRowSet implements Cloneable
             }
             // set new alias
             clone.alias = "t" + String.valueOf(tableCount.incrementAndGet());
+            clone.clearCachedInfo();
             // done
             log.info("clone: Table " + name + " cloned! Alias old=" + alias + " new=" + clone.alias);
             return clone;
@@ -468,6 +469,8 @@ public class DBTable extends DBRowSet implements Cloneable
         { // Multiple Records affected
             throw new RecordUpdateInvalidException(this, key);
         }
+        // Discard cached record
+        discardCachedRecords(key, conn);
     }
     
     /**
@@ -22,6 +22,7 @@ package org.apache.empire.db.expr.compare;
 import org.apache.empire.db.DBCmpType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
+import org.apache.empire.db.DBCommandExpr;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBExpr;
 
@@ -193,15 +194,18 @@ public class DBCompareColExpr extends DBCompareExpr
                 buf.append(" NOT BETWEEN ");
                 break;
             case IN:
-                buf.append(" IN (");
-                buf.append(valsql);
-                buf.append(")");
-                valsql = null;
-                break;
             case NOTIN:
-                buf.append(" NOT IN (");
-                buf.append(valsql);
-                buf.append(")");
+                buf.append((op==DBCmpType.IN) ? " IN " : " NOT IN ");
+                if (value instanceof DBCommandExpr)
+                {   // sub query already provides the parenthesis 
+                    buf.append(valsql);
+                }
+                else
+                {   // value list
+                    buf.append("(");
+                    buf.append(valsql);
+                    buf.append(")");
+                }
                 valsql = null;
                 break;
             default:
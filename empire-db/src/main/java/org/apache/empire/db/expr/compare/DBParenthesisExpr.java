@@ -37,6 +37,15 @@ public class DBParenthesisExpr extends DBCompareExpr
         this.wrap = wrap;
     }
 
+    /**
+     * Returns the wrapped compare expression
+     * @return the wrapped compare expression
+     */
+    public DBCompareExpr getWrapped()
+    {
+        return wrap;
+    }
+
     @Override
     public DBDatabase getDatabase()
     {
@@ -28,6 +28,7 @@ import org.apache.empire.db.DBExpr;
 import org.apache.empire.db.DBJoinType;
 import org.apache.empire.db.DBRowSet;
 import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.exceptions.InternalException;
 
 /**
  * This class is used for building a join expression of an SQL statement.
@@ -37,7 +38,7 @@ import org.apache.empire.db.expr.compare.DBCompareExpr;
  * <P>
  *
  */
-public class DBJoinExpr extends DBExpr
+public class DBJoinExpr extends DBExpr implements Cloneable
 {
     private final static long serialVersionUID = 1L;
   
@@ -162,6 +163,26 @@ public class DBJoinExpr extends DBExpr
         type = DBJoinType.reversed(type); // (type * -1);
     }
 
+    /**
+     * Returns a copy of this join expression with the left and the right statements swapped.
+     * This join expression is not modified.
+     * 
+     * @return the reversed join expression
+     */
+    public DBJoinExpr reversedCopy()
+    {
+        try
+        {   // Clone and swap
+            DBJoinExpr copy = (DBJoinExpr)clone();
+            copy.reverse();
+            return copy;
+        }
+        catch (CloneNotSupportedException e)
+        {   // Cloneable is implemented 
+            throw new InternalException(e);
+        }
+    }
+
     /**
      * Returns any additional constraints to the join
      * @return a compare expression containing additional constraints or null 
@@ -87,17 +87,23 @@ public class DBDatabaseDriverH2 extends DBDatabaseDriver
         
         @Override
         public void getSelect(StringBuilder buf)
-        {   // Prepares statement
-        	super.getSelect(buf);
-            // add limit and offset
-            if (limitRows>=0)
-            {   buf.append("\r\nLIMIT ");
-                buf.append(String.valueOf(limitRows));
-                // Offset
-                if (skipRows>0) 
-                {   buf.append(" OFFSET ");
-                    buf.append(String.valueOf(skipRows));
-                }    
+        {   // limit params are part of the statement
+            DBCmdGenerationContext ctx = beginGeneration();
+            try
+            {   // Prepares statement
+                super.getSelect(buf);
+                // add limit and offset
+                if (limitRows>=0)
+                {   buf.append("\r\nLIMIT ");
+                    addLimitValue(buf, limitRows);
+                    // Offset
+                    if (skipRows>0) 
+                    {   buf.append(" OFFSET ");
+                        addLimitValue(buf, skipRows);
+                    }    
+                }
+            } finally {
+                endGeneration(ctx);
             }
         }
         
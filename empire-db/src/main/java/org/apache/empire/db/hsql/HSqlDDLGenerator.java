@@ -98,8 +98,10 @@ public class HSqlDDLGenerator extends DBDDLGenerator<DBDatabaseDriverHSql>
         sql.append("CREATE SEQUENCE ");
         db.appendQualifiedName(sql, seqName, detectQuoteName(seqName));
         sql.append(" START WITH 1");
+        if (driver.getSequenceBlockSize()>1)
+            sql.append(" INCREMENT BY ").append(driver.getSequenceBlockSize());
         // executeDLL
         script.addStmt(sql);
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -86,17 +86,23 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
         
         @Override
         public void getSelect(StringBuilder buf)
-        {   // call base class
-            super.getSelect(buf);
-            // add limit and offset
-            if (limit>=0)
-            {   buf.append("\r\nLIMIT ");
-                buf.append(String.valueOf(limit));
-                // Offset
-                if (skip>=0) 
-                {   buf.append(" OFFSET ");
-                    buf.append(String.valueOf(skip));
-                }    
+        {   // limit params are part of the statement
+            DBCmdGenerationContext ctx = beginGeneration();
+            try
+            {   // call base class
+                super.getSelect(buf);
+                // add limit and offset
+                if (limit>=0)
+                {   buf.append("\r\nLIMIT ");
+                    addLimitValue(buf, limit);
+                    // Offset
+                    if (skip>=0) 
+                    {   buf.append(" OFFSET ");
+                        addLimitValue(buf, skip);
+                    }    
+                }
+            } finally {
+                endGeneration(ctx);
             }
         }
     }
@@ -120,6 +126,8 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
     {
         // Default Constructor
     	setReservedKeywords();
+        // MySQL Connector/J only streams results row by row if the fetch size is Integer.MIN_VALUE
+        streamingFetchSize = Integer.MIN_VALUE;
     }
 
     private void addReservedKeyWord(final String keyWord){
@@ -524,11 +532,11 @@ public class DBDatabaseDriverMySQL extends DBDatabaseDriver
                 // add limit and offset
                 if (limit>=0)
                 {   buf.append("\r\nLIMIT ");
-                    buf.append(String.valueOf(limit));
+                    addLimitValue(buf, limit);
                     // Offset
                     if (skip>=0) 
                     {   buf.append(" OFFSET ");
-                        buf.append(String.valueOf(skip));
+                        addLimitValue(buf, skip);
                     }    
                 }
             }
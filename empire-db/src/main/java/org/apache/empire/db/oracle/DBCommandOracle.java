@@ -151,13 +151,26 @@ public class DBCommandOracle extends DBCommand
      * @param buf the SQL statement
      */
     @Override
-    public synchronized void getSelect(StringBuilder buf)
+    public void getSelect(StringBuilder buf)
+    {        
+        DBCmdGenerationContext ctx = beginGeneration();
+        try
+        {   // Oracle select
+            addSelectStatement(buf);
+        } finally {
+            endGeneration(ctx);
+        }
+    }
+
+    /**
+     * Appends the select statement including the rownum wrapper for limit and skip rows
+     * @param buf the SQL statement
+     */
+    protected void addSelectStatement(StringBuilder buf)
     {        
-        resetParamUsage();
         if (select == null)
             throw new ObjectNotValidException(this);
         // limit rows
-        boolean usePreparedStatements = isPreparedStatementsEnabled();
         if (limitRows>=0)
         {   // add limitRows and skipRows wrapper
             buf.append("SELECT * FROM (");
@@ -206,52 +219,36 @@ public class DBCommandOracle extends DBCommand
         if (limitRows>=0)
         {   // add limitRows and skipRows constraints
             buf.append(") row_ WHERE rownum<=");
-            buf.append(usePreparedStatements ? "?" : String.valueOf(skipRows+limitRows));
+            addLimitValue(buf, skipRows+limitRows);
             if (skipRows>0)
             {   // add skip rows
                 buf.append(") WHERE rownum_>");
-                buf.append(usePreparedStatements ? "?" : String.valueOf(skipRows));
+                addLimitValue(buf, skipRows);
             }
         }
     }
 
-    @Override
-    public Object[] getParamValues()
-    {
-        Object[] params = super.getParamValues();
-        if (limitRows<0 || !getDatabase().isPreparedStatementsEnabled())
-            return params;
-        // add limit and skip params
-        int newSize = (params!=null ? params.length : 0)+(skipRows>0 ? 2 : 1);
-        Object[] newParams = new Object[newSize];
-        // copy params
-        for (int i=0; params!=null && i<params.length; i++)
-            newParams[i]=params[i];
-        // set skip
-        if (skipRows>0)
-            newParams[--newSize]=skipRows;
-        // set limit
-        newParams[--newSize]=skipRows+limitRows;    
-        return newParams;
-    }
-    
     /**
      * Creates an Oracle specific update statement.
      * If a join is required, this method creates a "MERGE INTO" expression 
      */
     @Override
-    public synchronized String getUpdate()
+    public String getUpdate()
     {
-        // No Joins: Use Default
-        if (joins==null || set==null)
-            return getSimpleUpdate();
-        else
-            return getUpdateWithJoins();
+        DBCmdGenerationContext ctx = beginGeneration();
+        try
+        {   // No Joins: Use Default
+            if (joins==null || set==null)
+                return getSimpleUpdate();
+            else
+                return getUpdateWithJoins();
+        } finally {
+            endGeneration(ctx);
+        }
     }
 
     protected String getSimpleUpdate()
     {
-        resetParamUsage();
         if (set == null)
             return null;
         StringBuilder buf = new StringBuilder("UPDATE ");
@@ -281,7 +278,6 @@ public class DBCommandOracle extends DBCommand
     protected String getUpdateWithJoins()
     {
         // Generate Merge expression
-        resetParamUsage();
         StringBuilder buf = new StringBuilder("MERGE INTO ");
         DBRowSet table =  set.get(0).getTable();
         table.addSQL(buf, CTX_FULLNAME|CTX_ALIAS);
@@ -351,24 +347,29 @@ public class DBCommandOracle extends DBCommand
      * @return the delete SQL-Command
      */
     @Override
-    public synchronized String getDelete(DBTable table)
+    public String getDelete(DBTable table)
     {
-        resetParamUsage();
-        StringBuilder buf = new StringBuilder("DELETE ");
-        if (optimizerHint != null)
-        {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
-            buf.append("/*+ ").append(optimizerHint).append(" */ ");
-        }
-        buf.append("FROM ");
-        table.addSQL(buf, CTX_FULLNAME);
-        // Set Expressions
-        if (where != null || having != null)
-        { // add where condition
-            buf.append("\r\nWHERE ");
-            if (where != null)
-                addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+        DBCmdGenerationContext ctx = beginGeneration();
+        try
+        {
+            StringBuilder buf = new StringBuilder("DELETE ");
+            if (optimizerHint != null)
+            {   // Append an optimizer hint to the select statement e.g. SELECT /*+ RULE */
+                buf.append("/*+ ").append(optimizerHint).append(" */ ");
+            }
+            buf.append("FROM ");
+            table.addSQL(buf, CTX_FULLNAME);
+            // Set Expressions
+            if (where != null || having != null)
+            { // add where condition
+                buf.append("\r\nWHERE ");
+                if (where != null)
+                    addListExpr(buf, where, CTX_NAME|CTX_VALUE, " AND ");
+            }
+            return buf.toString();
+        } finally {
+            endGeneration(ctx);
         }
-        return buf.toString();
     }
 
 }
\ No newline at end of file
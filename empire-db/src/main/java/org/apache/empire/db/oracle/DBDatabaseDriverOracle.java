@@ -294,6 +294,22 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
         return super.getResultValue(rset, columnIndex, dataType);
     }
 
+    /**
+     * Boolean values are stored as 'Y' or 'N' (see getResultValue)
+     */
+    @Override
+    public boolean getResultBoolean(ResultSet rset, int columnIndex, DataType dataType)
+        throws SQLException
+    {
+        if (dataType == DataType.BOOL)
+        {   // Check Value
+            String val = rset.getString(columnIndex);
+            return (val!=null && (val.equalsIgnoreCase("Y") || val.equals("1")));
+        }
+        // Default
+        return super.getResultBoolean(rset, columnIndex, dataType);
+    }
+
     /**
      * @see DBDatabaseDriver#getNextSequenceValue(DBDatabase, String, int, Connection)
      */
@@ -338,7 +354,7 @@ public class DBDatabaseDriverOracle extends DBDatabaseDriver
                 if (rs != null)
                     rs.close();
                 if (stmt != null)
-                    stmt.close();
+                    releaseStatement(stmt);
             } catch (SQLException e) {
                 // throw exception
                 throw new EmpireSQLException(this, e);
@@ -127,7 +127,8 @@ public class OracleDDLGenerator extends DBDDLGenerator<DBDatabaseDriverOracle>
         sql.append(" --\r\n");
         sql.append("CREATE SEQUENCE ");
         db.appendQualifiedName(sql, seqName, detectQuoteName(seqName));
-        sql.append(" INCREMENT BY 1 START WITH 1 MINVALUE 0 NOCYCLE NOCACHE NOORDER");
+        sql.append(" INCREMENT BY ").append(driver.getSequenceBlockSize());
+        sql.append(" START WITH 1 MINVALUE 0 NOCYCLE NOCACHE NOORDER");
         // executeDLL
         script.addStmt(sql);
     }
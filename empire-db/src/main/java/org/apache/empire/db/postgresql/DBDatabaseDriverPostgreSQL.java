@@ -103,17 +103,23 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
         
         @Override
         public void getSelect(StringBuilder buf)
-        {   // call base class
-            super.getSelect(buf);
-            // add limit and offset
-            if (limit>=0)
-            {   buf.append("\r\nLIMIT ");
-                buf.append(String.valueOf(limit));
-                // Offset
-                if (skip>=0) 
-                {   buf.append(" OFFSET ");
-                    buf.append(String.valueOf(skip));
-                }    
+        {   // limit params are part of the statement
+            DBCmdGenerationContext ctx = beginGeneration();
+            try
+            {   // call base class
+                super.getSelect(buf);
+                // add limit and offset
+                if (limit>=0)
+                {   buf.append("\r\nLIMIT ");
+                    addLimitValue(buf, limit);
+                    // Offset
+                    if (skip>=0) 
+                    {   buf.append(" OFFSET ");
+                        addLimitValue(buf, skip);
+                    }    
+                }
+            } finally {
+                endGeneration(ctx);
             }
         }
     }
@@ -129,6 +135,35 @@ public class DBDatabaseDriverPostgreSQL extends DBDatabaseDriver
     {
         setReservedKeywords();
     }
+
+    /**
+     * PostgreSQL only uses a cursor for fetching rows if auto-commit is off.<br>
+     * Otherwise the fetch size is ignored and the full result is loaded into memory.<br>
+     * Hence for streaming on a connection with auto-commit on, auto-commit is turned off until the reader is closed.
+     */
+    @Override
+    public boolean beginStreaming(Connection conn)
+        throws SQLException
+    {
+        if (conn.getAutoCommit()==false)
+            return false; // cursor is used
+        // open a transaction for the cursor
+        log.debug("Turning off auto-commit for cursor based fetching");
+        conn.setAutoCommit(false);
+        return true;
+    }
+
+    /**
+     * Turns auto-commit on again after streaming.<br>
+     * This commits the transaction of the cursor, including all other statements executed on the connection in the meantime. 
+     */
+    @Override
+    public void endStreaming(Connection conn)
+        throws SQLException
+    {
+        if (conn.isClosed()==false)
+            conn.setAutoCommit(true);
+    }
     
     private void addReservedKeyWord(final String keyWord){
         boolean added = reservedSQLKeywords.add(keyWord.toLowerCase());
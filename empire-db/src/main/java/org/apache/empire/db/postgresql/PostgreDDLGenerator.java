@@ -117,7 +117,8 @@ public class PostgreDDLGenerator extends DBDDLGenerator<DBDatabaseDriverPostgreS
 //        create sequence foo_id_seq;
 //        select setval('foo_id_seq', (select max(id) from foo));
 
-        sql.append(" INCREMENT BY 1 START WITH 1 MINVALUE 0");
+        sql.append(" INCREMENT BY ").append(driver.getSequenceBlockSize());
+        sql.append(" START WITH 1 MINVALUE 0");
         // executeDLL
         script.addStmt(sql);
     }
@@ -138,25 +138,63 @@ public class DBModelChecker
     private void collectPrimaryKeys(DatabaseMetaData dbMeta, String dbSchema)
         throws SQLException
     {
-        for (String t : this.tableMap.keySet())
+        // Query all tables at once
+        Map<String, List<String>> pkMap = new HashMap<String, List<String>>();
+        try
         {
-            List<String> pkCols = new ArrayList<String>();
-            ResultSet primaryKeys = dbMeta.getPrimaryKeys(null, dbSchema, t);
-            while (primaryKeys.next())
+            collectPrimaryKeys(dbMeta, dbSchema, null, pkMap);
+        }
+        catch (SQLException e)
+        {
+            DBModelChecker.log.info("Unable to query primary keys for all tables: {}", e.getMessage());
+        }
+        if (pkMap.isEmpty())
+        {   // Some drivers require a table name
+            for (String t : this.tableMap.keySet())
             {
-                pkCols.add(primaryKeys.getString("COLUMN_NAME"));
+                collectPrimaryKeys(dbMeta, dbSchema, t, pkMap);
             }
-            if (pkCols.size() > 0)
+        }
+        // Set primary keys
+        for (Map.Entry<String, List<String>> e : pkMap.entrySet())
+        {
+            DBTable table = this.tableMap.get(e.getKey());
+            if (table == null)
+            {
+                continue;
+            }
+            List<String> pkCols = e.getValue();
+            DBColumn[] keys = new DBColumn[pkCols.size()];
+            for (int i = 0; i < keys.length; i++)
             {
-                DBTable table = this.tableMap.get(t.toUpperCase());
-                DBColumn[] keys = new DBColumn[pkCols.size()];
-                for (int i = 0; i < keys.length; i++)
+                keys[i] = table.getColumn(pkCols.get(i).toUpperCase());
+            }
+            table.setPrimaryKey(keys);
+        }
+    }
+
+    private void collectPrimaryKeys(DatabaseMetaData dbMeta, String dbSchema, String tableName, Map<String, List<String>> pkMap)
+        throws SQLException
+    {
+        ResultSet primaryKeys = dbMeta.getPrimaryKeys(null, dbSchema, tableName);
+        try
+        {
+            while (primaryKeys.next())
+            {
+                String t = primaryKeys.getString("TABLE_NAME").toUpperCase();
+                List<String> pkCols = pkMap.get(t);
+                if (pkCols == null)
                 {
-                    keys[i] = table.getColumn(pkCols.get(i).toUpperCase());
+                    pkCols = new ArrayList<String>();
+                    pkMap.put(t, pkCols);
                 }
-                table.setPrimaryKey(keys);
+                pkCols.add(primaryKeys.getString("COLUMN_NAME"));
             }
         }
+        finally
+        {
+            primaryKeys.close();
+        }
     }
 
     // Findet nur Foreign Keys die auf eine Primary Key Spalte gehen
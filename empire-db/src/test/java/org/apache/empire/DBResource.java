@@ -112,7 +112,7 @@ public class DBResource extends ExternalResource
               DBDatabaseDriverDerby.class),
         H2(
               "org.h2.Driver", 
-              "jdbc:h2:mem:data/h2/test",
+              "jdbc:h2:mem:data/h2/dbresource",
               DBDatabaseDriverH2.class),
         POSTGRESQL(
               "org.postgresql.Driver", 
@@ -356,4 +356,71 @@ public class OptionsTest
         assertEquals("txt2", node.getTextContent());
     }
 
+    /**
+     * Test method for {@link org.apache.empire.commons.Options#get(java.lang.Object)} on large lists.
+     */
+    @Test
+    public void testLookupIndex()
+    {
+        Options options = new Options();
+        for (int i=0; i<100; i++)
+            options.add(Integer.valueOf(i), "text"+i, true);
+        // lookup
+        assertEquals("text50", options.get(Integer.valueOf(50)));
+        assertEquals("text50", options.get(Long.valueOf(50)));
+        assertEquals("text50", options.get("50"));
+        assertEquals("", options.get(Integer.valueOf(100)));
+        assertEquals("", options.get(null));
+        // insert at top
+        options.set(Integer.valueOf(-1), "first", InsertPos.Top);
+        assertEquals("first", options.get(Integer.valueOf(-1)));
+        assertEquals("first", options.getTextAt(0));
+        assertEquals(51, options.getIndex(Integer.valueOf(50)));
+        // change
+        options.set(Integer.valueOf(50), "changed");
+        assertEquals("changed", options.get(Integer.valueOf(50)));
+        // remove
+        assertTrue(options.remove(Integer.valueOf(50)));
+        assertFalse(options.contains(Integer.valueOf(50)));
+        Iterator<OptionEntry> it = options.iterator();
+        it.next();
+        it.remove();
+        assertFalse(options.contains(Integer.valueOf(-1)));
+        assertEquals("text49", options.get(Integer.valueOf(49)));
+        // mixed types
+        options.set("A", "letter");
+        assertEquals("letter", options.get("A"));
+        assertEquals("text51", options.get("51"));
+        assertEquals(100, options.size());
+    }
+
+    /**
+     * Test method for {@link org.apache.empire.commons.Options#getIndex(java.lang.Object)} on large lists.
+     */
+    @Test
+    public void testLookupIndexPositions()
+    {
+        Options options = new Options();
+        for (int i=0; i<50; i++)
+            options.add(Integer.valueOf(i*2), "text"+(i*2), true);
+        assertEquals(10, options.getIndex(Integer.valueOf(20)));
+        assertEquals(-1, options.getIndex(Integer.valueOf(21)));
+        // add at the bottom
+        options.set(Integer.valueOf(101), "text101");
+        assertEquals(50, options.getIndex(Integer.valueOf(101)));
+        assertEquals(10, options.getIndex(Integer.valueOf(20)));
+        // replace
+        options.add(new OptionEntry(Long.valueOf(20), "replaced"));
+        assertEquals(10, options.getIndex(Integer.valueOf(20)));
+        assertEquals("replaced", options.getTextAt(10));
+        // sorted insert moves the following entries
+        options.set(Integer.valueOf(-1), "a", InsertPos.Sort);
+        assertEquals("a", options.getTextAt(0));
+        assertEquals(0, options.getIndex(Integer.valueOf(-1)));
+        assertEquals(11, options.getIndex(Integer.valueOf(20)));
+        assertEquals(51, options.getIndex(Integer.valueOf(101)));
+        for (int i=0; i<options.size(); i++)
+            assertEquals(i, options.getIndex(options.getValueAt(i)));
+    }
+
 }
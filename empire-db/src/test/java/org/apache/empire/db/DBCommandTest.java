@@ -19,6 +19,7 @@
 package org.apache.empire.db;
 
 import org.apache.empire.data.DataType;
+import org.apache.empire.db.expr.join.DBJoinExpr;
 import org.junit.Test;
 import org.w3c.dom.Element;
 
@@ -26,7 +27,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author francisdb
@@ -63,6 +67,68 @@ public class DBCommandTest
         assertEquals(2, command3.groupBy.size());
 	}
 	
+	@Test
+	public void testJoinsNotModifiedBySelect()
+	{
+		CompanyDB db = new CompanyDB();
+		db.open(new MockDriver(), null);
+		CompanyDB.Employees EMP = db.EMPLOYEE;
+		CompanyDB.Departments DEP = db.DEPARTMENT;
+		CompanyDB.Data DAT = db.DATA;
+
+		// second join must be rendered reversed
+		DBJoinExpr first = new DBJoinExpr(EMP.DEPARTMENT_ID, DEP.ID, DBJoinType.INNER);
+		DBJoinExpr second = new DBJoinExpr(DAT.ID, EMP.ID, DBJoinType.LEFT);
+		DBCommand cmd = db.createCommand();
+		cmd.select(EMP.ID);
+		cmd.joins = new ArrayList<DBJoinExpr>();
+		cmd.joins.add(first);
+		cmd.joins.add(second);
+		String sql = cmd.getSelect();
+		assertTrue(sql, sql.indexOf("RIGHT JOIN DATA")>0);
+		// the join itself is unchanged
+		assertSame(DAT.ID, second.getLeft());
+		assertSame(EMP.ID, second.getRight());
+		assertEquals(DBJoinType.LEFT, second.getType());
+		assertEquals(sql, cmd.getSelect());
+
+		// addJoins reverses like join()
+		DBCommand cmd2 = db.createCommand();
+		cmd2.select(EMP.ID);
+		List<DBJoinExpr> list = new ArrayList<DBJoinExpr>();
+		list.add(new DBJoinExpr(EMP.DEPARTMENT_ID, DEP.ID, DBJoinType.INNER));
+		list.add(new DBJoinExpr(DAT.ID, EMP.ID, DBJoinType.LEFT));
+		cmd2.addJoins(list);
+		assertSame(DAT.ID, cmd2.getJoins().get(1).getRight());
+		assertEquals(DBJoinType.RIGHT, cmd2.getJoins().get(1).getType());
+	}
+
+	@Test
+	public void testRemoveJoinsNormalizes()
+	{
+		CompanyDB db = new CompanyDB();
+		db.open(new MockDriver(), null);
+		CompanyDB.Employees EMP = db.EMPLOYEE;
+		CompanyDB.Departments DEP = db.DEPARTMENT;
+		CompanyDB.Data DAT = db.DATA;
+
+		// joins that have not been normalized
+		DBJoinExpr second = new DBJoinExpr(DAT.ID, EMP.ID, DBJoinType.LEFT);
+		DBCommand cmd = db.createCommand();
+		cmd.joins = new ArrayList<DBJoinExpr>();
+		cmd.joins.add(new DBJoinExpr(EMP.DEPARTMENT_ID, DEP.ID, DBJoinType.INNER));
+		cmd.joins.add(second);
+		cmd.joins.add(new DBJoinExpr(DEP.HEAD, DAT.DATA, DBJoinType.INNER));
+		assertFalse(cmd.removeJoinsOn(EMP.EMAIL));
+		assertTrue(cmd.removeJoinsOn(DEP.HEAD));
+		assertEquals(2, cmd.getJoins().size());
+		// remaining join has been reversed
+		assertSame(second, cmd.getJoins().get(1));
+		assertSame(EMP.ID, second.getLeft());
+		assertSame(DAT.ID, second.getRight());
+		assertEquals(DBJoinType.RIGHT, second.getType());
+	}
+
 	private class MockDB extends DBDatabase{
         private static final long serialVersionUID = 1L;
 		
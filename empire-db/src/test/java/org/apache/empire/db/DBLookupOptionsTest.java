@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.commons.Options;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBLookupOptionsTest
+{
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+    
+    private CompanyDB createDatabase(Connection conn)
+    {
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        return db;
+    }
+    
+    private Object createDepartment(CompanyDB db, String name, Connection conn)
+    {
+        DBRecord department = new DBRecord();
+        department.create(db.DEPARTMENT);
+        department.setValue(db.DEPARTMENT.NAME, name);
+        department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        department.update(conn);
+        return department.getValue(db.DEPARTMENT.ID);
+    }
+
+    @Test
+    public void testGetOptions()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        Object dep1 = createDepartment(db, "dep1", conn);
+        createDepartment(db, "dep2", conn);
+        
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME);
+        cmd.orderBy(db.DEPARTMENT.NAME);
+        DBLookupOptions lookup = new DBLookupOptions(cmd);
+        assertFalse(lookup.isLoaded());
+        
+        Options options = lookup.getOptions(conn);
+        assertTrue(lookup.isLoaded());
+        assertEquals(2, options.size());
+        assertEquals("dep1", options.get(dep1));
+        assertSame(options, lookup.getOptions(conn));
+        
+        // reload
+        createDepartment(db, "dep3", conn);
+        assertEquals(2, lookup.getOptions(conn).size());
+        lookup.clear();
+        assertEquals(3, lookup.getOptions(conn).size());
+    }
+
+    @Test
+    public void testTimeToLive() throws InterruptedException
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        createDepartment(db, "dep1", conn);
+        
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME);
+        DBLookupOptions lookup = new DBLookupOptions(cmd, 1);
+        assertEquals(1, lookup.getOptions(conn).size());
+        
+        // expired options are loaded again
+        createDepartment(db, "dep2", conn);
+        Thread.sleep(5);
+        assertEquals(2, lookup.getOptions(conn).size());
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBReaderTest{
+ 
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+    
+    private CompanyDB createDatabase(Connection conn)
+    {
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        for (int i=0; i<3; i++)
+        {   // add departments
+            DBRecord department = new DBRecord();
+            department.create(db.DEPARTMENT);
+            department.setValue(db.DEPARTMENT.NAME, "junit"+i);
+            department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            department.update(conn);
+        }
+        return db;
+    }
+    
+    @Test
+    public void testTrackingMode()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        DBReader.TrackingMode prevMode = DBReader.getTrackingMode();
+        try {
+            DBCommand cmd = db.createCommand();
+            cmd.select(db.DEPARTMENT.NAME);
+            for (DBReader.TrackingMode mode : DBReader.TrackingMode.values())
+            {   // open and close
+                DBReader.setTrackingMode(mode);
+                DBReader r = new DBReader();
+                try {
+                    r.open(cmd, conn);
+                    assertEquals((mode==DBReader.TrackingMode.OFF ? 0 : 1), db.getOpenReaderCount());
+                } finally {
+                    r.close();
+                }
+                assertEquals(0, db.getOpenReaderCount());
+            }
+            // mode changed while open
+            DBReader.setTrackingMode(DBReader.TrackingMode.COUNTING);
+            DBReader r = new DBReader();
+            r.open(cmd, conn);
+            DBReader.setTrackingMode(DBReader.TrackingMode.OFF);
+            r.close();
+            assertEquals(0, db.getOpenReaderCount());
+        } finally {
+            DBReader.setTrackingMode(prevMode);
+        }
+    }
+
+    @Test
+    public void testStreaming()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.where(db.DEPARTMENT.BUSINESS_UNIT.is("test"));
+        cmd.setFetchSize(2);
+        DBReader r = new DBReader();
+        try {
+            r.openStreaming(cmd, conn);
+            assertFalse(r.getScrollable());
+            int count = 0;
+            Iterator<DBRecordData> i = r.closingIterator();
+            while (i.hasNext())
+            {
+                assertTrue(i.next().getString(0).startsWith("junit"));
+                count++;
+            }
+            assertEquals(3, count);
+            // closed after last row
+            assertFalse(r.isOpen());
+            assertEquals(0, db.getOpenReaderCount());
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testStreamingConnection() throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+        // a driver which requires auto-commit to be off for streaming
+        DBDatabaseDriver driver = new DBDatabaseDriverHSql() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public boolean beginStreaming(Connection conn) throws SQLException
+            {
+                if (conn.getAutoCommit()==false)
+                    return false;
+                conn.setAutoCommit(false);
+                return true;
+            }
+            @Override
+            public void endStreaming(Connection conn) throws SQLException
+            {
+                conn.setAutoCommit(true);
+            }
+        };
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.setFetchSize(2);
+        // a fetch size alone does not change the connection
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            assertTrue(conn.getAutoCommit());
+        } finally {
+            r.close();
+        }
+        // streaming restores the connection when closed
+        try {
+            r.openStreaming(cmd, conn);
+            assertFalse(conn.getAutoCommit());
+        } finally {
+            r.close();
+        }
+        assertTrue(conn.getAutoCommit());
+        // a connection in a transaction is left as it is
+        conn.setAutoCommit(false);
+        try {
+            r.openStreaming(cmd, conn);
+            r.close();
+            assertFalse(conn.getAutoCommit());
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    @Test
+    public void testKeysetPagination()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME, db.DEPARTMENT.BUSINESS_UNIT);
+        cmd.where(db.DEPARTMENT.BUSINESS_UNIT.is("test"));
+        cmd.orderBy(db.DEPARTMENT.BUSINESS_UNIT);
+        cmd.orderBy(db.DEPARTMENT.NAME, true);
+        // first page
+        Object[] pageKey;
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            List<Department> page = r.getBeanList(Department.class, 2);
+            assertEquals(2, page.size());
+            assertEquals("junit2", page.get(0).getName());
+            assertEquals("junit1", page.get(1).getName());
+            pageKey = cmd.getOrderByValues(r);
+        } finally {
+            r.close();
+        }
+        assertEquals(2, pageKey.length);
+        assertEquals("junit1", pageKey[1]);
+        // second page
+        cmd.seek(pageKey);
+        try {
+            r.open(cmd, conn);
+            List<Department> page = r.getBeanList(Department.class, 2);
+            assertEquals(1, page.size());
+            assertEquals("junit0", page.get(0).getName());
+        } finally {
+            r.close();
+        }
+        // seek replaced, other constraints kept
+        cmd.seek(new Object[] { "test", "junit2" });
+        cmd.seek(new Object[] { "test", "junit0" });
+        assertEquals(2, cmd.getWhereConstraints().size());
+        try {
+            r.open(cmd, conn);
+            assertFalse(r.moveNext());
+        } finally {
+            r.close();
+        }
+        cmd.clearSeek();
+        assertEquals(1, cmd.getWhereConstraints().size());
+        // no page key for null values
+        cmd.clearOrderBy();
+        cmd.select(db.DEPARTMENT.HEAD);
+        cmd.orderBy(db.DEPARTMENT.HEAD);
+        cmd.orderBy(db.DEPARTMENT.ID);
+        try {
+            r.open(cmd, conn);
+            assertTrue(r.moveNext());
+            assertNull(cmd.getOrderByValues(r));
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testPrimitiveAccessors()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.HEAD, db.DEPARTMENT.NAME);
+        cmd.where(db.DEPARTMENT.NAME.is("junit1"));
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            assertTrue(r.moveNext());
+            // integer
+            int id = r.getInt(db.DEPARTMENT.ID);
+            assertFalse(r.wasNull());
+            assertTrue(id>0);
+            assertEquals(id, r.getLong(db.DEPARTMENT.ID));
+            assertEquals(id, r.getDouble(db.DEPARTMENT.ID), 0.0);
+            assertEquals(((Number)r.getValue(db.DEPARTMENT.ID)).intValue(), id);
+            // null value
+            assertEquals(0, r.getInt(db.DEPARTMENT.HEAD));
+            assertTrue(r.wasNull());
+            // conversion
+            assertFalse(r.getBoolean(db.DEPARTMENT.NAME));
+        } finally {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testBeanList()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        // select properties
+        DBCommand cmd = db.createCommand();
+        cmd.select(DEP.ID, DEP.NAME, DEP.BUSINESS_UNIT);
+        cmd.orderBy(DEP.NAME);
+        List<Department> list;
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            list = r.getBeanList(Department.class);
+        } finally {
+            r.close();
+        }
+        assertEquals(3, list.size());
+        assertEquals("junit0", list.get(0).getName());
+        assertEquals("test", list.get(2).getBusinessUnit());
+        assertTrue(list.get(1).getDepartmentId() > 0);
+        // the mapper must be reused
+        DBBeanMapper<Department> mapper = DBBeanMapper.getInstance(Department.class, cmd.getSelectExprList());
+        assertSame(mapper, DBBeanMapper.getInstance(Department.class, cmd.getSelectExprList()));
+        assertEquals(false, mapper.isConstructorMapping());
+        // overridden property hook must be honored
+        DBReader hr = new DBReader()
+        {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected void getBeanProperty(Object bean, String property, Object value)
+            {
+                if ("name".equals(property))
+                    value = String.valueOf(value).toUpperCase();
+                super.getBeanProperty(bean, property, value);
+            }
+        };
+        try {
+            hr.open(cmd, conn);
+            list = hr.getBeanList(Department.class);
+        } finally {
+            hr.close();
+        }
+        assertEquals("JUNIT0", list.get(0).getName());
+        assertEquals(true, DBBeanMapper.isBeanPropertyHookOverridden(hr.getClass()));
+        assertEquals(false, DBBeanMapper.isBeanPropertyHookOverridden(DBReader.class));
+        // select constructor params
+        cmd.clearSelect();
+        cmd.select(DEP.NAME, DEP.BUSINESS_UNIT);
+        List<DepartmentInfo> infos;
+        try {
+            r.open(cmd, conn);
+            infos = r.getBeanList(DepartmentInfo.class);
+        } finally {
+            r.close();
+        }
+        assertEquals(3, infos.size());
+        assertEquals("junit1", infos.get(1).name);
+        assertEquals(true, DBBeanMapper.getInstance(DepartmentInfo.class, cmd.getSelectExprList()).isConstructorMapping());
+    }
+    
+    public static class Department
+    {
+        private long   departmentId;
+        private String name;
+        private String businessUnit;
+        
+        public long getDepartmentId()
+        {
+            return departmentId;
+        }
+        public void setDepartmentId(long departmentId)
+        {
+            this.departmentId = departmentId;
+        }
+        public String getName()
+        {
+            return name;
+        }
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+        public String getBusinessUnit()
+        {
+            return businessUnit;
+        }
+        public void setBusinessUnit(String businessUnit)
+        {
+            this.businessUnit = businessUnit;
+        }
+    }
+    
+    public static class DepartmentInfo
+    {
+        private final String name;
+        private final String businessUnit;
+        
+        public DepartmentInfo(String name, String businessUnit)
+        {
+            this.name = name;
+            this.businessUnit = businessUnit;
+        }
+        public String getBusinessUnit()
+        {
+            return businessUnit;
+        }
+    }
+    @Test
+    public void testInitRecordFieldIndexes()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME, db.DEPARTMENT.ID, db.DEPARTMENT.UPDATE_TIMESTAMP);
+        cmd.orderBy(db.DEPARTMENT.NAME);
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            int[] fieldIndexes = r.getFieldIndexes(db.DEPARTMENT);
+            assertEquals(db.DEPARTMENT.getColumns().size(), fieldIndexes.length);
+            assertEquals(0, fieldIndexes[db.DEPARTMENT.getColumnIndex(db.DEPARTMENT.NAME)]);
+            assertEquals(1, fieldIndexes[db.DEPARTMENT.getColumnIndex(db.DEPARTMENT.ID)]);
+            assertEquals(-1, fieldIndexes[db.DEPARTMENT.getColumnIndex(db.DEPARTMENT.BUSINESS_UNIT)]);
+            assertSame(fieldIndexes, r.getFieldIndexes(db.DEPARTMENT));
+            // init records
+            int count = 0;
+            while (r.moveNext())
+            {
+                DBRecord rec = new DBRecord();
+                r.initRecord(db.DEPARTMENT, rec);
+                assertEquals("junit"+count, rec.getString(db.DEPARTMENT.NAME));
+                assertEquals(r.getValue(1), rec.getValue(db.DEPARTMENT.ID));
+                assertFalse(rec.isValueValid(db.DEPARTMENT.getColumnIndex(db.DEPARTMENT.BUSINESS_UNIT)));
+                count++;
+            }
+            assertEquals(3, count);
+            // reopen with a different select list
+            cmd.clearSelect();
+            cmd.select(db.DEPARTMENT.ID, db.DEPARTMENT.NAME);
+            r.open(cmd, conn);
+            assertEquals(1, r.getFieldIndexes(db.DEPARTMENT)[db.DEPARTMENT.getColumnIndex(db.DEPARTMENT.NAME)]);
+        } finally {
+            r.close();
+        }
+    }
+
+}
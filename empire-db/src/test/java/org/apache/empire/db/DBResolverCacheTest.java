@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DBResolverCacheTest
+{
+    @Test
+    public void testGetAndPut()
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+        DBResolverCache<DBColumn> cache = new DBResolverCache<DBColumn>();
+        String key = db.getId()+".DEPARTMENTS.NAME";
+        assertNull(cache.get(key));
+        cache.put(key, db.DEPARTMENT.NAME);
+        assertSame(db.DEPARTMENT.NAME, cache.get(key));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertNull(cache.get(key));
+        db.close(null);
+    }
+
+    @Test
+    public void testCloseDatabase()
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+        String id = db.getId();
+        DBResolverCache<DBColumn> cache = new DBResolverCache<DBColumn>();
+        cache.put(id+".DEPARTMENTS.NAME", db.DEPARTMENT.NAME);
+        assertEquals(1, cache.size());
+        // closing unregisters the database and discards the cache
+        int count = DBDatabase.getRegistrationCount();
+        db.close(null);
+        assertNull(DBDatabase.findById(id));
+        assertTrue(DBDatabase.getRegistrationCount()!=count);
+        assertNull(cache.get(id+".DEPARTMENTS.NAME"));
+        assertEquals(0, cache.size());
+        // opening registers the database again under the same id
+        db.open(new MockDriver(), null);
+        assertSame(db, DBDatabase.findById(id));
+        db.close(null);
+    }
+
+    @Test
+    public void testRegisterDatabase()
+    {
+        CompanyDB db = new CompanyDB();
+        db.open(new MockDriver(), null);
+        DBResolverCache<DBColumn> cache = new DBResolverCache<DBColumn>();
+        cache.put(db.getId()+".DEPARTMENTS.NAME", db.DEPARTMENT.NAME);
+        // a new database discards the cache
+        CompanyDB other = new CompanyDB();
+        assertNull(cache.get(db.getId()+".DEPARTMENTS.NAME"));
+        other.close(null);
+        db.close(null);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.db.DBRelation.DBCascadeAction;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBRowSetTest{
+ 
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+    
+    private CompanyDB createDatabase(Connection conn)
+    {
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        return db;
+    }
+    
+    private Object[] createDepartment(CompanyDB db, String name, int employees, Connection conn)
+    {
+        DBRecord department = new DBRecord();
+        department.create(db.DEPARTMENT);
+        department.setValue(db.DEPARTMENT.NAME, name);
+        department.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+        department.update(conn);
+        for (int i=0; i<employees; i++)
+        {   // add employees
+            DBRecord employee = new DBRecord();
+            employee.create(db.EMPLOYEE);
+            employee.setValue(db.EMPLOYEE.FIRSTNAME, "junit"+i);
+            employee.setValue(db.EMPLOYEE.LASTNAME, name);
+            employee.setValue(db.EMPLOYEE.DEPARTMENT_ID, department.getValue(db.DEPARTMENT.ID));
+            employee.update(conn);
+        }
+        return department.getKeyValues();
+    }
+    
+    private int countEmployees(CompanyDB db, Connection conn)
+    {
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.count());
+        return db.querySingleInt(cmd, 0, conn);
+    }
+    
+    @Test
+    public void testColumnLookup()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        // by name
+        assertSame(db.EMPLOYEE.LASTNAME, db.EMPLOYEE.getColumn("LASTNAME"));
+        assertSame(db.EMPLOYEE.LASTNAME, db.EMPLOYEE.getColumn("lastName"));
+        assertNull(db.EMPLOYEE.getColumn("UNKNOWN"));
+        // by column
+        for (int i=0; i<db.EMPLOYEE.getColumns().size(); i++)
+            assertEquals(i, db.EMPLOYEE.getColumnIndex(db.EMPLOYEE.getColumn(i)));
+        assertEquals(-1, db.EMPLOYEE.getColumnIndex(db.DEPARTMENT.NAME));
+        // hash code
+        assertEquals(db.EMPLOYEE.hashCode(), db.EMPLOYEE.hashCode());
+        assertFalse(db.EMPLOYEE.hashCode()==db.DEPARTMENT.hashCode());
+        // record
+        DBRecord rec = new DBRecord();
+        rec.create(db.EMPLOYEE);
+        assertEquals(db.EMPLOYEE.getColumnIndex(db.EMPLOYEE.EMAIL), rec.getFieldIndex("Email"));
+        assertEquals(-1, rec.getFieldIndex("UNKNOWN"));
+    }
+    
+    @Test
+    public void testSetBasedCascadeDelete()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        for (DBRelation rel : db.getRelations())
+            rel.setOnDeleteAction(DBCascadeAction.CASCADE_RECORDS);
+        
+        Object[] dep1 = createDepartment(db, "dep1", 5, conn);
+        Object[] dep2 = createDepartment(db, "dep2", 3, conn);
+        Object[] dep3 = createDepartment(db, "dep3", 2, conn);
+        assertEquals(10, countEmployees(db, conn));
+
+        // record by record
+        db.DEPARTMENT.deleteRecord(dep1, conn);
+        assertEquals(5, countEmployees(db, conn));
+        
+        // set based
+        db.setSetBasedCascadeDelete(true);
+        db.DEPARTMENT.deleteRecord(dep2, conn);
+        assertEquals(2, countEmployees(db, conn));
+        
+        // only the employees of the remaining department are left
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.EMPLOYEE.count());
+        cmd.where(db.EMPLOYEE.DEPARTMENT_ID.is(dep3[0]));
+        assertEquals(2, db.querySingleInt(cmd, 0, conn));
+    }
+    
+    @Test
+    public void testRecordCache()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        Object[] dep1 = createDepartment(db, "dep1", 0, conn);
+        Object[] dep2 = createDepartment(db, "dep2", 0, conn);
+        
+        DBRecordCache cache = new DBRecordCache(1);
+        db.DEPARTMENT.setRecordCache(cache);
+        
+        // read twice
+        DBRecord rec = new DBRecord();
+        db.DEPARTMENT.readRecord(rec, dep1, conn);
+        db.DEPARTMENT.readRecord(rec, dep1, conn);
+        assertEquals("dep1", rec.getString(db.DEPARTMENT.NAME));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        
+        // update record
+        rec.setValue(db.DEPARTMENT.NAME, "dep1a");
+        rec.update(conn);
+        assertEquals(0, cache.getSize());
+        db.DEPARTMENT.readRecord(rec, dep1, conn);
+        assertEquals("dep1a", rec.getString(db.DEPARTMENT.NAME));
+        assertEquals(2, cache.getMissCount());
+        
+        // update by command
+        DBCommand cmd = db.createCommand();
+        cmd.set(db.DEPARTMENT.NAME.to("dep1b"));
+        cmd.where(db.DEPARTMENT.ID.is(dep1[0]));
+        db.executeUpdate(cmd, conn);
+        db.DEPARTMENT.readRecord(rec, dep1, conn);
+        assertEquals("dep1b", rec.getString(db.DEPARTMENT.NAME));
+        assertEquals(3, cache.getMissCount());
+        
+        // eviction
+        db.DEPARTMENT.readRecord(rec, dep2, conn);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.getSize());
+        
+        // delete
+        db.DEPARTMENT.deleteRecord(dep2, conn);
+        assertEquals(0, cache.getSize());
+        assertFalse(db.DEPARTMENT.recordExists(dep2, conn));
+        db.DEPARTMENT.setRecordCache(null);
+    }
+
+    @Test
+    public void testRecordCacheTransaction() throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        Object[] dep1 = createDepartment(db, "dep1", 0, conn);
+        
+        DBRecordCache cache = new DBRecordCache(10);
+        db.DEPARTMENT.setRecordCache(cache);
+        DBRecord rec = new DBRecord();
+        db.DEPARTMENT.readRecord(rec, dep1, conn);
+        assertEquals(1, cache.getSize());
+        Object[] committedFields = rec.getFields().clone();
+        try {
+            // uncommitted changes must not be cached
+            conn.setAutoCommit(false);
+            rec.setValue(db.DEPARTMENT.NAME, "dep1a");
+            rec.update(conn);
+            assertEquals(0, cache.getSize());
+            db.DEPARTMENT.readRecord(rec, dep1, conn);
+            assertEquals("dep1a", rec.getString(db.DEPARTMENT.NAME));
+            assertEquals(0, cache.getSize());
+            db.rollback(conn);
+            conn.setAutoCommit(true);
+            db.DEPARTMENT.readRecord(rec, dep1, conn);
+            assertEquals("dep1", rec.getString(db.DEPARTMENT.NAME));
+            assertEquals(1, cache.getSize());
+            
+            // cache is cleared on commit
+            conn.setAutoCommit(false);
+            rec.setValue(db.DEPARTMENT.NAME, "dep1b");
+            rec.update(conn);
+            // another connection caches the committed values
+            cache.putFields(dep1, committedFields);
+            db.commit(conn);
+            assertEquals(0, cache.getSize());
+            conn.setAutoCommit(true);
+            db.DEPARTMENT.readRecord(rec, dep1, conn);
+            assertEquals("dep1b", rec.getString(db.DEPARTMENT.NAME));
+        } finally {
+            conn.setAutoCommit(true);
+            db.DEPARTMENT.setRecordCache(null);
+        }
+    }
+
+    @Test
+    public void testRecordCacheKeyTypes()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        Object[] dep1 = createDepartment(db, "dep1", 0, conn);
+        long id = ((Number)dep1[0]).longValue();
+        Object[] stringKey  = new Object[] { String.valueOf(id) };
+        Object[] decimalKey = new Object[] { new BigDecimal(id).setScale(2) };
+        
+        DBRecordCache cache = new DBRecordCache(10);
+        db.DEPARTMENT.setRecordCache(cache);
+        try {
+            // the same record must be found regardless of the key type
+            DBRecord rec = new DBRecord();
+            db.DEPARTMENT.readRecord(rec, stringKey, conn);
+            db.DEPARTMENT.readRecord(rec, decimalKey, conn);
+            db.DEPARTMENT.readRecord(rec, dep1, conn);
+            assertEquals(1, cache.getSize());
+            assertEquals(1, cache.getMissCount());
+            assertEquals(2, cache.getHitCount());
+            
+            // update removes the record cached by a different key type
+            rec.setValue(db.DEPARTMENT.NAME, "dep1a");
+            rec.update(conn);
+            assertEquals(0, cache.getSize());
+            db.DEPARTMENT.readRecord(rec, decimalKey, conn);
+            assertEquals("dep1a", rec.getString(db.DEPARTMENT.NAME));
+            assertEquals(1, cache.getSize());
+            
+            // delete by a string key
+            db.DEPARTMENT.deleteRecord(stringKey, conn);
+            assertEquals(0, cache.getSize());
+        } finally {
+            db.DEPARTMENT.setRecordCache(null);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.DBStatementInfo.StatementType;
+import org.apache.empire.exceptions.EmpireException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class DBStatementStatsTest{
+ 
+    @Rule
+    public DBResource dbResource = new DBResource(DB.HSQL);
+    
+    private CompanyDB createDatabase(Connection conn)
+    {
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        return db;
+    }
+    
+    @Test
+    public void testNormalizeSql()
+    {
+        assertEquals("SELECT t1.NAME FROM T1 t1 WHERE t1.ID=? AND t1.NAME=?", 
+                     DBStatementInfo.normalizeSql("SELECT t1.NAME\r\n  FROM T1 t1\r\n WHERE t1.ID=42 AND t1.NAME='it''s'"));
+        assertEquals("SELECT * FROM T2 WHERE ID IN (?)", 
+                     DBStatementInfo.normalizeSql("SELECT * FROM T2 WHERE ID IN (1, 2, 3.5)"));
+        assertEquals("SELECT \"A 1\" FROM T2 WHERE ID IN (?)", 
+                     DBStatementInfo.normalizeSql("SELECT \"A 1\" FROM T2 WHERE ID IN (?, ?)"));
+    }
+    
+    @Test
+    public void testStatementStats()
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        DBStatementStats stats = new DBStatementStats(100, 2);
+        db.getDriver().setStatementListener(stats);
+        try {
+            // updates
+            for (int i=0; i<3; i++)
+            {
+                DBRecord dep = new DBRecord();
+                dep.create(db.DEPARTMENT);
+                dep.setValue(db.DEPARTMENT.NAME, "dep"+i);
+                dep.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+                dep.update(conn);
+            }
+            int inserts = 0;
+            for (DBStatementStats.ShapeStats s : stats.getShapes())
+            {   // may include sequence statements
+                if (s.getShape().startsWith("INSERT INTO DEPARTMENTS"))
+                    inserts += s.getCount();
+            }
+            assertEquals(3, inserts);
+            
+            // reader
+            DBCommand cmd = db.createCommand();
+            cmd.select(db.DEPARTMENT.NAME);
+            DBReader reader = new DBReader();
+            try {
+                reader.open(cmd, conn);
+                while (reader.moveNext())
+                    assertNotNull(reader.getString(db.DEPARTMENT.NAME));
+            } finally {
+                reader.close();
+            }
+            DBStatementStats.ShapeStats shape = stats.getShape(cmd.getSelect());
+            assertNotNull(shape);
+            assertEquals(StatementType.QUERY, shape.getType());
+            assertEquals(1, shape.getCount());
+            assertEquals(3, shape.getRowCount());
+            
+            // literal values share the same shape
+            for (int i=0; i<2; i++)
+                db.querySingleValue("SELECT NAME FROM DEPARTMENTS WHERE NAME='dep"+i+"'", null, DataType.UNKNOWN, conn);
+            shape = stats.getShape("SELECT NAME FROM DEPARTMENTS WHERE NAME='x'");
+            assertNotNull(shape);
+            assertEquals(2, shape.getCount());
+            assertEquals(2, shape.getRowCount());
+            long histogramCount = 0;
+            for (long bucket : shape.getHistogram())
+                histogramCount += bucket;
+            assertEquals(2, histogramCount);
+            
+            // batch
+            DBSQLScript script = new DBSQLScript();
+            script.addStmt("UPDATE DEPARTMENTS SET BUSINESS_UNIT='a' WHERE NAME='dep0'");
+            script.addStmt("UPDATE DEPARTMENTS SET BUSINESS_UNIT='b' WHERE NAME='dep1'");
+            assertEquals(2, script.executeBatch(db.getDriver(), conn));
+            shape = stats.getShape("UPDATE DEPARTMENTS SET BUSINESS_UNIT=? WHERE NAME=?");
+            assertNotNull(shape);
+            assertEquals(StatementType.BATCH, shape.getType());
+            assertEquals(2, shape.getRowCount());
+            
+            // error
+            try {
+                db.executeSQL("UPDATE UNKNOWN_TABLE SET X=1", conn);
+                fail("Statement should have failed");
+            } catch(EmpireException e) {
+                // expected
+            }
+            assertEquals(1, stats.getErrorCount());
+            
+            // slowest
+            List<DBStatementInfo> slowest = stats.getSlowest();
+            assertEquals(2, slowest.size());
+            assertTrue(slowest.get(0).getTotalNanos()>=slowest.get(1).getTotalNanos());
+            assertEquals(stats.getShapeCount(), stats.getShapeStatistics().length);
+            
+            // reset
+            stats.reset();
+            assertEquals(0, stats.getStatementCount());
+            assertEquals(0, stats.getSlowestStatements().length);
+        } finally {
+            db.getDriver().setStatementListener(null);
+        }
+        // not recorded any more
+        db.querySingleValue("SELECT COUNT(*) FROM DEPARTMENTS", null, DataType.UNKNOWN, conn);
+        assertEquals(0, stats.getStatementCount());
+        assertNull(stats.getShape("SELECT COUNT(*) FROM DEPARTMENTS"));
+    }
+    
+    @Test
+    public void testClosedStatement() throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+        CompanyDB db = createDatabase(conn);
+        DBStatementStats stats = new DBStatementStats(100, 2);
+        DBDatabaseDriver driver = db.getDriver();
+        driver.setStatementListener(stats);
+        try {
+            String sql = "SELECT COUNT(*) FROM DEPARTMENTS";
+            // statement closed directly
+            ResultSet rs = driver.executeQuery(sql, null, false, conn);
+            rs.getStatement().close();
+            assertNull(stats.getShape(sql));
+            assertEquals(1, driver.purgeClosedQueries());
+            assertEquals(0, driver.purgeClosedQueries());
+            DBStatementStats.ShapeStats shape = stats.getShape(sql);
+            assertNotNull(shape);
+            assertEquals(1, shape.getCount());
+            // released statements are not purged
+            rs = driver.executeQuery(sql, null, false, conn);
+            db.closeResultSet(rs, 1);
+            assertEquals(0, driver.purgeClosedQueries());
+            assertEquals(2, stats.getShape(sql).getCount());
+        } finally {
+            driver.setStatementListener(null);
+        }
+    }
+}
@@ -18,15 +18,33 @@
  */
 package org.apache.empire.db;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.empire.DBResource;
 import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdParam;
+import org.apache.empire.db.exceptions.RecordUpdateInvalidException;
+import org.apache.empire.db.hsql.DBDatabaseDriverHSql;
+import org.apache.empire.exceptions.UnexpectedReturnValueException;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -86,4 +104,398 @@ public class PreparedStatementTest{
             r.close();
         }
     }
+
+    @Test
+    public void testParamBinding()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        db.executeSQL("CREATE TABLE PARAM_TEST (C_INT INTEGER, C_LONG BIGINT, C_DECIMAL DECIMAL(10,2), C_DATE TIMESTAMP, C_TIMESTAMP TIMESTAMP, "
+                    + "C_BOOL BOOLEAN, C_STRING VARCHAR(20), C_ENUM VARCHAR(20), C_SQLDATE TIMESTAMP)", null, conn, null);
+        try {
+            long time = 1000000000000L;
+            Object[] params = new Object[] { Integer.valueOf(7), Long.valueOf(1L << 40), new BigDecimal("12.34"), new Date(time), new Timestamp(time + 1),
+                                             Boolean.TRUE, "junit", DataType.TEXT, new java.sql.Date(time + 2) };
+            db.executeSQL("INSERT INTO PARAM_TEST VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", params, conn, null);
+            // query using the same params
+            Object[] row = db.querySingleRow("SELECT * FROM PARAM_TEST WHERE C_INT=? AND C_LONG=? AND C_DECIMAL=? AND C_DATE=? AND C_TIMESTAMP=? "
+                                           + "AND C_BOOL=? AND C_STRING=? AND C_ENUM=? AND C_SQLDATE=?", params, conn);
+            assertEquals(7, ((Number)row[0]).intValue());
+            assertEquals(1L << 40, ((Number)row[1]).longValue());
+            assertEquals(0, new BigDecimal("12.34").compareTo((BigDecimal)row[2]));
+            assertEquals(time, ((Date)row[3]).getTime());
+            assertEquals(time + 1, ((Date)row[4]).getTime());
+            assertEquals(Boolean.TRUE, row[5]);
+            assertEquals("junit", row[6]);
+            // fallback: enums are converted to strings and subclasses of java.util.Date to timestamps
+            assertEquals("TEXT", row[7]);
+            assertEquals(time + 2, ((Date)row[8]).getTime());
+        } finally {
+            db.executeSQL("DROP TABLE PARAM_TEST", null, conn, null);
+        }
+    }
+
+    @Test
+    public void testStatementCache()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        driver.setStatementCacheSize(10);
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        DBCommand cmd = db.createCommand();
+        DBCmdParam idParam = cmd.addParam(null);
+        cmd.select(DEP.NAME);
+        cmd.where(DEP.ID.is(idParam));
+        
+        for (int i=0; i<3; i++)
+        {   // add a department
+            DBRecord department = new DBRecord();
+            department.create(DEP);
+            department.setValue(DEP.NAME, "junit"+i);
+            department.setValue(DEP.BUSINESS_UNIT, "test");
+            department.update(conn);
+            // query
+            idParam.setValue(department.getInt(DEP.ID));
+            assertEquals("junit"+i, db.querySingleString(cmd.getSelect(), cmd.getParamValues(), null, conn));
+        }
+        // second and third query must have been served from the cache
+        assertTrue(driver.getStatementCacheHits() >= 2);
+        assertTrue(driver.getStatementCache().getSize() > 0);
+        // release
+        db.close(conn);
+        assertEquals(0, driver.getStatementCache().getSize());
+    }
+    
+    @Test
+    public void testStatementCacheClosedConnection() throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        driver.setStatementCacheSize(10);
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        // a second connection which is closed without releasing its statements
+        Connection conn2 = DriverManager.getConnection(conn.getMetaData().getURL(), "sa", "");
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.count());
+        cmd.where(db.DEPARTMENT.ID.is(cmd.addParam(1)));
+        db.querySingleInt(cmd.getSelect(), cmd.getParamValues(), 0, conn2);
+        db.querySingleInt(cmd.getSelect(), cmd.getParamValues(), 0, conn);
+        assertEquals(2, driver.getStatementCache().getSize());
+        conn2.close();
+        
+        // only the statement of the closed connection is discarded
+        assertEquals(1, driver.getStatementCache().clearClosed());
+        assertEquals(1, driver.getStatementCache().getSize());
+        db.close(conn);
+    }
+
+    @Test
+    public void testCompiledRecordStatements()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        db.setPreparedStatementsEnabled(true);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        int[] ids = new int[3];
+        for (int i=0; i<ids.length; i++)
+        {   // insert using the same statement shape
+            DBRecord department = new DBRecord();
+            department.create(DEP);
+            department.setValue(DEP.NAME, "junit"+i);
+            department.setValue(DEP.BUSINESS_UNIT, "test");
+            department.update(conn);
+            ids[i] = department.getInt(DEP.ID);
+        }
+        for (int i=0; i<ids.length; i++)
+        {   // read and update
+            DBRecord department = new DBRecord();
+            department.read(DEP, ids[i], conn);
+            assertEquals("junit"+i, department.getString(DEP.NAME));
+            department.setValue(DEP.NAME, "updated"+i);
+            department.update(conn);
+        }
+        for (int i=0; i<ids.length; i++)
+        {   // check
+            DBRecord department = new DBRecord();
+            department.read(DEP, ids[i], conn);
+            assertEquals("updated"+i, department.getString(DEP.NAME));
+            assertEquals("test", department.getString(DEP.BUSINESS_UNIT));
+        }
+    }
+
+    @Test
+    public void testUpdateRecords()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        db.setPreparedStatementsEnabled(true);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        List<DBRecord> records = new ArrayList<DBRecord>();
+        for (int i=0; i<5; i++)
+        {   // create records
+            DBRecord department = new DBRecord();
+            department.create(DEP);
+            department.setValue(DEP.NAME, "batch"+i);
+            department.setValue(DEP.BUSINESS_UNIT, "test");
+            records.add(department);
+        }
+        assertEquals(5, DEP.updateRecords(records, conn));
+        for (DBRecord department : records)
+        {   // records must be valid and unmodified
+            assertEquals(false, department.isModified());
+            department.setValue(DEP.BUSINESS_UNIT, "btch");
+        }
+        assertEquals(5, DEP.updateRecords(records, conn));
+        // check
+        DBCommand cmd = db.createCommand();
+        cmd.select(DEP.count());
+        cmd.where(DEP.BUSINESS_UNIT.is("btch"));
+        assertEquals(5, db.querySingleInt(cmd, conn));
+    }
+
+    @Test
+    public void testUpdateRecordsConflict()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        db.setPreparedStatementsEnabled(true);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        List<DBRecord> records = new ArrayList<DBRecord>();
+        for (int i=0; i<3; i++)
+        {   // create records
+            DBRecord department = new DBRecord();
+            department.create(DEP);
+            department.setValue(DEP.NAME, "conflict"+i);
+            department.setValue(DEP.BUSINESS_UNIT, "test");
+            records.add(department);
+        }
+        assertEquals(3, DEP.updateRecords(records, conn));
+        // change the timestamp of the first record behind its back
+        DBCommand upd = db.createCommand();
+        upd.set(DEP.UPDATE_TIMESTAMP.to(Timestamp.valueOf("2000-01-01 00:00:00")));
+        upd.where(DEP.ID.is(records.get(0).getValue(DEP.ID)));
+        assertEquals(1, db.executeUpdate(upd, conn));
+        // update all
+        for (DBRecord department : records)
+            department.setValue(DEP.BUSINESS_UNIT, "cnfl");
+        try {
+            DEP.updateRecords(records, conn);
+            fail("Update of a stale record must fail");
+        } catch(RecordUpdateInvalidException e) {
+            // expected
+        }
+        // the conflicting record is still modified, all others are complete
+        assertTrue(records.get(0).isModified());
+        assertFalse(records.get(1).isModified());
+        assertFalse(records.get(2).isModified());
+        // the completed records can be saved again
+        for (int i=1; i<3; i++)
+        {
+            records.get(i).setValue(DEP.BUSINESS_UNIT, "ok");
+            records.get(i).update(conn);
+        }
+        DBCommand cmd = db.createCommand();
+        cmd.select(DEP.count());
+        cmd.where(DEP.BUSINESS_UNIT.is("ok"));
+        assertEquals(2, db.querySingleInt(cmd, conn));
+    }
+
+    @Test
+    public void testUpdateRecordsNoInfo()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        // a driver which does not report the number of rows affected by a batch 
+        DBDatabaseDriver driver = new DBDatabaseDriverHSql() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public int[] executeBatch(String[] sqlCmd, Object[][] sqlCmdParams, Connection conn)
+                throws SQLException
+            {
+                int[] res = super.executeBatch(sqlCmd, sqlCmdParams, conn);
+                Arrays.fill(res, Statement.SUCCESS_NO_INFO);
+                return res;
+            }
+        };
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        db.setPreparedStatementsEnabled(true);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        List<DBRecord> records = new ArrayList<DBRecord>();
+        for (int i=0; i<3; i++)
+        {   // create records
+            DBRecord department = new DBRecord();
+            department.create(DEP);
+            department.setValue(DEP.NAME, "noinfo"+i);
+            department.setValue(DEP.BUSINESS_UNIT, "test");
+            records.add(department);
+        }
+        // inserts have no timestamp constraint
+        assertEquals(3, DEP.updateRecords(records, conn));
+        // updates cannot be verified
+        for (DBRecord department : records)
+            department.setValue(DEP.BUSINESS_UNIT, "upd");
+        try {
+            DEP.updateRecords(records, conn);
+            fail("Update with an unknown row count must fail");
+        } catch(UnexpectedReturnValueException e) {
+            // expected
+        }
+        for (DBRecord department : records)
+            assertTrue(department.isModified());
+    }
+
+    @Test
+    public void testAutoParameterize()
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        List<Object> ids = new ArrayList<Object>();
+        for (int i=0; i<3; i++)
+        {   // create records
+            DBRecord department = new DBRecord();
+            department.create(DEP);
+            department.setValue(DEP.NAME, "auto"+i);
+            department.setValue(DEP.BUSINESS_UNIT, "test");
+            department.update(conn);
+            ids.add(department.getValue(DEP.ID));
+        }
+        
+        DBCommand cmd = db.createCommand();
+        cmd.setAutoParameterize(true);
+        cmd.select(DEP.count());
+        cmd.where(DEP.BUSINESS_UNIT.is("test"));
+        cmd.where(DEP.ID.in(ids));
+        String sql = cmd.getSelect();
+        assertTrue(sql.indexOf("'test'")<0);
+        assertTrue(sql.indexOf("IN (?, ?, ?, ?)")>0);
+        assertEquals(5, cmd.getParamValues().length);
+        // generate again
+        assertEquals(sql, cmd.getSelect());
+        assertEquals(5, cmd.getParamValues().length);
+        assertEquals(3, db.querySingleInt(cmd, conn));
+        // other values same statement
+        cmd.where(DEP.ID.in(ids.subList(0, 2)));
+        assertEquals(sql.replace("IN (?, ?, ?, ?)", "IN (?, ?)"), cmd.getSelect());
+        assertEquals(2, db.querySingleInt(cmd, conn));
+        
+        // subquery values remain literals
+        DBCommand sub = db.createCommand();
+        sub.setAutoParameterize(true);
+        sub.select(DEP.ID);
+        sub.where(DEP.NAME.is("auto0"));
+        DBCommand outer = db.createCommand();
+        outer.select(DEP.count());
+        outer.where(DEP.ID.in(sub));
+        assertTrue(outer.getSelect().indexOf("'auto0'")>0);
+        assertNull(outer.getParamValues());
+        assertEquals(1, db.querySingleInt(outer, conn));
+        
+        // update
+        DBCommand upd = db.createCommand();
+        upd.setAutoParameterize(true);
+        upd.set(DEP.BUSINESS_UNIT.to("auto"));
+        upd.where(DEP.NAME.is("auto1"));
+        String updSql = upd.getUpdate();
+        assertTrue(updSql.indexOf("'auto")<0);
+        assertEquals(1, db.executeSQL(updSql, upd.getParamValues(), conn, null));
+        DBCommand cnt = db.createCommand();
+        cnt.select(DEP.count());
+        cnt.where(DEP.BUSINESS_UNIT.is("auto"));
+        assertEquals(1, db.querySingleInt(cnt, conn));
+    }
+
+    @Test
+    public void testConcurrentGeneration() throws InterruptedException
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        db.setPreparedStatementsEnabled(true);
+        
+        CompanyDB.Departments DEP = db.DEPARTMENT;
+        final DBCommand cmd = db.createCommand();
+        DBCmdParam nameParam = cmd.addParam(DEP.NAME, "name");
+        DBCmdParam unitParam = cmd.addParam(DEP.BUSINESS_UNIT, "unit");
+        cmd.select(DEP.ID);
+        cmd.where(DEP.BUSINESS_UNIT.is(unitParam));
+        cmd.where(DEP.NAME.is(nameParam));
+        final String sql = cmd.getSelect();
+        // params in the order of their occurrence 
+        assertArrayEquals(new Object[] { "unit", "name" }, cmd.getParamValues());
+        
+        // generate the same statement on several threads
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t=0; t<threads.length; t++)
+        {
+            threads[t] = new Thread() {
+                @Override
+                public void run()
+                {
+                    for (int i=0; i<500; i++)
+                    {
+                        if (!sql.equals(cmd.getSelect()) || cmd.getParamValues().length!=2)
+                            errors.incrementAndGet();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(0, errors.get());
+        assertArrayEquals(new Object[] { "unit", "name" }, cmd.getParamValues());
+    }
 }
@@ -28,6 +28,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
 
 /**
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
@@ -54,6 +56,107 @@ public class SerializeTest {
   }
 
 
+  @Test
+  public void testRecord() throws Exception {
+    TestDatabase db = new TestDatabase();
+    db.open(new MockDriver(), null);
+    DBRecord rec = new DBRecord();
+    rec.init(db.T_TEST, null, true);
+    Timestamp ts = new Timestamp(System.currentTimeMillis());
+    ts.setNanos(123456789);
+    rec.setValue(db.T_TEST.C_ID, 4711);
+    rec.setValue(db.T_TEST.C_TEXT, "J\u00fcrgen's text");
+    rec.setValue(db.T_TEST.C_AMOUNT, new BigDecimal("-1234.56"));
+    rec.setValue(db.T_TEST.C_CHANGED, ts);
+
+    DBRecord rec2 = (DBRecord) serialize(rec);
+    Assert.assertSame(db.T_TEST, rec2.getRowSet());
+    Assert.assertEquals(DBRecord.State.New, rec2.getState());
+    Assert.assertEquals(Integer.valueOf(4711), rec2.getValue(db.T_TEST.C_ID));
+    Assert.assertEquals("J\u00fcrgen's text", rec2.getValue(db.T_TEST.C_TEXT));
+    Assert.assertEquals(new BigDecimal("-1234.56"), rec2.getValue(db.T_TEST.C_AMOUNT));
+    Assert.assertEquals(ts, rec2.getValue(db.T_TEST.C_CHANGED));
+    Assert.assertTrue(rec2.wasModified(db.T_TEST.C_TEXT));
+    Assert.assertFalse(rec2.isValueValid(db.T_TEST.getColumnIndex(db.T_TEST.C_FLAG)));
+    Assert.assertNull(rec2.getValue(db.T_TEST.C_FLAG));
+  }
+
+  @Test
+  public void testRecordSize() throws Exception {
+    TestDatabase db = new TestDatabase();
+    db.open(new MockDriver(), null);
+    DBRecord rec = new DBRecord();
+    rec.init(db.T_TEST, null, true);
+    Timestamp ts = new Timestamp(System.currentTimeMillis());
+    String text = "Some text with a few words which is stored in a record";
+    rec.setValue(db.T_TEST.C_ID, 4711);
+    rec.setValue(db.T_TEST.C_TEXT, text);
+    rec.setValue(db.T_TEST.C_AMOUNT, new BigDecimal("-1234.56"));
+    rec.setValue(db.T_TEST.C_FLAG, Boolean.TRUE);
+    rec.setValue(db.T_TEST.C_CHANGED, ts);
+    // smaller than the default serialization of the values alone
+    Object[] values = new Object[] { 4711, text, new BigDecimal("-1234.56"), Boolean.TRUE, ts };
+    int size = serializedSize(rec);
+    Assert.assertTrue(size + " >= " + serializedSize(values), size < serializedSize(values));
+    // ASCII characters take a single byte
+    rec.setValue(db.T_TEST.C_TEXT, text + text);
+    Assert.assertEquals(size + text.length(), serializedSize(rec));
+  }
+
+  @Test
+  public void testRecordDelta() throws Exception {
+    TestDatabase db = new TestDatabase();
+    db.open(new MockDriver(), null);
+    DBRecord rec = new DBRecord();
+    rec.init(db.T_TEST, null, false);
+    Object[] fields = rec.getFields();
+    fields[db.T_TEST.getColumnIndex(db.T_TEST.C_ID)] = 55;
+    fields[db.T_TEST.getColumnIndex(db.T_TEST.C_TEXT)] = "some longer text which is not modified";
+    fields[db.T_TEST.getColumnIndex(db.T_TEST.C_AMOUNT)] = new BigDecimal("10.5");
+    fields[db.T_TEST.getColumnIndex(db.T_TEST.C_FLAG)] = Boolean.TRUE;
+    fields[db.T_TEST.getColumnIndex(db.T_TEST.C_CHANGED)] = new Timestamp(0);
+    int fullSize = serializedSize(rec);
+
+    DBRecord.setDeltaSerialization(true);
+    try {
+      // unmodified: key and timestamp only
+      DBRecord rec2 = (DBRecord) serialize(rec);
+      Assert.assertEquals(DBRecord.State.Valid, rec2.getState());
+      Assert.assertEquals(Integer.valueOf(55), rec2.getValue(db.T_TEST.C_ID));
+      Assert.assertEquals(new Timestamp(0), rec2.getValue(db.T_TEST.C_CHANGED));
+      Assert.assertFalse(rec2.isValueValid(db.T_TEST.getColumnIndex(db.T_TEST.C_TEXT)));
+      Assert.assertFalse(rec2.isValueValid(db.T_TEST.getColumnIndex(db.T_TEST.C_AMOUNT)));
+      Assert.assertTrue(serializedSize(rec) < fullSize);
+
+      // modified fields are included
+      rec.setValue(db.T_TEST.C_FLAG, false);
+      rec2 = (DBRecord) serialize(rec);
+      Assert.assertEquals(DBRecord.State.Modified, rec2.getState());
+      Assert.assertEquals(Boolean.FALSE, rec2.getValue(db.T_TEST.C_FLAG));
+      Assert.assertTrue(rec2.wasModified(db.T_TEST.C_FLAG));
+      Assert.assertFalse(rec2.isValueValid(db.T_TEST.getColumnIndex(db.T_TEST.C_TEXT)));
+    } finally {
+      DBRecord.setDeltaSerialization(false);
+    }
+  }
+
+  private static Object serialize(Object obj) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(obj);
+    oos.close();
+    ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    return oin.readObject();
+  }
+
+  private static int serializedSize(Object obj) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(baos);
+    oos.writeObject(obj);
+    oos.close();
+    return baos.size();
+  }
+
   public DBObject[] getObjectsToSerialize() {
     final TestDatabase db = new TestDatabase();
     DBRecord rec = new DBRecord();
@@ -84,12 +187,19 @@ public class SerializeTest {
       private final static long serialVersionUID = 1L;
       public final DBTableColumn C_ID;
       public final DBTableColumn C_TEXT;
+      public final DBTableColumn C_AMOUNT;
+      public final DBTableColumn C_FLAG;
+      public final DBTableColumn C_CHANGED;
 
       TestTable(DBDatabase db) {
         super("testtable", db);
         this.C_ID = addColumn("id", DataType.INTEGER, 0, true);
         setPrimaryKey(C_ID);
         this.C_TEXT = addColumn("text", DataType.TEXT, 255, false);
+        this.C_AMOUNT = addColumn("amount", DataType.DECIMAL, 10.2, false);
+        this.C_FLAG = addColumn("flag", DataType.BOOL, 0, false);
+        this.C_CHANGED = addColumn("changed", DataType.DATETIME, 0, false);
+        setTimestampColumn(C_CHANGED);
       }
     }
     static class TestView extends DBView {
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.empire.db.h2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.apache.empire.DBResource;
+import org.apache.empire.DBResource.DB;
+import org.apache.empire.data.DataType;
+import org.apache.empire.db.CompanyDB;
+import org.apache.empire.db.DBBlobData;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBDatabaseDriver;
+import org.apache.empire.db.DBReader;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBSQLScript;
+import org.junit.Rule;
+import org.junit.Test;
+
+
+public class DBDatabaseDriverH2Test{
+ 
+    @Rule
+    public DBResource dbResource = new DBResource(DB.H2);
+    
+    @Test
+    public void testLimitParams()
+    {
+        Connection conn = dbResource.getConnection();
+     
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        for (int i=0; i<5; i++)
+        {   // add departments
+            DBRecord dep = new DBRecord();
+            dep.create(db.DEPARTMENT);
+            dep.setValue(db.DEPARTMENT.NAME, "junit"+i);
+            dep.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            dep.update(conn);
+        }
+        
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.orderBy(db.DEPARTMENT.NAME);
+        cmd.limitRows(2);
+        cmd.skipRows(1);
+        
+        // literal values
+        db.setPreparedStatementsEnabled(false);
+        assertTrue(cmd.getSelect().endsWith("LIMIT 2 OFFSET 1"));
+        assertNull(cmd.getParamValues());
+        
+        // parameters
+        db.setPreparedStatementsEnabled(true);
+        String sql = cmd.getSelect();
+        assertTrue(sql.endsWith("LIMIT ? OFFSET ?"));
+        assertArrayEquals(new Object[] { 2, 1 }, cmd.getParamValues());
+        assertEquals("junit1", readFirst(cmd, conn));
+        
+        // same statement for another page
+        cmd.skipRows(3);
+        assertEquals(sql, cmd.getSelect());
+        assertEquals("junit3", readFirst(cmd, conn));
+    }
+    
+    @Test
+    public void testLimitSubquery()
+    {
+        Connection conn = dbResource.getConnection();
+     
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        db.setPreparedStatementsEnabled(true);
+        
+        for (int i=0; i<5; i++)
+        {   // add departments
+            DBRecord dep = new DBRecord();
+            dep.create(db.DEPARTMENT);
+            dep.setValue(db.DEPARTMENT.NAME, "junit"+i);
+            dep.setValue(db.DEPARTMENT.BUSINESS_UNIT, "test");
+            dep.update(conn);
+        }
+        
+        // limited subquery using a param of the outer command
+        DBCommand cmd = db.createCommand();
+        DBCommand sub = db.createCommand();
+        sub.select(db.DEPARTMENT.ID);
+        sub.where(db.DEPARTMENT.BUSINESS_UNIT.is(cmd.addParam("test")));
+        sub.orderBy(db.DEPARTMENT.NAME);
+        sub.limitRows(2);
+        sub.skipRows(1);
+        
+        cmd.select(db.DEPARTMENT.NAME);
+        cmd.where(db.DEPARTMENT.ID.in(sub));
+        cmd.where(db.DEPARTMENT.NAME.isNot(cmd.addParam("junit2")));
+        cmd.orderBy(db.DEPARTMENT.NAME);
+        String sql = cmd.getSelect();
+        // limit values of the subquery are literals
+        assertTrue(sql.contains("LIMIT 2 OFFSET 1"));
+        assertArrayEquals(new Object[] { "test", "junit2" }, cmd.getParamValues());
+        assertEquals("junit1", readFirst(cmd, conn));
+        
+        // used on its own a command still uses limit params
+        sub.limitRows(1);
+        assertTrue(sub.getSelect().endsWith("LIMIT ? OFFSET ?"));
+        assertArrayEquals(new Object[] { "test", 1, 1 }, sub.getParamValues());
+    }
+    
+    private String readFirst(DBCommand cmd, Connection conn)
+    {
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            assertTrue(r.moveNext());
+            return r.getString(0);
+        } finally {
+            r.close();
+        }
+    }
+    @Test
+    public void testLazyLobs()
+    {
+        Connection conn = dbResource.getConnection();
+     
+        DBDatabaseDriver driver = dbResource.newDriver();
+        CompanyDB db = new CompanyDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        db.setPreparedStatementsEnabled(true);
+        
+        byte[] small = new byte[] { 1, 2, 3 };
+        byte[] large = new byte[100];
+        for (int i=0; i<large.length; i++)
+            large[i] = (byte)i;
+        Object largeId = null;
+        for (byte[] data : new byte[][] { small, large })
+        {   // add data
+            DBRecord rec = new DBRecord();
+            rec.create(db.DATA);
+            rec.setValue(db.DATA.DATA, data);
+            rec.update(conn);
+            largeId = rec.getValue(db.DATA.ID);
+        }
+        
+        driver.setLazyLobThreshold(10);
+        DBCommand cmd = db.createCommand();
+        cmd.select(db.DATA.ID, db.DATA.DATA);
+        cmd.orderBy(db.DATA.ID);
+        DBReader r = new DBReader();
+        try {
+            r.open(cmd, conn);
+            // small values are read
+            assertTrue(r.moveNext());
+            assertArrayEquals(small, (byte[])r.getValue(db.DATA.DATA));
+            // large values are read on access
+            assertTrue(r.moveNext());
+            Object value = r.getValue(db.DATA.DATA);
+            assertTrue(value instanceof DBBlobData);
+            DBBlobData blob = (DBBlobData)value;
+            assertTrue(blob.isLazy());
+            assertEquals(large.length, blob.getLength());
+            assertArrayEquals(large, blob.getBytes());
+            r.close();
+            // records and query results must not hold lazy values
+            DBRecord rec = new DBRecord();
+            rec.read(db.DATA, largeId, conn);
+            assertArrayEquals(large, (byte[])rec.getValue(db.DATA.DATA));
+            cmd.clearSelect();
+            cmd.select(db.DATA.DATA);
+            cmd.where(db.DATA.ID.is(largeId));
+            assertArrayEquals(large, (byte[])db.querySingleValue(cmd, DataType.BLOB, conn));
+        } finally {
+            r.close();
+            driver.setLazyLobThreshold(-1);
+        }
+    }
+
+}
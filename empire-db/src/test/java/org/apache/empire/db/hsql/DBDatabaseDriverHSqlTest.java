@@ -21,8 +21,11 @@ package org.apache.empire.db.hsql;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.Date;
 
 import org.apache.empire.DBResource;
@@ -33,10 +36,13 @@ import org.apache.empire.db.CompanyDB;
 import org.apache.empire.db.DBCmdType;
 import org.apache.empire.db.DBDatabase;
 import org.apache.empire.db.DBDatabaseDriver;
+import org.apache.empire.db.DBDatabaseDriver.DBSeqTable;
 import org.apache.empire.db.DBRecord;
 import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
+import org.apache.empire.exceptions.InvalidPropertyException;
+import org.apache.empire.exceptions.PropertyReadOnlyException;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -134,6 +140,124 @@ public class DBDatabaseDriverHSqlTest{
         script.run(db.getDriver(), conn, true);
     }
     
+    @Test
+    public void testSequenceBlocks(){
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        driver.setSequenceBlockSize(5);
+        SeqDB db = new SeqDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        long lastId = 0;
+        for (int i=0; i<12; i++)
+        {   // ids must be consecutive across block boundaries
+            DBRecord data = new DBRecord();
+            data.create(db.DATA);
+            data.setValue(db.DATA.VALUE, "test"+i);
+            data.update(conn);
+            long id = data.getLong(db.DATA.ID);
+            if (i>0)
+                assertEquals(lastId+1, id);
+            lastId = id;
+        }
+        
+        script = new DBSQLScript();
+        db.getDriver().getDDLScript(DBCmdType.DROP, db.DATA, script);
+        script.run(db.getDriver(), conn, true);
+    }
+    
+    @Test
+    public void testSequenceBlockSizeMismatch(){
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        SeqDB db = new SeqDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        // block size cannot be changed while open
+        try {
+            driver.setSequenceBlockSize(5);
+            fail("PropertyReadOnlyException expected");
+        } catch(PropertyReadOnlyException e) {
+            // expected
+        }
+        db.close(conn);
+        // sequence has been created with an increment of 1
+        driver.setSequenceBlockSize(5);
+        db.open(driver, conn);
+        try {
+            for (int i=0; i<6; i++)
+            {   // second block must overlap the first one
+                DBRecord data = new DBRecord();
+                data.create(db.DATA);
+                data.setValue(db.DATA.VALUE, "test"+i);
+                data.update(conn);
+            }
+            fail("InvalidPropertyException expected");
+        } catch(InvalidPropertyException e) {
+            // expected
+        }
+        
+        script = new DBSQLScript();
+        db.getDriver().getDDLScript(DBCmdType.DROP, db.DATA, script);
+        script.run(db.getDriver(), conn, true);
+    }
+    
+    @Test
+    public void testSequenceTableBlocks() throws SQLException
+    {
+        Connection conn = dbResource.getConnection();
+        
+        DBDatabaseDriver driver = dbResource.newDriver();
+        driver.setSequenceBlockSize(5);
+        SeqTableDB db = new SeqTableDB();
+        db.open(driver, conn);
+        DBSQLScript script = new DBSQLScript();
+        db.getCreateDDLScript(db.getDriver(), script);
+        script.run(db.getDriver(), conn, false);
+        
+        conn.setAutoCommit(false);
+        Connection seqConn = DriverManager.getConnection(conn.getMetaData().getURL(), "sa", "");
+        try {
+            // a block must not be reserved in the caller's transaction
+            try {
+                db.SEQUENCES.getNextValue("TEST_SEQ", 1, conn);
+                fail("InvalidPropertyException expected");
+            } catch(InvalidPropertyException e) {
+                // expected
+            }
+            // reserve on the sequence connection
+            driver.setSequenceConnection(seqConn);
+            assertEquals(1L, db.SEQUENCES.getNextValue("TEST_SEQ", 1, conn));
+            // a rollback of the caller's transaction does not release the block
+            conn.rollback();
+            assertEquals(6L, db.SEQUENCES.getNextValue("TEST_SEQ", 1, conn));
+        } finally {
+            driver.setSequenceConnection(null);
+            conn.setAutoCommit(true);
+            seqConn.close();
+        }
+        
+        script = new DBSQLScript();
+        db.getDriver().getDDLScript(DBCmdType.DROP, db.SEQUENCES, script);
+        script.run(db.getDriver(), conn, true);
+    }
+    
+    /**
+     * A database with an emulated sequence table
+     */
+    private class SeqTableDB extends DBDatabase
+    {
+        private final static long serialVersionUID = 1L;
+        public final DBSeqTable SEQUENCES = new DBSeqTable("SEQUENCES", this);
+    }
+    
     /**
      * This is the basic database for testing
      *